@@ -21,17 +21,27 @@
 
 package org.tinymediamanager.jsonrpc.api;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Random;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ArrayNode;
 import org.codehaus.jackson.node.NullNode;
 import org.codehaus.jackson.node.ObjectNode;
+import org.codehaus.jackson.util.TokenBuffer;
+import org.tinymediamanager.jsonrpc.api.model.ListModel;
 
 /**
  * Super class of all API call implementations.
@@ -65,6 +75,15 @@ import org.codehaus.jackson.node.ObjectNode;
  * The rest is taken care of in this abstract class.
  * <p/>
  * 
+ * <h3>Streaming</h3> List calls which may return huge results additionally implement {@link #getStreamingKey()} and {@link #parseItem(JsonNode)}.
+ * Their result can then be consumed item by item via {@link #streamResult(JsonParser, Consumer)}, without ever building the whole response tree or
+ * result list. With {@link #setLazyResults(boolean) lazy results}, the items are decoded one by one on first access instead.
+ * <p/>
+ * 
+ * <h3>Serialization</h3> Parameters are kept as they were added and written straight to a {@link JsonGenerator} when the request is sent (see
+ * {@link #writeRequest(JsonGenerator)}), so no JSON tree is built for sending. {@link #getRequest()} builds the tree only when asked for.
+ * <p/>
+ * 
  * @author freezy <freezy@xbmc.org>
  */
 public abstract class AbstractCall<T> {
@@ -73,7 +92,7 @@ public abstract class AbstractCall<T> {
 
   public static final String          RESULT = "result";
 
-  private final static Random         RND    = new Random(System.currentTimeMillis());
+  private final static AtomicLong     IDS    = new AtomicLong();
   protected final static ObjectMapper OM     = new ObjectMapper();
 
   /**
@@ -103,12 +122,17 @@ public abstract class AbstractCall<T> {
   protected abstract boolean returnsList();
 
   /**
-   * JSON request object sent to the API
+   * Parameters of the request by name, in the order they were added; <tt>null</tt> as long as there are none.
+   */
+  private Map<String, Object>        mParams   = null;
+
+  /**
+   * JSON request object sent to the API, built on first request by {@link #getRequest()}. Once built, it is what gets sent.
    * 
    * <p/>
-   * <u>Example</u>: <code>{"jsonrpc": "2.0", "method": "Application.GetProperties", "id": "1", "params": { "properties": [ "version" ] } }</code>
+   * <u>Example</u>: <code>{"jsonrpc": "2.0", "method": "Application.GetProperties", "id": 1, "params": { "properties": [ "version" ] } }</code>
    */
-  public ObjectNode      mRequest = OM.createObjectNode();
+  private volatile ObjectNode        mRequest  = null;
 
   /**
    * The <tt>response</tt> node of the JSON response (the root node of the response)
@@ -117,8 +141,24 @@ public abstract class AbstractCall<T> {
    * 
    * @todo fix example
    */
-  protected T            mResult  = null;
-  protected ArrayList<T> mResults = null;
+  protected T                        mResult   = null;
+  protected ArrayList<T>             mResults  = null;
+
+  /**
+   * The <tt>limits</tt> node of a list result, if returned by the API.
+   */
+  protected ListModel.LimitsReturned mLimits   = null;
+
+  /**
+   * Priority set explicitly, <tt>null</tt> for the default of the namespace.
+   */
+  private Priority                   mPriority = null;
+
+  /**
+   * Whether list results are decoded on access, see {@link #setLazyResults(boolean)}.
+   */
+  private boolean                    mLazy     = false;
+  private LazyResultList<T>          mView     = null;
 
   @Override
   public String toString() {
@@ -126,30 +166,157 @@ public abstract class AbstractCall<T> {
   }
 
   /**
-   * The ID of the request.
+   * The ID of the request, unique within the JVM.
    */
-  private final String mId;
+  private final long mId;
 
   /**
-   * Creates the standard structure of the JSON request.
+   * Assigns the ID of the request.
    * 
    */
   protected AbstractCall() {
-    final ObjectNode request = mRequest;
-
-    mId = String.valueOf(RND.nextLong());
-    request.put("jsonrpc", "2.0");
-    request.put("id", mId);
-    request.put("method", getName());
+    mId = IDS.incrementAndGet();
   }
 
   /**
-   * Returns the JSON request object sent to XBMC.
+   * Returns the JSON request object sent to XBMC. The tree is built on first request; changes to it are sent as well.
    * 
    * @return Request object
    */
   public ObjectNode getRequest() {
-    return mRequest;
+    ObjectNode request = mRequest;
+    if (request == null) {
+      request = toTree(true);
+      mRequest = request;
+    }
+    return request;
+  }
+
+  /**
+   * Returns the request as JSON-RPC notification, i.e. without id. Kodi executes it without sending a response.
+   * 
+   * @return Request object without id
+   */
+  public ObjectNode getNotification() {
+    return toTree(false);
+  }
+
+  /**
+   * Writes the JSON request object, as returned by {@link #getRequest()}.
+   * 
+   * @param g
+   *          Generator to write to
+   * @throws IOException
+   *           if the generator fails
+   */
+  public void writeRequest(JsonGenerator g) throws IOException {
+    final ObjectNode request = mRequest;
+    if (request != null) {
+      OM.writeTree(g, request);
+    }
+    else {
+      writeRequest(g, mId);
+    }
+  }
+
+  /**
+   * Writes the request as JSON-RPC notification, as returned by {@link #getNotification()}.
+   * 
+   * @param g
+   *          Generator to write to
+   * @throws IOException
+   *           if the generator fails
+   */
+  public void writeNotification(JsonGenerator g) throws IOException {
+    writeRequest(g, 0);
+  }
+
+  private ObjectNode toTree(boolean withId) {
+    final TokenBuffer buffer = new TokenBuffer(OM);
+    try {
+      if (withId) {
+        writeRequest(buffer);
+      }
+      else {
+        writeNotification(buffer);
+      }
+      return (ObjectNode) OM.readTree(buffer.asParser());
+    }
+    catch (IOException e) {
+      // the buffer is in memory, so only a broken model can fail
+      throw new IllegalStateException("Could not build request of " + getName(), e);
+    }
+  }
+
+  /**
+   * Writes the request with the method and parameters of this call under the given ID, e.g. to send a copy of the call.
+   * 
+   * @param g
+   *          Generator to write to
+   * @param id
+   *          ID of the request, 0 for a notification
+   * @throws IOException
+   *           if the generator fails
+   */
+  public void writeRequest(JsonGenerator g, long id) throws IOException {
+    g.writeStartObject();
+    g.writeStringField("jsonrpc", "2.0");
+    if (id != 0) {
+      g.writeNumberField("id", id);
+    }
+    g.writeStringField("method", getName());
+    final ObjectNode request = mRequest;
+    if (request != null) {
+      if (request.has(PARAMS)) {
+        g.writeFieldName(PARAMS);
+        OM.writeTree(g, request.get(PARAMS));
+      }
+    }
+    else if (mParams != null) {
+      g.writeObjectFieldStart(PARAMS);
+      for (Map.Entry<String, Object> param : mParams.entrySet()) {
+        g.writeFieldName(param.getKey());
+        writeValue(g, param.getValue());
+      }
+      g.writeEndObject();
+    }
+    g.writeEndObject();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void writeValue(JsonGenerator g, Object value) throws IOException {
+    if (value instanceof String) {
+      g.writeString((String) value);
+    }
+    else if (value instanceof Integer) {
+      g.writeNumber((Integer) value);
+    }
+    else if (value instanceof Boolean) {
+      g.writeBoolean((Boolean) value);
+    }
+    else if (value instanceof Double) {
+      g.writeNumber((Double) value);
+    }
+    else if (value instanceof AbstractModel) {
+      ((AbstractModel) value).writeJson(g);
+    }
+    else if (value instanceof String[]) {
+      g.writeStartArray();
+      for (String item : (String[]) value) {
+        g.writeString(item);
+      }
+      g.writeEndArray();
+    }
+    else if (value instanceof Map) {
+      g.writeStartObject();
+      for (Map.Entry<String, String> entry : ((Map<String, String>) value).entrySet()) {
+        g.writeStringField(entry.getKey(), entry.getValue());
+      }
+      g.writeEndObject();
+    }
+    else {
+      OM.writeTree(g, (JsonNode) value);
+    }
   }
 
   /**
@@ -162,7 +329,19 @@ public abstract class AbstractCall<T> {
    */
   public void setResponse(JsonNode response) {
     if (returnsList()) {
-      mResults = parseMany(response.findValue(RESULT));
+      final JsonNode result = response.findValue(RESULT);
+      mView = null;
+      if (mLazy && getStreamingKey() != null && result != null) {
+        final ArrayNode items = parseResults(result, getStreamingKey());
+        mResults = items == null ? new ArrayList<T>(0) : null;
+        mView = items == null ? null : new LazyResultList<T>(this, items);
+      }
+      else {
+        mResults = parseMany(result);
+      }
+      if (result != null && result.has(LIMITS)) {
+        mLimits = new ListModel.LimitsReturned(result.get(LIMITS));
+      }
     }
     else {
       mResult = parseOne(response.findValue(RESULT));
@@ -188,7 +367,7 @@ public abstract class AbstractCall<T> {
    */
   public T getResult() {
     if (returnsList()) {
-      return mResults.get(0);
+      return mView != null ? mView.get(0) : mResults.get(0);
     }
     return mResult;
   }
@@ -206,18 +385,145 @@ public abstract class AbstractCall<T> {
       results.add(mResult);
       return results;
     }
+    if (mResults == null && mView != null) {
+      // decodes the items not accessed yet
+      mResults = new ArrayList<T>(mView);
+    }
     return mResults;
   }
 
+  /**
+   * Returns the result as a list of items decoded on first access, see {@link #setLazyResults(boolean)}.
+   * <p>
+   * Without lazy results, or if the API method returned a single result, this returns the same items as {@link #getResults()}.
+   * 
+   * @return Result of the API method as list
+   */
+  public List<T> getResultList() {
+    return mView != null ? mView : getResults();
+  }
+
+  /**
+   * Makes a list call keep the items of the response as they are and decode each one only when accessed through {@link #getResultList()} (or
+   * {@link #getResult()} for the first one), instead of decoding all of them into their models with the response. This saves most of the work if
+   * only a few items are used, or if only a few fields are read from the items via {@link LazyResultList#getField(int, String)}. Responses received
+   * via TCP or HTTP are not even parsed into a tree then (see {@link #indexResult(JsonParser, byte[])}). {@link #getResults()} still returns all
+   * items, decoding them all on its first call.
+   * <p>
+   * Only list calls which support streaming (see {@link #isStreamable()}) decode items one by one; all others ignore this setting.
+   * 
+   * @param lazy
+   *          <tt>true</tt> to decode items on access
+   * @return This call
+   */
+  public AbstractCall<T> setLazyResults(boolean lazy) {
+    mLazy = lazy;
+    return this;
+  }
+
+  public boolean isLazyResults() {
+    return mLazy;
+  }
+
+  /**
+   * Returns the pagination limits returned by a list call.
+   * <p>
+   * The total number of items available is found in {@link ListModel.LimitsReturned#total}.
+   * 
+   * @return Returned limits, or <tt>null</tt> if the API didn't return any (or the call does not return a list)
+   */
+  public ListModel.LimitsReturned getLimits() {
+    return mLimits;
+  }
+
   /**
    * Returns the generated ID of the request.
    * 
-   * @return Generated ID of the request
+   * @return Generated ID of the request, a sequence number starting at 1
    */
-  public String getId() {
+  public long getId() {
     return mId;
   }
 
+  /**
+   * Returns whether the call only reads data, meaning it can safely be sent again if its response got lost. By default all <tt>Get*</tt> methods
+   * and the read-only <tt>JSONRPC.*</tt> methods are.
+   *
+   * @return <tt>true</tt> if sending the call twice has the same effect as sending it once
+   */
+  public boolean isIdempotent() {
+    final String name = getName();
+    final String method = name.substring(name.indexOf('.') + 1);
+    return method.startsWith("Get") || name.equals("JSONRPC.Ping") || name.equals("JSONRPC.Version") || name.equals("JSONRPC.Introspect")
+        || name.equals("JSONRPC.Permission");
+  }
+
+  /**
+   * Returns the key under which calls sent coalesced replace each other (see
+   * {@link org.tinymediamanager.jsonrpc.io.JavaConnectionManager#callCoalesced(AbstractCall, org.tinymediamanager.jsonrpc.io.ApiCallback)}): the
+   * name of the method and, if given, the player it targets.
+   *
+   * @return Key of the call
+   */
+  public String getCoalescingKey() {
+    final Object playerId = mParams == null ? null : mParams.get("playerid");
+    return playerId == null ? getName() : getName() + "#" + playerId;
+  }
+
+  /**
+   * Scheduling class of a call. While calls wait for being sent (see {@link org.tinymediamanager.jsonrpc.io.ConcurrencyLimiter}), more urgent ones
+   * go first.
+   */
+  public enum Priority {
+    /**
+     * Remote control and playback, which a user is waiting for.
+     */
+    INTERACTIVE,
+    NORMAL,
+    /**
+     * Library and file listings, usually made in large numbers.
+     */
+    BULK
+  }
+
+  /**
+   * Returns the priority of the call. Unless set explicitly, <tt>Input.*</tt>, <tt>GUI.*</tt> and <tt>Player.*</tt> methods are interactive,
+   * <tt>VideoLibrary.*</tt>, <tt>AudioLibrary.*</tt>, <tt>Files.*</tt> and <tt>Textures.*</tt> methods are bulk and all others normal.
+   *
+   * @return Priority of the call
+   */
+  public Priority getPriority() {
+    if (mPriority != null) {
+      return mPriority;
+    }
+    final String name = getName();
+    switch (name.substring(0, Math.max(0, name.indexOf('.')))) {
+      case "Input":
+      case "GUI":
+      case "Player":
+        return Priority.INTERACTIVE;
+      case "VideoLibrary":
+      case "AudioLibrary":
+      case "Files":
+      case "Textures":
+        return Priority.BULK;
+      default:
+        return Priority.NORMAL;
+    }
+  }
+
+  /**
+   * Overrides the default priority of the call.
+   *
+   * @param priority
+   *          Priority to use, <tt>null</tt> for the default
+   * @return This call
+   */
+  public AbstractCall<T> setPriority(Priority priority) {
+    mPriority = priority;
+    return this;
+  }
+
   /**
    * Gets the result object from a response.
    * 
@@ -262,6 +568,121 @@ public abstract class AbstractCall<T> {
     return null;
   }
 
+  /**
+   * Returns the name of the array inside the <tt>result</tt> node holding the items of a list call that supports streaming.
+   * <p/>
+   * Sub classes overriding this must also override {@link #parseItem(JsonNode)}.
+   * 
+   * @return Name of the result array, e.g. "movies", or <tt>null</tt> if streaming is not supported.
+   */
+  protected String getStreamingKey() {
+    return null;
+  }
+
+  /**
+   * Parses a single item of the result list when streaming.
+   * 
+   * @param node
+   *          One item of the result array
+   * @return Parsed item
+   */
+  protected T parseItem(JsonNode node) {
+    return null;
+  }
+
+  /**
+   * Returns true if the result of this call can be streamed via {@link #streamResult(JsonParser, Consumer)}.
+   * 
+   * @return True if streaming is supported
+   */
+  public boolean isStreamable() {
+    return returnsList() && getStreamingKey() != null;
+  }
+
+  /**
+   * Reads the result item by item from the parser and passes every parsed item to the consumer.
+   * <p/>
+   * Only one item is held as JSON tree at any time; the results are <b>not</b> collected, so {@link #getResults()} returns an empty list afterwards.
+   * 
+   * @param jp
+   *          Parser positioned at the value of the <tt>result</tt> field of the response. When returning, the parser is positioned at the end of
+   *          that value.
+   * @param consumer
+   *          Receives every item of the result
+   * @return Number of items passed to the consumer
+   * @throws IOException
+   *           if the result could not be read
+   */
+  public int streamResult(JsonParser jp, Consumer<? super T> consumer) throws IOException {
+    mResults = new ArrayList<T>(0);
+    mView = null;
+    if (jp.getCurrentToken() != JsonToken.START_OBJECT) {
+      jp.skipChildren();
+      return 0;
+    }
+
+    final String key = getStreamingKey();
+    int count = 0;
+    while (jp.nextToken() == JsonToken.FIELD_NAME) {
+      final String field = jp.getCurrentName();
+      final JsonToken value = jp.nextToken();
+      if (value == JsonToken.START_ARRAY && field.equals(key)) {
+        while (jp.nextToken() != JsonToken.END_ARRAY) {
+          consumer.accept(parseItem(OM.readTree(jp)));
+          count++;
+        }
+      }
+      else if (value == JsonToken.START_OBJECT && field.equals(LIMITS)) {
+        mLimits = new ListModel.LimitsReturned(OM.readTree(jp));
+      }
+      else {
+        jp.skipChildren();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Reads the result of a list call with {@link #setLazyResults(boolean) lazy results} from the raw response without building a tree of it: only the
+   * position of every item within the response is taken, the items are read from there when accessed through {@link #getResultList()}.
+   * <p/>
+   * The call keeps a reference to the response.
+   * 
+   * @param jp
+   *          Parser reading <tt>data</tt> from its start, positioned at the value of the <tt>result</tt> field of the response. When returning, the
+   *          parser is positioned at the end of that value.
+   * @param data
+   *          The raw response
+   * @throws IOException
+   *           if the result could not be read
+   */
+  public void indexResult(JsonParser jp, byte[] data) throws IOException {
+    mResults = null;
+    mView = null;
+    if (jp.getCurrentToken() == JsonToken.START_OBJECT) {
+      final String key = getStreamingKey();
+      while (jp.nextToken() == JsonToken.FIELD_NAME) {
+        final String field = jp.getCurrentName();
+        final JsonToken value = jp.nextToken();
+        if (value == JsonToken.START_ARRAY && field.equals(key)) {
+          mView = LazyResultList.index(this, jp, data);
+        }
+        else if (value == JsonToken.START_OBJECT && field.equals(LIMITS)) {
+          mLimits = new ListModel.LimitsReturned(OM.readTree(jp));
+        }
+        else {
+          jp.skipChildren();
+        }
+      }
+    }
+    else {
+      jp.skipChildren();
+    }
+    if (mView == null) {
+      mResults = new ArrayList<T>(0);
+    }
+  }
+
   /**
    * Adds a string parameter to the request object (only if not null).
    * 
@@ -272,7 +693,7 @@ public abstract class AbstractCall<T> {
    */
   protected void addParameter(String name, String value) {
     if (value != null) {
-      getParameters().put(name, value);
+      putParameter(name, value);
     }
   }
 
@@ -286,7 +707,7 @@ public abstract class AbstractCall<T> {
    */
   protected void addParameter(String name, Integer value) {
     if (value != null) {
-      getParameters().put(name, value);
+      putParameter(name, value);
     }
   }
 
@@ -300,19 +721,19 @@ public abstract class AbstractCall<T> {
    */
   protected void addParameter(String name, Boolean value) {
     if (value != null) {
-      getParameters().put(name, value);
+      putParameter(name, value);
     }
   }
 
   protected void addParameter(String name, Double value) {
     if (value != null) {
-      getParameters().put(name, value);
+      putParameter(name, value);
     }
   }
 
   protected void addParameter(String name, AbstractModel value) {
     if (value != null) {
-      getParameters().put(name, value.toJsonNode());
+      putParameter(name, value);
     }
   }
 
@@ -320,7 +741,7 @@ public abstract class AbstractCall<T> {
   protected void addParameter(String name, AbstractModel... values) {
     if (values != null) {
       for (AbstractModel value : values) {
-        getParameters().put(name, value.toJsonNode());
+        putParameter(name, value);
       }
     }
   }
@@ -338,11 +759,7 @@ public abstract class AbstractCall<T> {
     if (values == null || values.length == 0) {
       return;
     }
-    final ArrayNode props = OM.createArrayNode();
-    for (String value : values) {
-      props.add(value);
-    }
-    getParameters().put(name, props);
+    putParameter(name, values);
   }
 
   /**
@@ -357,28 +774,28 @@ public abstract class AbstractCall<T> {
     if (map == null || map.size() == 0) {
       return;
     }
-    final ObjectNode props = OM.createObjectNode();
-    for (String key : map.values()) {
-      props.put(key, map.get(key));
-    }
-    getParameters().put(name, props);
+    putParameter(name, map);
   }
 
   /**
-   * Returns the parameters array. Use this to add any parameters.
+   * Adds a parameter given as JSON tree to the request object (only if not null).
    * 
-   * @return Parameters
+   * @param name
+   *          Name of the parameter
+   * @param value
+   *          Value of the parameter
    */
-  private ObjectNode getParameters() {
-    final ObjectNode request = mRequest;
-    if (request.has(PARAMS)) {
-      return (ObjectNode) request.get(PARAMS);
+  protected void addParameter(String name, JsonNode value) {
+    if (value != null) {
+      putParameter(name, value);
     }
-    else {
-      final ObjectNode parameters = OM.createObjectNode();
-      request.put(PARAMS, parameters);
-      return parameters;
+  }
+
+  private void putParameter(String name, Object value) {
+    if (mParams == null) {
+      mParams = new LinkedHashMap<String, Object>();
     }
+    mParams.put(name, value);
   }
 
 }
@@ -21,12 +21,14 @@
 
 package org.tinymediamanager.jsonrpc.api;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ArrayNode;
@@ -46,6 +48,51 @@ public abstract class AbstractModel implements JsonSerializable {
     return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
   }
 
+  /**
+   * Writes this object as JSON, the same as {@link #toJsonNode()} returns.
+   * <p/>
+   * By default the tree returned by {@link #toJsonNode()} is written. Classes used as parameters in large numbers, such as filters, write themselves
+   * without building a tree first.
+   *
+   * @param g
+   *          Generator to write to
+   * @throws IOException
+   *           if the generator fails
+   */
+  public void writeJson(JsonGenerator g) throws IOException {
+    final JsonNode node = toJsonNode();
+    if (node == null) {
+      g.writeNull();
+    }
+    else {
+      OM.writeTree(g, node);
+    }
+  }
+
+  /**
+   * Writes an integer field, <tt>null</tt> if the value is null.
+   */
+  protected static void writeField(JsonGenerator g, String name, Integer value) throws IOException {
+    if (value == null) {
+      g.writeNullField(name);
+    }
+    else {
+      g.writeNumberField(name, value);
+    }
+  }
+
+  /**
+   * Writes a boolean field, <tt>null</tt> if the value is null.
+   */
+  protected static void writeField(JsonGenerator g, String name, Boolean value) throws IOException {
+    if (value == null) {
+      g.writeNullField(name);
+    }
+    else {
+      g.writeBooleanField(name, value);
+    }
+  }
+
   /**
    * Tries to read an integer from JSON object.
    *
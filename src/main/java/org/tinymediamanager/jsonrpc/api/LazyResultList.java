@@ -0,0 +1,239 @@
+package org.tinymediamanager.jsonrpc.api;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+
+/**
+ * Read-only view of a list result over the items of the response, see {@link AbstractCall#setLazyResults(boolean)}.
+ * <p/>
+ * Responses received as raw JSON (via TCP or HTTP) are not parsed into a tree at all: the view only keeps the position of every item within the
+ * response, and reads an item from there when it is accessed. Responses set as tree (see {@link AbstractCall#setResponse(JsonNode)}) are viewed
+ * through their item nodes.
+ * <p/>
+ * An item is only decoded into its model when it is accessed for the first time; the model is then kept, so later accesses return the same object.
+ * Single fields are read with {@link #getField(int, String)} or {@link #getProjection(int, String...)} without decoding the other fields of the item,
+ * e.g. to read the id and file of every item during a sync.
+ * <p/>
+ * The view is not thread-safe; an item accessed concurrently for the first time may be decoded twice.
+ */
+public final class LazyResultList<T> extends AbstractList<T> implements RandomAccess {
+  private static final ObjectMapper OM = new ObjectMapper();
+
+  private final AbstractCall<T>     call;
+  /**
+   * Item nodes of a response set as tree, <tt>null</tt> if the items are read from {@link #data}.
+   */
+  private final ArrayNode           items;
+  /**
+   * The raw response, <tt>null</tt> if the items are nodes.
+   */
+  private final byte[]              data;
+  /**
+   * Start and end of every item within {@link #data}, two entries per item.
+   */
+  private final int[]               offsets;
+  private final Object[]            decoded;
+
+  LazyResultList(AbstractCall<T> call, ArrayNode items) {
+    this.call = call;
+    this.items = items;
+    this.data = null;
+    this.offsets = null;
+    this.decoded = new Object[items.size()];
+  }
+
+  private LazyResultList(AbstractCall<T> call, byte[] data, int[] offsets, int size) {
+    this.call = call;
+    this.items = null;
+    this.data = data;
+    this.offsets = offsets;
+    this.decoded = new Object[size];
+  }
+
+  /**
+   * Creates the view over the items of a raw response, skipping over them without building any tree.
+   *
+   * @param call
+   *          Call the items belong to
+   * @param jp
+   *          Parser reading <tt>data</tt> from its start, positioned at the start of the result array. When returning, the parser is positioned at the
+   *          end of the array.
+   * @param data
+   *          The raw response
+   * @return The view
+   * @throws IOException
+   *           if the items could not be read
+   */
+  static <T> LazyResultList<T> index(AbstractCall<T> call, JsonParser jp, byte[] data) throws IOException {
+    int[] offsets = new int[64];
+    int size = 0;
+    while (jp.nextToken() != JsonToken.END_ARRAY) {
+      if (jp.getCurrentToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException("Item is not a JSON object.", jp.getCurrentLocation());
+      }
+      // the location of a token may include the whitespace and separator in front of it
+      int start = (int) jp.getTokenLocation().getCharOffset();
+      while (data[start] != '{') {
+        start++;
+      }
+      jp.skipChildren();
+      int end = (int) jp.getTokenLocation().getCharOffset();
+      while (data[end] != '}') {
+        end++;
+      }
+      if (2 * size + 2 > offsets.length) {
+        offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+      }
+      offsets[2 * size] = start;
+      offsets[2 * size + 1] = end + 1;
+      size++;
+    }
+    return new LazyResultList<T>(call, data, offsets, size);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T get(int index) {
+    Object item = decoded[index];
+    if (item == null) {
+      item = call.parseItem(getNode(index));
+      decoded[index] = item;
+    }
+    return (T) item;
+  }
+
+  @Override
+  public int size() {
+    return decoded.length;
+  }
+
+  /**
+   * Returns the JSON of an item without decoding it. For a raw response, the item is read into a new tree on every call.
+   *
+   * @param index
+   *          Index of the item
+   * @return The item as returned by the API
+   */
+  public JsonNode getNode(int index) {
+    checkIndex(index);
+    if (items != null) {
+      return items.get(index);
+    }
+    try {
+      final JsonParser jp = parser(index);
+      final JsonNode node = OM.readTree(jp);
+      jp.close();
+      return node;
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Could not read item " + index, e);
+    }
+  }
+
+  /**
+   * Returns a single field of an item without decoding the item. For a raw response, the fields in front of it are skipped token by token.
+   *
+   * @param index
+   *          Index of the item
+   * @param field
+   *          Name of the field, e.g. "file"
+   * @return Value of the field, <tt>null</tt> if the item doesn't have it
+   */
+  public JsonNode getField(int index, String field) {
+    checkIndex(index);
+    if (items != null) {
+      return items.get(index).get(field);
+    }
+    try {
+      final JsonParser jp = parser(index);
+      jp.nextToken();
+      while (jp.nextToken() == JsonToken.FIELD_NAME) {
+        final String name = jp.getCurrentName();
+        jp.nextToken();
+        if (name.equals(field)) {
+          return OM.readTree(jp);
+        }
+        jp.skipChildren();
+      }
+      return null;
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Could not read item " + index, e);
+    }
+  }
+
+  /**
+   * Decodes an item with the given fields only, as if no other properties had been requested. All other fields of the model stay empty; nothing
+   * else of the item is decoded. The projection is not kept, every call decodes it again.
+   *
+   * @param index
+   *          Index of the item
+   * @param fields
+   *          Names of the fields to decode, e.g. "movieid" and "file"
+   * @return The item with the given fields
+   */
+  public T getProjection(int index, String... fields) {
+    checkIndex(index);
+    final ObjectNode projection = OM.createObjectNode();
+    if (items != null) {
+      for (String field : fields) {
+        final JsonNode value = items.get(index).get(field);
+        if (value != null) {
+          projection.put(field, value);
+        }
+      }
+      return call.parseItem(projection);
+    }
+    final Set<String> wanted = new HashSet<String>(Arrays.asList(fields));
+    try {
+      final JsonParser jp = parser(index);
+      jp.nextToken();
+      while (jp.nextToken() == JsonToken.FIELD_NAME) {
+        final String name = jp.getCurrentName();
+        jp.nextToken();
+        if (wanted.contains(name)) {
+          projection.put(name, OM.readTree(jp));
+        }
+        else {
+          jp.skipChildren();
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Could not read item " + index, e);
+    }
+    return call.parseItem(projection);
+  }
+
+  /**
+   * @param index
+   *          Index of the item
+   * @return <tt>true</tt> if the item has already been decoded
+   */
+  public boolean isDecoded(int index) {
+    return decoded[index] != null;
+  }
+
+  private JsonParser parser(int index) throws IOException {
+    final int start = offsets[2 * index];
+    return OM.getJsonFactory().createJsonParser(data, start, offsets[2 * index + 1] - start);
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= decoded.length) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + decoded.length);
+    }
+  }
+}
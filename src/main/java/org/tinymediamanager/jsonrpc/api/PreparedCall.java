@@ -0,0 +1,185 @@
+package org.tinymediamanager.jsonrpc.api;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.util.ByteArrayBuilder;
+
+/**
+ * A call serialized once, for requests sent over and over again with the same parameters, e.g. when polling <tt>Player.GetProperties</tt>.
+ * <p/>
+ * The method and parameters of the call are encoded to an immutable byte template when preparing it. Every {@link #newCall() new call} of the
+ * template only gets its own ID, which is spliced into the template when the request is sent; no parameters are copied and no JSON is written. The
+ * response is parsed by the template call, so the new calls return the same results as the template would.
+ * <p/>
+ * Since the template is encoded right away, later changes to the call (e.g. to its {@link AbstractCall#getRequest() request tree}) are not picked
+ * up.
+ * <p/>
+ * <u>Example</u>:
+ *
+ * <pre>
+ * PreparedCall&lt;PlayerModel.PropertyValue&gt; poll = new PreparedCall&lt;PlayerModel.PropertyValue&gt;(new Player.GetProperties(1, "time"));
+ * ...
+ * connectionManager.call(poll, callback);
+ * </pre>
+ */
+public final class PreparedCall<T> {
+
+  /**
+   * Start of every request, followed by the ID.
+   */
+  private static final byte[]   HEAD              = "{\"jsonrpc\":\"2.0\",\"id\":".getBytes(StandardCharsets.UTF_8);
+  /**
+   * Start of the notification the template is cut from.
+   */
+  private static final byte[]   NOTIFICATION_HEAD = "{\"jsonrpc\":\"2.0\",".getBytes(StandardCharsets.UTF_8);
+
+  private final AbstractCall<T> template;
+  /**
+   * The request following the ID, starting with the comma.
+   */
+  private final byte[]          tail;
+
+  /**
+   * Encodes the call to a template.
+   *
+   * @param template
+   *          Call whose method and parameters are sent by all calls of the template; its own ID is not used
+   */
+  public PreparedCall(AbstractCall<T> template) {
+    this.template = template;
+    final ByteArrayBuilder buffer = new ByteArrayBuilder(256);
+    try {
+      final JsonGenerator g = AbstractCall.OM.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8);
+      template.writeNotification(g);
+      g.close();
+    }
+    catch (IOException e) {
+      throw new IllegalArgumentException("Could not encode " + template.getName(), e);
+    }
+    final byte[] notification = buffer.toByteArray();
+    if (!Arrays.equals(Arrays.copyOf(notification, NOTIFICATION_HEAD.length), NOTIFICATION_HEAD)) {
+      throw new IllegalStateException("Unexpected notification of " + template.getName());
+    }
+    tail = new byte[notification.length - NOTIFICATION_HEAD.length + 1];
+    tail[0] = ',';
+    System.arraycopy(notification, NOTIFICATION_HEAD.length, tail, 1, tail.length - 1);
+  }
+
+  /**
+   * @return The call the template has been prepared from
+   */
+  public AbstractCall<T> getTemplate() {
+    return template;
+  }
+
+  /**
+   * Creates a call sending the request of the template under a new ID.
+   *
+   * @return A new call, to be executed once
+   */
+  public Instance<T> newCall() {
+    return new Instance<T>(this);
+  }
+
+  /**
+   * @return The request with the given ID as UTF-8 encoded JSON
+   */
+  private byte[] encode(long id) {
+    int digits = 1;
+    for (long rest = id / 10; rest > 0; rest /= 10) {
+      digits++;
+    }
+    final byte[] data = new byte[HEAD.length + digits + tail.length];
+    System.arraycopy(HEAD, 0, data, 0, HEAD.length);
+    long rest = id;
+    for (int i = HEAD.length + digits - 1; i >= HEAD.length; i--) {
+      data[i] = (byte) ('0' + rest % 10);
+      rest /= 10;
+    }
+    System.arraycopy(tail, 0, data, HEAD.length + digits, tail.length);
+    return data;
+  }
+
+  /**
+   * A call of a template. It behaves like the template call, but has its own ID and response.
+   */
+  public static final class Instance<T> extends AbstractCall<T> {
+    private final PreparedCall<T> prepared;
+
+    private Instance(PreparedCall<T> prepared) {
+      this.prepared = prepared;
+      setPriority(prepared.template.getPriority());
+      setLazyResults(prepared.template.isLazyResults());
+    }
+
+    /**
+     * Returns the request as UTF-8 encoded JSON, spliced from the template.
+     *
+     * @return The encoded request
+     */
+    public byte[] toBytes() {
+      return prepared.encode(getId());
+    }
+
+    @Override
+    public String getName() {
+      return prepared.template.getName();
+    }
+
+    @Override
+    protected boolean returnsList() {
+      return prepared.template.returnsList();
+    }
+
+    @Override
+    public void writeRequest(JsonGenerator g) throws IOException {
+      writeRequest(g, getId());
+    }
+
+    @Override
+    public void writeRequest(JsonGenerator g, long id) throws IOException {
+      prepared.template.writeRequest(g, id);
+    }
+
+    @Override
+    public void writeNotification(JsonGenerator g) throws IOException {
+      writeRequest(g, 0);
+    }
+
+    @Override
+    public boolean isIdempotent() {
+      return prepared.template.isIdempotent();
+    }
+
+    @Override
+    public String getCoalescingKey() {
+      return prepared.template.getCoalescingKey();
+    }
+
+    @Override
+    protected T parseOne(JsonNode obj) {
+      return prepared.template.parseOne(obj);
+    }
+
+    @Override
+    protected ArrayList<T> parseMany(JsonNode obj) {
+      return prepared.template.parseMany(obj);
+    }
+
+    @Override
+    protected String getStreamingKey() {
+      return prepared.template.getStreamingKey();
+    }
+
+    @Override
+    protected T parseItem(JsonNode node) {
+      return prepared.template.parseItem(node);
+    }
+  }
+}
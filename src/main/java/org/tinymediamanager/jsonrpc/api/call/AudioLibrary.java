@@ -3994,8 +3994,7 @@ public final class AudioLibrary {
       if (songs != null) {
         final ArrayList<AudioModel.SongDetail> ret = new ArrayList<AudioModel.SongDetail>(songs.size());
         for (int i = 0; i < songs.size(); i++) {
-          final ObjectNode item = (ObjectNode) songs.get(i);
-          ret.add(new AudioModel.SongDetail(item));
+          ret.add(parseItem(songs.get(i)));
         }
         return ret;
       }
@@ -4004,6 +4003,16 @@ public final class AudioLibrary {
       }
     }
 
+    @Override
+    protected String getStreamingKey() {
+      return RESULT;
+    }
+
+    @Override
+    protected AudioModel.SongDetail parseItem(JsonNode node) {
+      return new AudioModel.SongDetail(node);
+    }
+
     @Override
     public String getName() {
       return API_TYPE;
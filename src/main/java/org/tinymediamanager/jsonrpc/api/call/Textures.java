@@ -24,7 +24,6 @@ import java.util.ArrayList;
 
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.node.ArrayNode;
-import org.codehaus.jackson.node.ObjectNode;
 import org.tinymediamanager.jsonrpc.api.AbstractCall;
 import org.tinymediamanager.jsonrpc.api.model.ListModel;
 import org.tinymediamanager.jsonrpc.api.model.TexturesModel;
@@ -62,8 +61,7 @@ public final class Textures {
       if (textures != null) {
         final ArrayList<TexturesModel.TextureDetail> ret = new ArrayList<TexturesModel.TextureDetail>(textures.size());
         for (int i = 0; i < textures.size(); i++) {
-          final ObjectNode item = (ObjectNode) textures.get(i);
-          ret.add(new TexturesModel.TextureDetail(item));
+          ret.add(parseItem(textures.get(i)));
         }
         return ret;
       }
@@ -72,6 +70,16 @@ public final class Textures {
       }
     }
 
+    @Override
+    protected String getStreamingKey() {
+      return RESULT;
+    }
+
+    @Override
+    protected TexturesModel.TextureDetail parseItem(JsonNode node) {
+      return new TexturesModel.TextureDetail(node);
+    }
+
     @Override
     public String getName() {
       return API_TYPE;
@@ -2073,8 +2073,7 @@ public final class VideoLibrary {
       if (episodes != null) {
         final ArrayList<VideoModel.EpisodeDetail> ret = new ArrayList<VideoModel.EpisodeDetail>(episodes.size());
         for (int i = 0; i < episodes.size(); i++) {
-          final ObjectNode item = (ObjectNode) episodes.get(i);
-          ret.add(new VideoModel.EpisodeDetail(item));
+          ret.add(parseItem(episodes.get(i)));
         }
         return ret;
       }
@@ -2083,6 +2082,16 @@ public final class VideoLibrary {
       }
     }
 
+    @Override
+    protected String getStreamingKey() {
+      return RESULT;
+    }
+
+    @Override
+    protected VideoModel.EpisodeDetail parseItem(JsonNode node) {
+      return new VideoModel.EpisodeDetail(node);
+    }
+
     @Override
     public String getName() {
       return API_TYPE;
@@ -3347,8 +3356,7 @@ public final class VideoLibrary {
       if (movies != null) {
         final ArrayList<VideoModel.MovieDetail> ret = new ArrayList<VideoModel.MovieDetail>(movies.size());
         for (int i = 0; i < movies.size(); i++) {
-          final ObjectNode item = (ObjectNode) movies.get(i);
-          ret.add(new VideoModel.MovieDetail(item));
+          ret.add(parseItem(movies.get(i)));
         }
         return ret;
       }
@@ -3357,6 +3365,16 @@ public final class VideoLibrary {
       }
     }
 
+    @Override
+    protected String getStreamingKey() {
+      return RESULT;
+    }
+
+    @Override
+    protected VideoModel.MovieDetail parseItem(JsonNode node) {
+      return new VideoModel.MovieDetail(node);
+    }
+
     @Override
     public String getName() {
       return API_TYPE;
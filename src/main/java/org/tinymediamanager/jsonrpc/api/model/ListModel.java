@@ -20,6 +20,7 @@
  */
 package org.tinymediamanager.jsonrpc.api.model;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -27,6 +28,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.node.ArrayNode;
 import org.codehaus.jackson.node.ObjectNode;
@@ -90,6 +92,22 @@ public final class ListModel {
       return null; // this is completely excluded. theoretically.
     }
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+      if (and != null) {
+        and.writeJson(g);
+      }
+      else if (filterRuleAlbums != null) {
+        filterRuleAlbums.writeJson(g);
+      }
+      else if (or != null) {
+        or.writeJson(g);
+      }
+      else {
+        g.writeNull();
+      }
+    }
+
     /**
      * Note: This class is used as parameter only.<br/>
      * <i>This class was generated automatically from XBMC's JSON-RPC introspect.</i>
@@ -120,6 +138,17 @@ public final class ListModel {
         return node;
       }
 
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(AND);
+        for (AlbumFilter item : and) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
+
     }
 
     /**
@@ -152,6 +181,17 @@ public final class ListModel {
         return node;
       }
 
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(OR);
+        for (AlbumFilter item : or) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
+
     }
   }
 
@@ -210,6 +250,22 @@ public final class ListModel {
       return null; // this is completely excluded. theoretically.
     }
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+      if (and != null) {
+        and.writeJson(g);
+      }
+      else if (filterRuleArtists != null) {
+        filterRuleArtists.writeJson(g);
+      }
+      else if (or != null) {
+        or.writeJson(g);
+      }
+      else {
+        g.writeNull();
+      }
+    }
+
     /**
      * Note: This class is used as parameter only.<br/>
      * <i>This class was generated automatically from XBMC's JSON-RPC introspect.</i>
@@ -240,6 +296,17 @@ public final class ListModel {
         return node;
       }
 
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(AND);
+        for (ArtistFilter item : and) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
+
     }
 
     /**
@@ -272,6 +339,17 @@ public final class ListModel {
         return node;
       }
 
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(OR);
+        for (ArtistFilter item : or) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
+
     }
   }
 
@@ -330,6 +408,22 @@ public final class ListModel {
       return null; // this is completely excluded. theoretically.
     }
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+      if (and != null) {
+        and.writeJson(g);
+      }
+      else if (filterRuleEpisodes != null) {
+        filterRuleEpisodes.writeJson(g);
+      }
+      else if (or != null) {
+        or.writeJson(g);
+      }
+      else {
+        g.writeNull();
+      }
+    }
+
     /**
      * Note: This class is used as parameter only.<br/>
      * <i>This class was generated automatically from XBMC's JSON-RPC introspect.</i>
@@ -360,6 +454,17 @@ public final class ListModel {
         return node;
       }
 
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(AND);
+        for (EpisodeFilter item : and) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
+
     }
 
     /**
@@ -392,6 +497,17 @@ public final class ListModel {
         return node;
       }
 
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(OR);
+        for (EpisodeFilter item : or) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
+
     }
   }
 
@@ -450,6 +566,22 @@ public final class ListModel {
       return null; // this is completely excluded. theoretically.
     }
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+      if (and != null) {
+        and.writeJson(g);
+      }
+      else if (filterRuleMovies != null) {
+        filterRuleMovies.writeJson(g);
+      }
+      else if (or != null) {
+        or.writeJson(g);
+      }
+      else {
+        g.writeNull();
+      }
+    }
+
     /**
      * Note: This class is used as parameter only.<br/>
      * <i>This class was generated automatically from XBMC's JSON-RPC introspect.</i>
@@ -480,6 +612,17 @@ public final class ListModel {
         return node;
       }
 
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(AND);
+        for (MovieFilter item : and) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
+
     }
 
     /**
@@ -512,6 +655,17 @@ public final class ListModel {
         return node;
       }
 
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(OR);
+        for (MovieFilter item : or) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
+
     }
   }
 
@@ -570,6 +724,22 @@ public final class ListModel {
       return null; // this is completely excluded. theoretically.
     }
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+      if (and != null) {
+        and.writeJson(g);
+      }
+      else if (filterRuleMusicVideos != null) {
+        filterRuleMusicVideos.writeJson(g);
+      }
+      else if (or != null) {
+        or.writeJson(g);
+      }
+      else {
+        g.writeNull();
+      }
+    }
+
     /**
      * Note: This class is used as parameter only.<br/>
      * <i>This class was generated automatically from XBMC's JSON-RPC introspect.</i>
@@ -600,6 +770,17 @@ public final class ListModel {
         return node;
       }
 
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(AND);
+        for (MusicVideoFilter item : and) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
+
     }
 
     /**
@@ -632,6 +813,17 @@ public final class ListModel {
         return node;
       }
 
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(OR);
+        for (MusicVideoFilter item : or) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
+
     }
   }
 
@@ -672,6 +864,27 @@ public final class ListModel {
       return node;
     }
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+      g.writeStartObject();
+      writeFields(g);
+      g.writeEndObject();
+    }
+
+    /**
+     * Writes the fields of the rule, extended by the rules of the single media types.
+     */
+    protected void writeFields(JsonGenerator g) throws IOException {
+      g.writeStringField(OPERATOR, operator); // enum
+      g.writeFieldName(VALUE);
+      if (value == null) {
+        g.writeNull();
+      }
+      else {
+        value.writeJson(g);
+      }
+    }
+
     /**
      * Note: This class is used as parameter only.<br/>
      * <i>This class was generated automatically from XBMC's JSON-RPC introspect.</i>
@@ -714,6 +927,23 @@ public final class ListModel {
         return null; // this is completely excluded. theoretically.
       }
 
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        if (stringArg != null) {
+          g.writeString(stringArg);
+        }
+        else if (stringArgList != null) {
+          g.writeStartArray();
+          for (String item : stringArgList) {
+            g.writeString(item);
+          }
+          g.writeEndArray();
+        }
+        else {
+          g.writeNull();
+        }
+      }
+
     }
 
     /**
@@ -780,6 +1010,12 @@ public final class ListModel {
       return node;
     }
 
+    @Override
+    protected void writeFields(JsonGenerator g) throws IOException {
+      super.writeFields(g);
+      g.writeStringField(FIELD, field); // enum
+    }
+
     /**
      * API Name: <tt>field</tt>
      */
@@ -844,6 +1080,12 @@ public final class ListModel {
       return node;
     }
 
+    @Override
+    protected void writeFields(JsonGenerator g) throws IOException {
+      super.writeFields(g);
+      g.writeStringField(FIELD, field); // enum
+    }
+
     /**
      * API Name: <tt>field</tt>
      */
@@ -908,6 +1150,12 @@ public final class ListModel {
       return node;
     }
 
+    @Override
+    protected void writeFields(JsonGenerator g) throws IOException {
+      super.writeFields(g);
+      g.writeStringField(FIELD, field); // enum
+    }
+
     /**
      * API Name: <tt>field</tt>
      */
@@ -993,6 +1241,12 @@ public final class ListModel {
       return node;
     }
 
+    @Override
+    protected void writeFields(JsonGenerator g) throws IOException {
+      super.writeFields(g);
+      g.writeStringField(FIELD, field); // enum
+    }
+
     /**
      * API Name: <tt>field</tt>
      */
@@ -1080,6 +1334,12 @@ public final class ListModel {
       return node;
     }
 
+    @Override
+    protected void writeFields(JsonGenerator g) throws IOException {
+      super.writeFields(g);
+      g.writeStringField(FIELD, field); // enum
+    }
+
     /**
      * API Name: <tt>field</tt>
      */
@@ -1154,6 +1414,12 @@ public final class ListModel {
       return node;
     }
 
+    @Override
+    protected void writeFields(JsonGenerator g) throws IOException {
+      super.writeFields(g);
+      g.writeStringField(FIELD, field); // enum
+    }
+
     /**
      * API Name: <tt>field</tt>
      */
@@ -1221,6 +1487,12 @@ public final class ListModel {
       return node;
     }
 
+    @Override
+    protected void writeFields(JsonGenerator g) throws IOException {
+      super.writeFields(g);
+      g.writeStringField(FIELD, field); // enum
+    }
+
     /**
      * API Name: <tt>field</tt>
      */
@@ -1290,6 +1562,12 @@ public final class ListModel {
       return node;
     }
 
+    @Override
+    protected void writeFields(JsonGenerator g) throws IOException {
+      super.writeFields(g);
+      g.writeStringField(FIELD, field); // enum
+    }
+
     /**
      * API Name: <tt>field</tt>
      */
@@ -1365,6 +1643,22 @@ public final class ListModel {
       return null; // this is completely excluded. theoretically.
     }
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+      if (and != null) {
+        and.writeJson(g);
+      }
+      else if (filterRuleSongs != null) {
+        filterRuleSongs.writeJson(g);
+      }
+      else if (or != null) {
+        or.writeJson(g);
+      }
+      else {
+        g.writeNull();
+      }
+    }
+
     /**
      * Note: This class is used as parameter only.<br/>
      * <i>This class was generated automatically from XBMC's JSON-RPC introspect.</i>
@@ -1395,6 +1689,17 @@ public final class ListModel {
         return node;
       }
 
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(AND);
+        for (SongFilter item : and) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
+
     }
 
     /**
@@ -1426,6 +1731,17 @@ public final class ListModel {
         node.put(OR, orArray);
         return node;
       }
+
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(OR);
+        for (SongFilter item : or) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
     }
   }
 
@@ -1484,6 +1800,22 @@ public final class ListModel {
       return null; // this is completely excluded. theoretically.
     }
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+      if (and != null) {
+        and.writeJson(g);
+      }
+      else if (filterRuleTVShows != null) {
+        filterRuleTVShows.writeJson(g);
+      }
+      else if (or != null) {
+        or.writeJson(g);
+      }
+      else {
+        g.writeNull();
+      }
+    }
+
     /**
      * Note: This class is used as parameter only.<br/>
      * <i>This class was generated automatically from XBMC's JSON-RPC introspect.</i>
@@ -1513,6 +1845,17 @@ public final class ListModel {
         node.put(AND, andArray);
         return node;
       }
+
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(AND);
+        for (TVShowFilter item : and) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
     }
 
     /**
@@ -1544,6 +1887,17 @@ public final class ListModel {
         node.put(OR, orArray);
         return node;
       }
+
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(OR);
+        for (TVShowFilter item : or) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
     }
   }
 
@@ -1602,6 +1956,22 @@ public final class ListModel {
       return null; // this is completely excluded. theoretically.
     }
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+      if (and != null) {
+        and.writeJson(g);
+      }
+      else if (filterRuleTextures != null) {
+        filterRuleTextures.writeJson(g);
+      }
+      else if (or != null) {
+        or.writeJson(g);
+      }
+      else {
+        g.writeNull();
+      }
+    }
+
     /**
      * Note: This class is used as parameter only.<br/>
      * <i>This class was generated automatically from XBMC's JSON-RPC introspect.</i>
@@ -1631,6 +2001,17 @@ public final class ListModel {
         node.put(AND, andArray);
         return node;
       }
+
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(AND);
+        for (TextureFilter item : and) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
     }
 
     /**
@@ -1662,6 +2043,17 @@ public final class ListModel {
         node.put(OR, orArray);
         return node;
       }
+
+      @Override
+      public void writeJson(JsonGenerator g) throws IOException {
+        g.writeStartObject();
+        g.writeArrayFieldStart(OR);
+        for (TextureFilter item : or) {
+          item.writeJson(g);
+        }
+        g.writeEndArray();
+        g.writeEndObject();
+      }
     }
   }
 
@@ -2607,6 +2999,14 @@ public final class ListModel {
       return node;
     }
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+      g.writeStartObject();
+      writeField(g, END, end);
+      writeField(g, START, start);
+      g.writeEndObject();
+    }
+
   }
 
   /**
@@ -2728,6 +3128,15 @@ public final class ListModel {
       return node;
     }
 
+    @Override
+    public void writeJson(JsonGenerator g) throws IOException {
+      g.writeStartObject();
+      writeField(g, IGNOREARTICLE, ignorearticle);
+      g.writeStringField(METHOD, method); // enum
+      g.writeStringField(ORDER, order); // enum
+      g.writeEndObject();
+    }
+
     /**
      * API Name: <tt>order</tt>
      */
@@ -22,6 +22,7 @@
 package org.tinymediamanager.jsonrpc.config;
 
 import java.util.Locale;
+import java.util.Objects;
 
 /**
  * A set of configuration data needed to connect to an XBMC host.
@@ -51,6 +52,20 @@ public class HostConfig {
    */
   public final String mPassword;
 
+  /**
+   * Default connect and read timeout of HTTP requests in milliseconds, the connect timeout also applies to TCP connections.
+   */
+  private static int  DEFAULT_TIMEOUT   = 5000;
+
+  /**
+   * Connect timeout of HTTP requests and TCP connections in milliseconds.
+   */
+  private int         mConnectTimeout   = DEFAULT_TIMEOUT;
+  /**
+   * Read timeout of HTTP requests in milliseconds.
+   */
+  private int         mReadTimeout      = DEFAULT_TIMEOUT;
+
   private static int  DEFAULT_HTTP_PORT = 8080;
 
   static {
@@ -184,4 +199,57 @@ public class HostConfig {
     return mPassword;
   }
 
+  public int getConnectTimeout() {
+    return mConnectTimeout;
+  }
+
+  /**
+   * Sets the connect timeout of HTTP requests and TCP connections.
+   *
+   * @param connectTimeout
+   *          Timeout in milliseconds, 0 for infinite
+   */
+  public void setConnectTimeout(int connectTimeout) {
+    this.mConnectTimeout = connectTimeout;
+  }
+
+  public int getReadTimeout() {
+    return mReadTimeout;
+  }
+
+  /**
+   * Sets the read timeout of HTTP requests.
+   *
+   * @param readTimeout
+   *          Timeout in milliseconds, 0 for infinite
+   */
+  public void setReadTimeout(int readTimeout) {
+    this.mReadTimeout = readTimeout;
+  }
+
+  /**
+   * Two configurations are equal if they point to the same host with the same ports and credentials; timeouts are not taken into account.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof HostConfig)) {
+      return false;
+    }
+    final HostConfig other = (HostConfig) obj;
+    return mHttpPort == other.mHttpPort && mTcpPort == other.mTcpPort && Objects.equals(mAddress, other.mAddress)
+        && Objects.equals(mUsername, other.mUsername) && Objects.equals(mPassword, other.mPassword);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(mAddress, mHttpPort, mTcpPort, mUsername, mPassword);
+  }
+
+  @Override
+  public String toString() {
+    return mAddress + ":" + mHttpPort + "/" + mTcpPort;
+  }
 }
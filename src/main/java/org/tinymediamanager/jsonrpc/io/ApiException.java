@@ -121,6 +121,18 @@ public class ApiException extends Exception {
    * Not found HTTP code received (404).
    */
   public static final int     HTTP_NOT_FOUND             = 0x16;
+  /**
+   * No response received within the deadline of the request.
+   */
+  public static final int     REQUEST_TIMEOUT            = 0x17;
+  /**
+   * The request has been cancelled before its response was received.
+   */
+  public static final int     CANCELLED                  = 0x18;
+  /**
+   * The host failed repeatedly, so the request has not been sent (see {@link CircuitBreaker}).
+   */
+  public static final int     CIRCUIT_OPEN               = 0x19;
 
   public static final String  EXTRA_ERROR_CODE           = "org.xbmc.android.jsonprc.extra.ERROR_CODE";
   public static final String  EXTRA_ERROR_MESSAGE        = "org.xbmc.android.jsonprc.extra.ERROR_MESSAGE";
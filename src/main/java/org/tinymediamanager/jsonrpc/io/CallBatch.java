@@ -0,0 +1,183 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.jsonrpc.api.AbstractCall;
+
+/**
+ * Groups any number of API calls into a single JSON-RPC 2.0 batch request.
+ * <p/>
+ * All calls are sent as one array payload in a single round-trip, either via {@link JavaConnectionManager#call(CallBatch)} or
+ * {@link JsonApiRequest#execute(org.tinymediamanager.jsonrpc.config.HostConfig, CallBatch)}. Kodi answers with an array of responses (in any order)
+ * which are dispatched back to the callback of each call by id.
+ * <p/>
+ * <u>Example</u>:
+ *
+ * <pre>
+ * CallBatch batch = new CallBatch();
+ * for (MovieDetail movie : movies) {
+ *   batch.add(new VideoLibrary.GetMovieDetails(movie.movieid, MovieFields.FILE), callback);
+ * }
+ * connectionManager.call(batch);
+ * </pre>
+ */
+public class CallBatch {
+  private static final Logger             LOGGER  = LoggerFactory.getLogger(CallBatch.class);
+  private static final ObjectMapper       OM      = new ObjectMapper();
+
+  private final Map<Long, CallEntry<?>>   entries = new LinkedHashMap<Long, CallEntry<?>>();
+
+  /**
+   * Adds a call to the batch.
+   *
+   * @param call
+   *          Call to execute
+   * @param callback
+   *          Callback receiving the response or error of this call
+   * @return This batch
+   */
+  public <T> CallBatch add(AbstractCall<T> call, ApiCallback<T> callback) {
+    entries.put(call.getId(), new CallEntry<T>(call, callback));
+    return this;
+  }
+
+  /**
+   * Adds a call to the batch.
+   *
+   * @param call
+   *          Call to execute
+   * @return Future completing with the call containing its response once the batch has been answered
+   */
+  public <T> CompletableFuture<AbstractCall<T>> add(AbstractCall<T> call) {
+    final FutureCallback<T> callback = new FutureCallback<T>();
+    add(call, callback);
+    return callback.getFuture();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  /**
+   * Returns the batch request, an array containing the request objects of all calls.
+   *
+   * @return Array of requests
+   */
+  public ArrayNode getRequest() {
+    final ArrayNode request = OM.createArrayNode();
+    for (CallEntry<?> entry : entries.values()) {
+      request.add(entry.call.getRequest());
+    }
+    return request;
+  }
+
+  /**
+   * Writes the batch request, an array containing the request objects of all calls, without building it as tree first.
+   *
+   * @param g
+   *          Generator to write the request with
+   * @throws IOException
+   */
+  void writeRequest(JsonGenerator g) throws IOException {
+    g.writeStartArray();
+    for (CallEntry<?> entry : entries.values()) {
+      entry.call.writeRequest(g);
+    }
+    g.writeEndArray();
+  }
+
+  List<CallEntry<?>> getEntries() {
+    return new ArrayList<CallEntry<?>>(entries.values());
+  }
+
+  /**
+   * Dispatches the response of a batch request to the callbacks of the single calls. Calls not answered by the response are failed.
+   *
+   * @param response
+   *          The response array, or a single error object if the whole batch was rejected
+   */
+  void dispatch(JsonNode response) {
+    final Map<Long, CallEntry<?>> pending = new LinkedHashMap<Long, CallEntry<?>>(entries);
+
+    if (response != null && response.isArray()) {
+      for (JsonNode node : response) {
+        final CallEntry<?> entry = pending.remove(ResponseParser.getId(node));
+        if (entry != null) {
+          entry.respond(node);
+        }
+        else {
+          LOGGER.error("No such request in batch: DATA={}", node.toString());
+        }
+      }
+    }
+    else if (response != null && response.has("error")) {
+      // the batch as a whole was rejected
+      for (CallEntry<?> entry : pending.values()) {
+        entry.respond(response);
+      }
+      pending.clear();
+    }
+
+    for (CallEntry<?> entry : pending.values()) {
+      entry.callback.onError(ApiException.RESPONSE_ERROR, "No response found for call in batch response.", null);
+    }
+  }
+
+  /**
+   * Fails all calls of the batch.
+   *
+   * @param code
+   *          Error code, see {@link ApiException}
+   * @param message
+   *          Error message
+   */
+  void fail(int code, String message) {
+    for (CallEntry<?> entry : entries.values()) {
+      entry.callback.onError(code, message, null);
+    }
+  }
+
+  /**
+   * A call of the batch along with its callback.
+   */
+  static class CallEntry<T> {
+    final AbstractCall<T> call;
+    final ApiCallback<T>  callback;
+
+    CallEntry(AbstractCall<T> call, ApiCallback<T> callback) {
+      this.call = call;
+      this.callback = callback;
+    }
+
+    /**
+     * Puts the response into the call and notifies the callback.
+     *
+     * @param node
+     *          Response object of this call
+     */
+    void respond(JsonNode node) {
+      if (node.has("error")) {
+        ResponseParser.notifyError(callback, node.get("error"));
+      }
+      else {
+        call.setResponse(node);
+        callback.onResponse(call);
+      }
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.jsonrpc.config.HostConfig;
+
+/**
+ * Stops sending requests to a host which failed repeatedly, for both the TCP ({@link JavaConnectionManager}) and the HTTP ({@link JsonApiRequest})
+ * transport.
+ * <p/>
+ * The circuit is {@link State#CLOSED} as long as the host answers. After a number of failures in a row (connection errors and timeouts of sent
+ * requests, not error responses or requests timing out in our own queue), it opens: for a while, requests fail right away with
+ * {@link ApiException#CIRCUIT_OPEN} instead of waiting for a connect timeout. Then it is {@link State#HALF_OPEN}: a single request is let through
+ * as probe, and depending on its outcome the circuit closes or opens again.
+ * <p/>
+ * There is one breaker per host address, shared by all transports and ports.
+ */
+public class CircuitBreaker {
+  private static final Logger                                LOGGER                    = LoggerFactory.getLogger(CircuitBreaker.class);
+
+  /**
+   * Default number of failures in a row opening the circuit.
+   */
+  public static final int                                    DEFAULT_FAILURE_THRESHOLD = 5;
+  /**
+   * Default time the circuit stays open in milliseconds.
+   */
+  public static final long                                   DEFAULT_OPEN_TIME         = 5000;
+
+  private static final ConcurrentMap<String, CircuitBreaker> BREAKERS                  = new ConcurrentHashMap<String, CircuitBreaker>();
+
+  private final String                                       host;
+  private volatile int                                       failureThreshold          = DEFAULT_FAILURE_THRESHOLD;
+  private volatile long                                      openTime                  = TimeUnit.MILLISECONDS.toNanos(DEFAULT_OPEN_TIME);
+
+  private volatile State                                     state                     = State.CLOSED;
+  private volatile int                                       failures;
+  private long                                               openedAt;
+  private long                                               probeSentAt;
+
+  /**
+   * State of the circuit.
+   */
+  public enum State {
+    /**
+     * Requests are sent.
+     */
+    CLOSED,
+    /**
+     * Requests fail right away.
+     */
+    OPEN,
+    /**
+     * A single request is sent to find out whether the host is back.
+     */
+    HALF_OPEN
+  }
+
+  private CircuitBreaker(String host) {
+    this.host = host;
+  }
+
+  /**
+   * Returns the breaker of a host.
+   *
+   * @param config
+   *          Host configuration
+   * @return The breaker shared by all requests to the address of the host
+   */
+  public static CircuitBreaker forHost(HostConfig config) {
+    CircuitBreaker breaker = BREAKERS.get(config.mAddress);
+    if (breaker == null) {
+      breaker = new CircuitBreaker(config.mAddress);
+      final CircuitBreaker existing = BREAKERS.putIfAbsent(config.mAddress, breaker);
+      if (existing != null) {
+        breaker = existing;
+      }
+    }
+    return breaker;
+  }
+
+  /**
+   * @param failureThreshold
+   *          Number of failures in a row opening the circuit
+   * @param openTime
+   *          Time the circuit stays open before a probe is sent; also the time after which a probe without outcome is given up
+   * @param unit
+   *          Unit of the open time
+   */
+  public void configure(int failureThreshold, long openTime, TimeUnit unit) {
+    this.failureThreshold = Math.max(1, failureThreshold);
+    this.openTime = unit.toNanos(openTime);
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * Closes the circuit, e.g. after the host has been restarted.
+   */
+  public synchronized void reset() {
+    failures = 0;
+    state = State.CLOSED;
+  }
+
+  /**
+   * Checks whether a request may be sent.
+   *
+   * @return <tt>true</tt> if the circuit is closed or the request is the probe, <tt>false</tt> if it must fail
+   */
+  public boolean allowRequest() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+    synchronized (this) {
+      final long now = System.nanoTime();
+      switch (state) {
+        case CLOSED:
+          return true;
+        case OPEN:
+          if (now - openedAt < openTime) {
+            return false;
+          }
+          LOGGER.debug("Probing {}", host);
+          state = State.HALF_OPEN;
+          probeSentAt = now;
+          return true;
+        default:
+          // a probe is in flight, unless its outcome got lost
+          if (now - probeSentAt < openTime) {
+            return false;
+          }
+          probeSentAt = now;
+          return true;
+      }
+    }
+  }
+
+  /**
+   * Like {@link #allowRequest()}, but throws if the request must fail.
+   *
+   * @throws ApiException
+   *           with {@link ApiException#CIRCUIT_OPEN} if the circuit is open
+   */
+  void acquire() throws ApiException {
+    if (!allowRequest()) {
+      throw openException();
+    }
+  }
+
+  ApiException openException() {
+    return new ApiException(ApiException.CIRCUIT_OPEN, "Circuit to " + host + " is open after " + failureThreshold + " failures.");
+  }
+
+  /**
+   * Records that the host has answered.
+   */
+  public void onSuccess() {
+    if (state == State.CLOSED && failures == 0) {
+      return;
+    }
+    synchronized (this) {
+      if (state != State.CLOSED) {
+        LOGGER.info("{} is back, closing circuit", host);
+      }
+      failures = 0;
+      state = State.CLOSED;
+    }
+  }
+
+  /**
+   * Records that the host could not be reached or didn't answer in time.
+   */
+  public synchronized void onFailure() {
+    failures++;
+    if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+      if (state == State.CLOSED) {
+        LOGGER.warn("{} failed {} times in a row, opening circuit", host, failures);
+      }
+      state = State.OPEN;
+      openedAt = System.nanoTime();
+    }
+  }
+
+  /**
+   * Records the outcome of a failed request.
+   *
+   * @param code
+   *          Error code of the request, see {@link ApiException}
+   */
+  void onError(int code) {
+    if (isHostFailure(code)) {
+      onFailure();
+    }
+    else {
+      onSuccess();
+    }
+  }
+
+  /**
+   * @return <tt>true</tt> if the error means the host could not be reached or didn't answer, as opposed to an error response
+   */
+  static boolean isHostFailure(int code) {
+    switch (code) {
+      case ApiException.IO_EXCEPTION:
+      case ApiException.IO_EXCEPTION_WHILE_READING:
+      case ApiException.IO_EXCEPTION_WHILE_WRITING:
+      case ApiException.IO_EXCEPTION_WHILE_OPENING:
+      case ApiException.IO_SOCKETTIMEOUT:
+      case ApiException.IO_UNKNOWN_HOST:
+      case ApiException.IO_DISCONNECTED:
+      case ApiException.REQUEST_TIMEOUT:
+        return true;
+      default:
+        return false;
+    }
+  }
+}
@@ -0,0 +1,344 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.jsonrpc.api.AbstractCall.Priority;
+
+/**
+ * Limits the number of requests a {@link JavaConnectionManager} has in flight at the same time, adapting the limit to the measured latency of the
+ * host.
+ * <p/>
+ * As long as the round-trip time stays close to the lowest one measured recently, the limit grows by about the square root of itself per
+ * round-trip; once requests start to pile up in Kodi and the latency rises, the limit shrinks proportionally (gradient), and a timed out request
+ * halves it. This settles at a handful of requests in flight for a host working through requests one by one.
+ * <p/>
+ * Requests over the limit wait in a queue per {@link Priority}, in the order they were made; normal requests are sent before bulk ones, and
+ * interactive requests never wait for a slot at all. The time requests spent waiting is reported by {@link #getAverageQueueTime()}.
+ * <p/>
+ * A limiter is meant for a single host. Managers connected to the same host may share one to be limited together.
+ */
+public class ConcurrencyLimiter {
+  private static final Logger       LOGGER        = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+  /**
+   * Latency increase over the lowest latency which is not considered overload.
+   */
+  private static final double       TOLERANCE     = 1.5;
+  /**
+   * Number of samples after which the lowest latency is measured anew, so it can follow a host which got slower.
+   */
+  private static final int          MIN_WINDOW    = 1000;
+  /**
+   * Weight of a new limit over the current one.
+   */
+  private static final double       SMOOTHING     = 0.2;
+  /**
+   * Weight of a new sample in the reported averages.
+   */
+  private static final double       EWMA          = 0.1;
+
+  private final int                 minLimit;
+  private final int                 maxLimit;
+
+  private final List<Deque<Ticket>> queues;
+  private double                    limit;
+  private int                       inFlight;
+  private long                      minRtt;
+  private long                      windowMinRtt;
+  private int                       windowSamples;
+  private double                    avgRtt;
+  private double                    avgQueueTime;
+
+  /**
+   * Outcome of a call, see {@link Ticket#complete(Outcome)}.
+   */
+  enum Outcome {
+    /** A response has been received; its latency is taken into account. */
+    ANSWERED,
+    /** No response has been received in time, a sign of overload. */
+    TIMED_OUT,
+    /** The call has been cancelled or failed locally; it only frees its slot. */
+    ABANDONED
+  }
+
+  /**
+   * Starts with 8 requests in flight and adapts between 1 and 64.
+   */
+  public ConcurrencyLimiter() {
+    this(8, 1, 64);
+  }
+
+  /**
+   * @param initialLimit
+   *          Number of requests in flight allowed at first
+   * @param minLimit
+   *          Lower bound of the limit, at least 1
+   * @param maxLimit
+   *          Upper bound of the limit
+   */
+  public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("Invalid limits: " + minLimit + ".." + maxLimit);
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    this.queues = newQueues();
+  }
+
+  private static List<Deque<Ticket>> newQueues() {
+    final List<Deque<Ticket>> queues = new ArrayList<Deque<Ticket>>(Priority.values().length);
+    for (int i = 0; i < Priority.values().length; i++) {
+      queues.add(new ArrayDeque<Ticket>());
+    }
+    return queues;
+  }
+
+  /**
+   * @return Current number of requests allowed in flight
+   */
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  /**
+   * @return Number of requests sent and not yet answered
+   */
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * @return Number of requests waiting for a free slot
+   */
+  public synchronized int getQueued() {
+    int queued = 0;
+    for (Deque<Ticket> queue : queues) {
+      queued += queue.size();
+    }
+    return queued;
+  }
+
+  /**
+   * @return Moving average of the round-trip time in milliseconds
+   */
+  public synchronized long getAverageLatency() {
+    return TimeUnit.NANOSECONDS.toMillis((long) avgRtt);
+  }
+
+  /**
+   * @return Moving average of the time requests waited for a free slot in milliseconds
+   */
+  public synchronized long getAverageQueueTime() {
+    return TimeUnit.NANOSECONDS.toMillis((long) avgQueueTime);
+  }
+
+  /**
+   * Creates the ticket of a request, to be {@link Ticket#submit(Runnable) submitted} once its calls have been registered.
+   *
+   * @param calls
+   *          Number of calls in the request, each of which is {@link Ticket#complete(Outcome) completed} on its own
+   * @param priority
+   *          Priority of the request
+   * @return A new ticket
+   */
+  Ticket newTicket(int calls, Priority priority) {
+    return new Ticket(calls, priority);
+  }
+
+  /**
+   * @return The next request to send, <tt>null</tt> if none is waiting
+   */
+  private Ticket poll() {
+    for (Deque<Ticket> queue : queues) {
+      if (!queue.isEmpty()) {
+        return queue.poll();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return <tt>true</tt> if a request of the same or a higher priority is waiting
+   */
+  private boolean hasQueued(Priority priority) {
+    for (int i = 0; i <= priority.ordinal(); i++) {
+      if (!queues.get(i).isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Sends queued requests as long as there are free slots. The requests are sent outside of the lock.
+   */
+  private void drain() {
+    while (true) {
+      final Ticket next;
+      synchronized (this) {
+        if (inFlight >= (int) limit) {
+          return;
+        }
+        next = poll();
+        if (next == null) {
+          return;
+        }
+        start(next);
+      }
+      next.run();
+    }
+  }
+
+  private void start(Ticket ticket) {
+    final long now = System.nanoTime();
+    inFlight++;
+    ticket.state = Ticket.RUNNING;
+    if (ticket.queuedAt != 0) {
+      final long waited = now - ticket.queuedAt;
+      avgQueueTime += (waited - avgQueueTime) * EWMA;
+      if (LOGGER.isDebugEnabled()) {
+        LOGGER.debug("Request waited {}ms for one of {} slots", TimeUnit.NANOSECONDS.toMillis(waited), (int) limit);
+      }
+    }
+    else {
+      avgQueueTime -= avgQueueTime * EWMA;
+    }
+    ticket.sentAt = now;
+  }
+
+  private void update(Outcome outcome, long rtt) {
+    inFlight--;
+    if (outcome == Outcome.TIMED_OUT) {
+      setLimit(limit / 2);
+      return;
+    }
+    if (outcome != Outcome.ANSWERED) {
+      return;
+    }
+
+    avgRtt = avgRtt == 0 ? rtt : avgRtt + (rtt - avgRtt) * EWMA;
+    if (minRtt == 0 || rtt < minRtt) {
+      minRtt = rtt;
+    }
+    if (windowSamples == 0 || rtt < windowMinRtt) {
+      windowMinRtt = rtt;
+    }
+    if (++windowSamples == MIN_WINDOW) {
+      minRtt = windowMinRtt;
+      windowSamples = 0;
+    }
+
+    final double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * minRtt / Math.max(rtt, 1)));
+    final double newLimit = limit * gradient + Math.sqrt(limit);
+    if (newLimit > limit && inFlight < limit / 2) {
+      // not using the current limit, so no point in raising it
+      return;
+    }
+    setLimit(limit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+  }
+
+  private void setLimit(double newLimit) {
+    limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+  }
+
+  /**
+   * The slot of one request (a single call or a batch) from submission until all of its calls are completed.
+   */
+  final class Ticket {
+    static final int NEW     = 0;
+    static final int QUEUED  = 1;
+    static final int RUNNING = 2;
+    static final int DONE    = 3;
+
+    private final Priority priority;
+    private int            remaining;
+    private Outcome        outcome = Outcome.ABANDONED;
+    private Runnable       task;
+    private int            state   = NEW;
+    private long           queuedAt;
+    private long           sentAt;
+
+    private Ticket(int calls, Priority priority) {
+      this.remaining = calls;
+      this.priority = priority;
+    }
+
+    /**
+     * Sends the request right away if there is a free slot, otherwise as soon as one is freed.
+     *
+     * @param task
+     *          Sends the request; run on the calling thread or the thread freeing a slot
+     */
+    void submit(Runnable task) {
+      synchronized (ConcurrencyLimiter.this) {
+        if (state != NEW) {
+          // all calls have been completed before being submitted
+          return;
+        }
+        this.task = task;
+        if (priority != Priority.INTERACTIVE && (inFlight >= (int) limit || hasQueued(priority))) {
+          state = QUEUED;
+          queuedAt = System.nanoTime();
+          queues.get(priority.ordinal()).add(this);
+          return;
+        }
+        start(this);
+      }
+      run();
+    }
+
+    /**
+     * @return <tt>true</tt> once the request has been given a slot and handed over for sending, <tt>false</tt> while it waits for one
+     */
+    boolean isStarted() {
+      synchronized (ConcurrencyLimiter.this) {
+        return state == RUNNING;
+      }
+    }
+
+    private void run() {
+      final Runnable t = task;
+      task = null;
+      try {
+        t.run();
+      }
+      catch (Exception e) {
+        LOGGER.error("could not send request", e);
+      }
+    }
+
+    /**
+     * Completes one call of the request; once all are completed, the slot is freed.
+     *
+     * @param callOutcome
+     *          How the call ended
+     */
+    void complete(Outcome callOutcome) {
+      synchronized (ConcurrencyLimiter.this) {
+        // a single timeout marks the whole request, otherwise any response counts
+        if (callOutcome == Outcome.TIMED_OUT || outcome == Outcome.ABANDONED) {
+          outcome = callOutcome;
+        }
+        if (--remaining > 0 || state == DONE) {
+          return;
+        }
+        if (state == QUEUED) {
+          queues.get(priority.ordinal()).remove(this);
+          task = null;
+        }
+        else if (state == RUNNING) {
+          update(outcome, System.nanoTime() - sentAt);
+        }
+        state = DONE;
+      }
+      drain();
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.tinymediamanager.jsonrpc.api.AbstractCall;
+
+/**
+ * Bridges the {@link ApiCallback} interface to a {@link CompletableFuture}.
+ * <p/>
+ * JSON-RPC errors (negative codes) complete the future with an {@link ApiException} of type {@link ApiException#API_ERROR}, errors raised by the
+ * library itself keep their {@link ApiException} code.
+ */
+class FutureCallback<T> implements ApiCallback<T> {
+
+  private final CompletableFuture<AbstractCall<T>> future = new CompletableFuture<AbstractCall<T>>();
+
+  CompletableFuture<AbstractCall<T>> getFuture() {
+    return future;
+  }
+
+  @Override
+  public void onResponse(AbstractCall<T> call) {
+    future.complete(call);
+  }
+
+  @Override
+  public void onError(int code, String message, String hint) {
+    future.completeExceptionally(toException(code, message));
+  }
+
+  static ApiException toException(int code, String message) {
+    if (code > 0) {
+      return new ApiException(code, message);
+    }
+    return new ApiException(ApiException.API_ERROR, "Error " + code + ": " + message);
+  }
+}
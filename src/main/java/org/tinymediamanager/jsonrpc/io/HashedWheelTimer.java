@@ -0,0 +1,260 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Timer for large numbers of short timeouts which are usually cancelled before they expire, such as request deadlines.
+ * <p/>
+ * Timeouts are hashed into a ring of buckets, one bucket per tick. Scheduling and cancelling are O(1) and lock-free; a single daemon thread
+ * advances the wheel once per tick and only looks at the timeouts of the current bucket. Timeouts therefore expire with a precision of one tick,
+ * and the tasks are run on the timer thread, so they must be short.
+ */
+final class HashedWheelTimer {
+  private static final Logger           LOGGER    = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+  private static HashedWheelTimer       defaultTimer;
+
+  private final String                  name;
+  private final long                    tickNanos;
+  private final Bucket[]                wheel;
+  private final int                     mask;
+  private final Queue<Entry>            scheduled = new ConcurrentLinkedQueue<Entry>();
+  private final Queue<Entry>            cancelled = new ConcurrentLinkedQueue<Entry>();
+
+  private Thread                        thread;
+  private long                          startTime;
+  private long                          tick;
+
+  /**
+   * A scheduled task.
+   */
+  interface Timeout {
+
+    /**
+     * Cancels the task unless it already has been run.
+     *
+     * @return <tt>true</tt> if the task has been cancelled by this call
+     */
+    boolean cancel();
+  }
+
+  /**
+   * @param name
+   *          Name of the timer thread
+   * @param tick
+   *          Duration of one tick
+   * @param unit
+   *          Unit of the tick duration
+   * @param wheelSize
+   *          Number of buckets, rounded up to the next power of two
+   */
+  HashedWheelTimer(String name, long tick, TimeUnit unit, int wheelSize) {
+    this.name = name;
+    this.tickNanos = unit.toNanos(tick);
+    int size = 1;
+    while (size < wheelSize) {
+      size <<= 1;
+    }
+    this.wheel = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = size - 1;
+  }
+
+  /**
+   * @return The timer shared by all connection managers (100ms ticks)
+   */
+  static synchronized HashedWheelTimer getDefault() {
+    if (defaultTimer == null) {
+      defaultTimer = new HashedWheelTimer("kodi-json-rpc-timer", 100, TimeUnit.MILLISECONDS, 512);
+    }
+    return defaultTimer;
+  }
+
+  /**
+   * Schedules a task; the timer thread is started on first use.
+   *
+   * @param task
+   *          Task to run once the delay has elapsed
+   * @param delay
+   *          Delay
+   * @param unit
+   *          Unit of the delay
+   * @return Handle to cancel the task with
+   */
+  Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    start();
+    final Entry entry = new Entry(task, System.nanoTime() - startTime + unit.toNanos(delay));
+    scheduled.add(entry);
+    return entry;
+  }
+
+  private synchronized void start() {
+    if (thread == null) {
+      startTime = System.nanoTime();
+      thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          work();
+        }
+      }, name);
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  private void work() {
+    while (true) {
+      final long deadline = tickNanos * (tick + 1);
+      long sleep = deadline - (System.nanoTime() - startTime);
+      while (sleep > 0) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(sleep);
+        }
+        catch (InterruptedException e) {
+          return;
+        }
+        sleep = deadline - (System.nanoTime() - startTime);
+      }
+
+      unlinkCancelled();
+      transferScheduled();
+      wheel[(int) (tick & mask)].expire(deadline);
+      tick++;
+    }
+  }
+
+  private void unlinkCancelled() {
+    Entry entry;
+    while ((entry = cancelled.poll()) != null) {
+      if (entry.bucket != null) {
+        entry.bucket.remove(entry);
+      }
+    }
+  }
+
+  private void transferScheduled() {
+    Entry entry;
+    while ((entry = scheduled.poll()) != null) {
+      if (entry.state.get() != Entry.PENDING) {
+        continue;
+      }
+      final long ticks = Math.max(entry.deadline / tickNanos, tick);
+      entry.rounds = (ticks - tick) / wheel.length;
+      wheel[(int) (ticks & mask)].add(entry);
+    }
+  }
+
+  /**
+   * A timeout and its position in the wheel (only touched by the timer thread, apart from the state).
+   */
+  private final class Entry implements Timeout {
+    static final int            PENDING   = 0;
+    static final int            CANCELLED = 1;
+    static final int            EXPIRED   = 2;
+
+    private final AtomicInteger state     = new AtomicInteger(PENDING);
+    private final long          deadline;
+    private Runnable            task;
+    private long                rounds;
+    private Bucket              bucket;
+    private Entry               prev;
+    private Entry               next;
+
+    Entry(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public boolean cancel() {
+      if (!state.compareAndSet(PENDING, CANCELLED)) {
+        return false;
+      }
+      // release the task right away, the entry is unlinked on the next tick
+      task = null;
+      cancelled.add(this);
+      return true;
+    }
+
+    void expire() {
+      if (!state.compareAndSet(PENDING, EXPIRED)) {
+        return;
+      }
+      final Runnable t = task;
+      task = null;
+      try {
+        t.run();
+      }
+      catch (Exception e) {
+        LOGGER.warn("timeout task failed", e);
+      }
+    }
+  }
+
+  /**
+   * Doubly-linked list of the timeouts hashed into one slot of the wheel.
+   */
+  private final class Bucket {
+    private Entry head;
+    private Entry tail;
+
+    void add(Entry entry) {
+      entry.bucket = this;
+      if (head == null) {
+        head = tail = entry;
+      }
+      else {
+        tail.next = entry;
+        entry.prev = tail;
+        tail = entry;
+      }
+    }
+
+    void remove(Entry entry) {
+      if (entry.bucket != this) {
+        return;
+      }
+      if (entry.prev != null) {
+        entry.prev.next = entry.next;
+      }
+      else {
+        head = entry.next;
+      }
+      if (entry.next != null) {
+        entry.next.prev = entry.prev;
+      }
+      else {
+        tail = entry.prev;
+      }
+      entry.prev = null;
+      entry.next = null;
+      entry.bucket = null;
+    }
+
+    void expire(long deadline) {
+      Entry entry = head;
+      while (entry != null) {
+        final Entry next = entry.next;
+        if (entry.rounds <= 0 && entry.deadline <= deadline) {
+          remove(entry);
+          entry.expire();
+        }
+        else if (entry.state.get() != Entry.PENDING) {
+          remove(entry);
+        }
+        else {
+          entry.rounds--;
+        }
+        entry = next;
+      }
+    }
+  }
+}
@@ -0,0 +1,260 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.jsonrpc.api.AbstractCall;
+import org.tinymediamanager.jsonrpc.api.call.JSONRPC;
+
+/**
+ * Checks the liveness of the host of a {@link JavaConnectionManager} by sending a <tt>JSONRPC.Ping</tt> at a fixed interval, and estimates the
+ * round-trip time from the answers.
+ * <p/>
+ * A ping not answered within the interval counts as missed and marks the host {@link State#DEGRADED}. After a number of missed pings in a row the
+ * host is considered {@link State#DEAD} and the connection is closed as lost, so a half-open connection doesn't swallow calls forever: with a
+ * {@link ReconnectPolicy} it is re-established, otherwise the manager disconnects.
+ * <p/>
+ * The round-trip time is smoothed like TCP does (RFC 6298), and percentiles are taken over the last 64 samples.
+ */
+public class HealthMonitor {
+  private static final Logger         LOGGER           = LoggerFactory.getLogger(HealthMonitor.class);
+
+  /**
+   * Default interval between two pings in milliseconds.
+   */
+  public static final long            DEFAULT_INTERVAL = 15000;
+  /**
+   * Default number of missed pings in a row after which the host is considered dead.
+   */
+  public static final int             DEFAULT_MISSED   = 3;
+
+  private static final int            WINDOW           = 64;
+
+  private final JavaConnectionManager manager;
+  private final HashedWheelTimer      timer            = HashedWheelTimer.getDefault();
+
+  private volatile long               interval         = DEFAULT_INTERVAL;
+  private volatile int                maxMissed        = DEFAULT_MISSED;
+
+  private State                       state            = State.UNKNOWN;
+  private int                         generation;
+  private HashedWheelTimer.Timeout    nextPing;
+  private int                         missed;
+  private long                        smoothedRtt;
+  private long                        rttVariation;
+  private final long[]                samples          = new long[WINDOW];
+  private int                         sampleCount;
+
+  /**
+   * Health of a host.
+   */
+  public enum State {
+    /**
+     * Not connected, or no ping has been answered yet.
+     */
+    UNKNOWN,
+    /**
+     * The last ping has been answered.
+     */
+    HEALTHY,
+    /**
+     * The last ping (or more) has not been answered in time.
+     */
+    DEGRADED,
+    /**
+     * Too many pings in a row have not been answered; the connection has been dropped.
+     */
+    DEAD
+  }
+
+  HealthMonitor(JavaConnectionManager manager) {
+    this.manager = manager;
+  }
+
+  /**
+   * Sets the interval between two pings, which is also the time a ping may take. Takes effect with the next connect.
+   *
+   * @param interval
+   *          Interval, 0 to disable the monitor
+   * @param unit
+   *          Unit of the interval
+   */
+  public void setInterval(long interval, TimeUnit unit) {
+    this.interval = unit.toMillis(interval);
+  }
+
+  /**
+   * @return The interval between two pings in milliseconds, 0 if disabled
+   */
+  public long getInterval() {
+    return interval;
+  }
+
+  /**
+   * @param maxMissed
+   *          Number of missed pings in a row after which the host is considered dead
+   */
+  public void setMaxMissed(int maxMissed) {
+    this.maxMissed = Math.max(1, maxMissed);
+  }
+
+  public int getMaxMissed() {
+    return maxMissed;
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * @return Number of pings missed in a row
+   */
+  public synchronized int getMissedPings() {
+    return missed;
+  }
+
+  /**
+   * @param unit
+   *          Unit of the result
+   * @return Smoothed round-trip time, 0 if not known yet
+   */
+  public synchronized long getSmoothedRtt(TimeUnit unit) {
+    return unit.convert(smoothedRtt, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param unit
+   *          Unit of the result
+   * @return Smoothed mean deviation of the round-trip time (jitter), 0 if not known yet
+   */
+  public synchronized long getJitter(TimeUnit unit) {
+    return unit.convert(rttVariation, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param percentile
+   *          Percentile between 0 and 100, e.g. 99
+   * @param unit
+   *          Unit of the result
+   * @return Round-trip time below which the given percentage of the recent samples lie, 0 if not known yet
+   */
+  public long getRttPercentile(double percentile, TimeUnit unit) {
+    final long[] sorted;
+    synchronized (this) {
+      sorted = Arrays.copyOf(samples, Math.min(sampleCount, WINDOW));
+    }
+    if (sorted.length == 0) {
+      return 0;
+    }
+    Arrays.sort(sorted);
+    final int index = (int) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * sorted.length) - 1;
+    return unit.convert(sorted[Math.max(0, index)], TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Starts pinging, called once connected.
+   */
+  synchronized void start() {
+    stop();
+    state = State.UNKNOWN;
+    missed = 0;
+    if (interval > 0) {
+      schedule(generation);
+    }
+  }
+
+  /**
+   * Stops pinging, called once disconnected.
+   */
+  synchronized void stop() {
+    generation++;
+    if (state != State.DEAD) {
+      state = State.UNKNOWN;
+    }
+    if (nextPing != null) {
+      nextPing.cancel();
+      nextPing = null;
+    }
+  }
+
+  private void schedule(final int gen) {
+    nextPing = timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        ping(gen);
+      }
+    }, interval, TimeUnit.MILLISECONDS);
+  }
+
+  private void ping(final int gen) {
+    final long timeout;
+    synchronized (this) {
+      if (gen != generation) {
+        return;
+      }
+      timeout = interval;
+      schedule(gen);
+    }
+
+    final JSONRPC.Ping ping = new JSONRPC.Ping();
+    // don't measure the time spent waiting behind other calls
+    ping.setPriority(AbstractCall.Priority.INTERACTIVE);
+    final long sent = System.nanoTime();
+    manager.call(ping, new ApiCallback<String>() {
+      @Override
+      public void onResponse(AbstractCall<String> call) {
+        answered(gen, System.nanoTime() - sent);
+      }
+
+      @Override
+      public void onError(int code, String message, String hint) {
+        if (code == ApiException.REQUEST_TIMEOUT) {
+          missed(gen);
+        }
+      }
+    }, timeout);
+  }
+
+  private synchronized void answered(int gen, long rtt) {
+    if (gen != generation) {
+      return;
+    }
+    if (smoothedRtt == 0) {
+      smoothedRtt = rtt;
+      rttVariation = rtt / 2;
+    }
+    else {
+      rttVariation += (Math.abs(smoothedRtt - rtt) - rttVariation) / 4;
+      smoothedRtt += (rtt - smoothedRtt) / 8;
+    }
+    samples[sampleCount++ % WINDOW] = rtt;
+    if (sampleCount == 2 * WINDOW) {
+      sampleCount = WINDOW;
+    }
+    if (state != State.HEALTHY && state != State.UNKNOWN) {
+      LOGGER.info("{} is responding again", manager.getHostConfig());
+    }
+    missed = 0;
+    state = State.HEALTHY;
+  }
+
+  private void missed(int gen) {
+    synchronized (this) {
+      if (gen != generation) {
+        return;
+      }
+      missed++;
+      if (missed < maxMissed) {
+        LOGGER.warn("{} did not answer ping {} of {}", manager.getHostConfig(), missed, maxMissed);
+        state = State.DEGRADED;
+        return;
+      }
+      state = State.DEAD;
+      stop();
+    }
+    LOGGER.error("{} did not answer {} pings, dropping the connection", manager.getHostConfig(), maxMissed);
+    manager.connectionDead();
+  }
+}
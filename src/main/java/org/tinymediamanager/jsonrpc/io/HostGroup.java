@@ -0,0 +1,332 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.jsonrpc.api.AbstractCall;
+
+/**
+ * Kodi hosts sharing one (MySQL) library, so reading the library gives the same answer on every one of them.
+ * <p/>
+ * Calls reading the video or audio library are routed to the healthy member with the fewest pending calls. If the response takes longer than a
+ * percentile of the recent response times, the call is hedged: it is sent to a second member as well, the first response wins and the other call is
+ * cancelled. All other calls, in particular those changing the library, go to the primary member.
+ * <p/>
+ * <u>Example</u>:
+ *
+ * <pre>
+ * HostGroup group = new HostGroup(livingRoom, bedroom, kitchen);
+ * group.callAsync(new VideoLibrary.GetMovieDetails(movieId, MovieFields.FILE));
+ * </pre>
+ */
+public class HostGroup {
+
+  private static final Logger               LOGGER                   = LoggerFactory.getLogger(HostGroup.class);
+
+  /**
+   * Default percentile of the response times after which a call is hedged.
+   */
+  public static final double                DEFAULT_HEDGE_PERCENTILE = 95;
+
+  private static final int                  WINDOW                   = 256;
+  private static final int                  MIN_SAMPLES              = 20;
+
+  private final JavaConnectionManager       primary;
+  private final List<JavaConnectionManager> members;
+  private final HashedWheelTimer            timer                    = HashedWheelTimer.getDefault();
+
+  private volatile double                   hedgePercentile          = DEFAULT_HEDGE_PERCENTILE;
+  private final long[]                      latencies                = new long[WINDOW];
+  private int                               latencyCount;
+
+  /**
+   * @param primary
+   *          Member receiving all calls but library reads, connected by the caller
+   * @param replicas
+   *          Further members sharing the library, connected by the caller
+   */
+  public HostGroup(JavaConnectionManager primary, JavaConnectionManager... replicas) {
+    final List<JavaConnectionManager> all = new ArrayList<JavaConnectionManager>();
+    all.add(primary);
+    all.addAll(Arrays.asList(replicas));
+    this.primary = primary;
+    this.members = Collections.unmodifiableList(all);
+  }
+
+  public JavaConnectionManager getPrimary() {
+    return primary;
+  }
+
+  public List<JavaConnectionManager> getMembers() {
+    return members;
+  }
+
+  /**
+   * @param hedgePercentile
+   *          Percentile of the recent response times after which a library read is sent to a second member, 0 to never hedge
+   */
+  public void setHedgePercentile(double hedgePercentile) {
+    this.hedgePercentile = hedgePercentile;
+  }
+
+  public double getHedgePercentile() {
+    return hedgePercentile;
+  }
+
+  /**
+   * Returns whether a call may be answered by any member: it reads the video or audio library.
+   *
+   * @param call
+   *          Call to check
+   * @return <tt>true</tt> if the call may be routed to any member
+   */
+  public static boolean isSharedRead(AbstractCall<?> call) {
+    final String name = call.getName();
+    return (name.startsWith("VideoLibrary.") || name.startsWith("AudioLibrary.")) && call.isIdempotent();
+  }
+
+  /**
+   * Executes a JSON-RPC request on the member best suited.
+   *
+   * @param call
+   *          Call to execute
+   * @param callback
+   * @return
+   */
+  public <T> HostGroup call(final AbstractCall<T> call, final ApiCallback<T> callback) {
+    final JavaConnectionManager first = isSharedRead(call) ? pick(null) : null;
+    if (first == null) {
+      primary.call(call, callback);
+    }
+    else {
+      new HedgedCall<T>(call, callback).start(first);
+    }
+    return this;
+  }
+
+  /**
+   * Executes a JSON-RPC request on the member best suited, asynchronously.
+   *
+   * @param call
+   *          Call to execute
+   * @return Future of the call, completed once the (first) response has arrived
+   */
+  public <T> CompletableFuture<AbstractCall<T>> callAsync(final AbstractCall<T> call) {
+    final FutureCallback<T> callback = new FutureCallback<T>();
+    call(call, callback);
+    return callback.getFuture();
+  }
+
+  /**
+   * @return The healthy member with the fewest pending calls, <tt>null</tt> if there is none
+   */
+  private JavaConnectionManager pick(JavaConnectionManager exclude) {
+    JavaConnectionManager best = null;
+    int bestLoad = Integer.MAX_VALUE;
+    for (JavaConnectionManager member : members) {
+      if (member == exclude || !isHealthy(member)) {
+        continue;
+      }
+      final int load = member.getPendingCalls();
+      if (load < bestLoad) {
+        best = member;
+        bestLoad = load;
+      }
+    }
+    return best;
+  }
+
+  private static boolean isHealthy(JavaConnectionManager member) {
+    if (!member.isConnected()) {
+      return false;
+    }
+    final HealthMonitor.State health = member.getHealthMonitor().getState();
+    if (health != HealthMonitor.State.HEALTHY && health != HealthMonitor.State.UNKNOWN) {
+      return false;
+    }
+    return CircuitBreaker.forHost(member.getHostConfig()).getState() == CircuitBreaker.State.CLOSED;
+  }
+
+  private synchronized void recordLatency(long nanos) {
+    latencies[latencyCount++ % WINDOW] = nanos;
+    if (latencyCount == 2 * WINDOW) {
+      latencyCount = WINDOW;
+    }
+  }
+
+  /**
+   * @return Time after which to hedge in nanoseconds, or -1 if not hedging
+   */
+  private long hedgeDelay() {
+    final double percentile = hedgePercentile;
+    final long[] sorted;
+    synchronized (this) {
+      if (percentile <= 0 || latencyCount < MIN_SAMPLES) {
+        return -1;
+      }
+      sorted = Arrays.copyOf(latencies, Math.min(latencyCount, WINDOW));
+    }
+    Arrays.sort(sorted);
+    final int index = (int) Math.ceil(Math.min(100, percentile) / 100 * sorted.length) - 1;
+    return sorted[Math.max(0, index)];
+  }
+
+  /**
+   * A library read sent to one or two members.
+   */
+  private final class HedgedCall<T> {
+    private final AbstractCall<T>    call;
+    private final ApiCallback<T>     callback;
+    private final long               started     = System.nanoTime();
+    private final AtomicBoolean      done        = new AtomicBoolean();
+    private final AtomicInteger      outstanding = new AtomicInteger();
+    private final List<Leg>          legs        = Collections.synchronizedList(new ArrayList<Leg>(2));
+    private HashedWheelTimer.Timeout hedge;
+
+    HedgedCall(AbstractCall<T> call, ApiCallback<T> callback) {
+      this.call = call;
+      this.callback = callback;
+    }
+
+    void start(final JavaConnectionManager first) {
+      final long delay = hedgeDelay();
+      send(first);
+      if (delay >= 0 && !done.get()) {
+        hedge = timer.schedule(new Runnable() {
+          @Override
+          public void run() {
+            final JavaConnectionManager second = done.get() ? null : pick(first);
+            if (second != null) {
+              send(second);
+            }
+          }
+        }, delay, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    private void send(JavaConnectionManager member) {
+      // every member gets its own copy, so the responses don't overwrite each other
+      final RawCall raw = new RawCall(call);
+      final Leg leg = new Leg(member, raw);
+      legs.add(leg);
+      outstanding.incrementAndGet();
+      member.call(raw, new ApiCallback<JsonNode>() {
+        @Override
+        public void onResponse(AbstractCall<JsonNode> response) {
+          if (done.compareAndSet(false, true)) {
+            finish(leg);
+            recordLatency(System.nanoTime() - started);
+            try {
+              call.setResponse(raw.getResponse());
+            }
+            catch (RuntimeException e) {
+              LOGGER.error("could not parse response of " + call.getName(), e);
+              callback.onError(ApiException.JSON_EXCEPTION, "Parse error: " + e.getMessage(), null);
+              return;
+            }
+            callback.onResponse(call);
+          }
+        }
+
+        @Override
+        public void onError(int code, String message, String hint) {
+          // only fail once no other member can answer anymore
+          if (outstanding.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+            finish(leg);
+            callback.onError(code, message, hint);
+          }
+        }
+      });
+      if (done.get()) {
+        // answered in the meantime, so finish() may have missed this one
+        member.cancel(raw.getId());
+      }
+    }
+
+    /**
+     * Stops hedging and cancels the calls still pending on other members.
+     */
+    private void finish(Leg winner) {
+      final HashedWheelTimer.Timeout h = hedge;
+      if (h != null) {
+        h.cancel();
+      }
+      synchronized (legs) {
+        for (Leg leg : legs) {
+          if (leg != winner) {
+            leg.member.cancel(leg.call.getId());
+          }
+        }
+      }
+    }
+  }
+
+  private static final class Leg {
+    private final JavaConnectionManager member;
+    private final RawCall               call;
+
+    Leg(JavaConnectionManager member, RawCall call) {
+      this.member = member;
+      this.call = call;
+    }
+  }
+
+  /**
+   * Sends the request of another call under a new id and keeps the response as it is.
+   */
+  private static final class RawCall extends AbstractCall<JsonNode> {
+    private final AbstractCall<?> call;
+    private JsonNode              response;
+
+    RawCall(AbstractCall<?> call) {
+      this.call = call;
+      setPriority(call.getPriority());
+    }
+
+    @Override
+    public String getName() {
+      return call.getName();
+    }
+
+    @Override
+    protected boolean returnsList() {
+      return false;
+    }
+
+    @Override
+    public void writeRequest(JsonGenerator g) throws IOException {
+      // the request of the original call (which may be prepared), under the id of this one
+      call.writeRequest(g, getId());
+    }
+
+    @Override
+    public void writeNotification(JsonGenerator g) throws IOException {
+      call.writeRequest(g, 0);
+    }
+
+    @Override
+    public boolean isIdempotent() {
+      return call.isIdempotent();
+    }
+
+    @Override
+    public void setResponse(JsonNode response) {
+      this.response = response;
+    }
+
+    JsonNode getResponse() {
+      return response;
+    }
+  }
+}
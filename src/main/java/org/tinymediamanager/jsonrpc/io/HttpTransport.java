@@ -0,0 +1,337 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.util.ByteArrayBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.jsonrpc.api.AbstractCall;
+import org.tinymediamanager.jsonrpc.api.PreparedCall;
+import org.tinymediamanager.jsonrpc.config.HostConfig;
+
+/**
+ * HTTP transport to the JSON-RPC endpoint of one Kodi host.
+ * <p/>
+ * The endpoint URL and the authorization header are built once per host. Connections are kept alive and reused: the response body is always read
+ * to the end and closed (never disconnected), which hands the socket back to the JDK's keep-alive connection cache. Calls write themselves straight
+ * to UTF-8 bytes (see {@link AbstractCall#writeRequest(JsonGenerator)}), which are sent with a fixed content length; the response is streamed
+ * straight into the JSON parser (or, for streaming calls, read token by token; calls with lazy results keep the raw response).
+ */
+class HttpTransport {
+  private static final Logger       LOGGER     = LoggerFactory.getLogger(HttpTransport.class);
+  private static final ObjectMapper OM         = new ObjectMapper();
+  private static final String       USER_AGENT = "tinyMediaManager-jsonrpclib-kodi";
+
+  /**
+   * Buffer requests are encoded into, reused by every thread sending.
+   */
+  private static final ThreadLocal<ByteArrayBuilder> BUFFER = new ThreadLocal<ByteArrayBuilder>() {
+    @Override
+    protected ByteArrayBuilder initialValue() {
+      return new ByteArrayBuilder(1024);
+    }
+  };
+
+  private final URL                 url;
+  private final String              authorization;
+
+  HttpTransport(HostConfig config) throws ApiException {
+    try {
+      this.url = new URL("http", config.getAddress(), config.getHttpPort(), "/jsonrpc");
+    }
+    catch (MalformedURLException e) {
+      throw new ApiException(ApiException.MALFORMED_URL, e.getMessage(), e);
+    }
+
+    // http basic authorization
+    if (config.getUsername() != null && !config.getUsername().isEmpty() && config.getPassword() != null && !config.getPassword().isEmpty()) {
+      final String token = Base64.encodeToString((config.getUsername() + ":" + config.getPassword()).getBytes(StandardCharsets.UTF_8), false);
+      this.authorization = "Basic " + token;
+    }
+    else {
+      this.authorization = null;
+    }
+  }
+
+  /**
+   * Posts the request and returns the parsed response.
+   *
+   * @param config
+   *          Host configuration (used for the timeouts)
+   * @param body
+   *          Encoded request object or batch array, see the <tt>encode</tt> methods
+   * @return Root node of the response
+   * @throws ApiException
+   */
+  JsonNode post(HostConfig config, byte[] body) throws ApiException {
+    HttpURLConnection conn = null;
+    try {
+      conn = send(config, body);
+      final InputStream input = conn.getInputStream();
+      try {
+        final JsonNode response = OM.readTree(input);
+        if (response == null) {
+          throw new ApiException(ApiException.RESPONSE_ERROR, "Empty response.");
+        }
+        if (LOGGER.isDebugEnabled()) {
+          LOGGER.debug("Response: {}", response);
+        }
+        return response;
+      }
+      finally {
+        discard(input);
+      }
+    }
+    catch (IOException e) {
+      throw translate(e, conn);
+    }
+  }
+
+  /**
+   * Posts the request and streams the result of the response item by item into the consumer.
+   *
+   * @param config
+   *          Host configuration (used for the timeouts)
+   * @param call
+   *          Call to execute, must support streaming
+   * @param consumer
+   *          Receives the items of the result
+   * @return The <tt>error</tt> node if the response contains an error, <tt>null</tt> otherwise
+   * @throws ApiException
+   */
+  <T> JsonNode stream(HostConfig config, AbstractCall<T> call, Consumer<? super T> consumer) throws ApiException {
+    HttpURLConnection conn = null;
+    try {
+      conn = send(config, encode(call));
+      final InputStream input = conn.getInputStream();
+      try {
+        return ResponseParser.streamResponse(OM.getJsonFactory().createJsonParser(input), call, consumer);
+      }
+      finally {
+        discard(input);
+      }
+    }
+    catch (IOException e) {
+      throw translate(e, conn);
+    }
+  }
+
+  /**
+   * Posts the request and keeps the result of the response in the call as lazy list, without parsing the response into a tree.
+   *
+   * @param config
+   *          Host configuration (used for the timeouts)
+   * @param call
+   *          Call to execute, must support streaming and have lazy results
+   * @return The <tt>error</tt> node if the response contains an error, <tt>null</tt> otherwise
+   * @throws ApiException
+   */
+  JsonNode index(HostConfig config, AbstractCall<?> call) throws ApiException {
+    HttpURLConnection conn = null;
+    try {
+      conn = send(config, encode(call));
+      final InputStream input = conn.getInputStream();
+      final byte[] response;
+      try {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(conn.getContentLength(), 1024));
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+          output.write(buffer, 0, read);
+        }
+        response = output.toByteArray();
+      }
+      finally {
+        discard(input);
+      }
+      return ResponseParser.indexResponse(call, response);
+    }
+    catch (IOException e) {
+      throw translate(e, conn);
+    }
+  }
+
+  /**
+   * Opens a connection, writes the request and checks the status code.
+   *
+   * @return The connection, ready to read the response body from
+   */
+  private HttpURLConnection send(HostConfig config, byte[] body) throws IOException, ApiException {
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("CALL: {}", new String(body, StandardCharsets.UTF_8));
+    }
+
+    final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    conn.setRequestMethod("POST");
+    if (authorization != null) {
+      conn.setRequestProperty("Authorization", authorization);
+    }
+    conn.setRequestProperty("Content-Type", "application/json");
+    conn.setRequestProperty("User-Agent", USER_AGENT);
+    conn.setConnectTimeout(config.getConnectTimeout());
+    conn.setReadTimeout(config.getReadTimeout());
+    conn.setUseCaches(false);
+    conn.setDoOutput(true);
+    conn.setFixedLengthStreamingMode(body.length);
+
+    final OutputStream output = conn.getOutputStream();
+    try {
+      output.write(body);
+    }
+    finally {
+      output.close();
+    }
+
+    final int code = conn.getResponseCode();
+    if (code != 200) {
+      discard(conn.getErrorStream());
+      throw httpError(code);
+    }
+    return conn;
+  }
+
+  /**
+   * @return The request of the call as UTF-8 encoded JSON
+   */
+  static byte[] encode(AbstractCall<?> call) throws ApiException {
+    if (call instanceof PreparedCall.Instance) {
+      return ((PreparedCall.Instance<?>) call).toBytes();
+    }
+    final ByteArrayBuilder buffer = BUFFER.get();
+    try {
+      final JsonGenerator g = OM.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8);
+      call.writeRequest(g);
+      g.close();
+      return buffer.toByteArray();
+    }
+    catch (IOException e) {
+      throw new ApiException(ApiException.JSON_EXCEPTION, "Could not serialize request: " + e.getMessage(), e);
+    }
+    finally {
+      buffer.reset();
+    }
+  }
+
+  /**
+   * @return The batch request as UTF-8 encoded JSON array
+   */
+  static byte[] encode(CallBatch batch) throws ApiException {
+    final ByteArrayBuilder buffer = BUFFER.get();
+    try {
+      final JsonGenerator g = OM.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8);
+      batch.writeRequest(g);
+      g.close();
+      return buffer.toByteArray();
+    }
+    catch (IOException e) {
+      throw new ApiException(ApiException.JSON_EXCEPTION, "Could not serialize batch request: " + e.getMessage(), e);
+    }
+    finally {
+      buffer.reset();
+    }
+  }
+
+  /**
+   * @return The request tree as UTF-8 encoded JSON
+   */
+  static byte[] encode(JsonNode request) throws ApiException {
+    try {
+      return OM.writeValueAsBytes(request);
+    }
+    catch (IOException e) {
+      throw new ApiException(ApiException.JSON_EXCEPTION, "Could not serialize request: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Maps an I/O problem to an {@link ApiException} and drops the connection if it may be in an undefined state.
+   */
+  private static ApiException translate(IOException e, HttpURLConnection conn) {
+    if (e instanceof ConnectException) {
+      return new ApiException(ApiException.IO_EXCEPTION_WHILE_OPENING, e.getMessage(), e);
+    }
+    disconnect(conn);
+    if (e instanceof SocketTimeoutException) {
+      return new ApiException(ApiException.IO_SOCKETTIMEOUT, e.getMessage(), e);
+    }
+    if (e instanceof JsonProcessingException) {
+      return new ApiException(ApiException.JSON_EXCEPTION, "Parse error: " + e.getMessage(), e);
+    }
+    return new ApiException(ApiException.IO_EXCEPTION, e.getMessage(), e);
+  }
+
+  /**
+   * Reads the stream to its end and closes it, so the underlying connection can be reused.
+   */
+  private static void discard(InputStream input) {
+    if (input == null) {
+      return;
+    }
+    try {
+      final byte[] buffer = new byte[1024];
+      while (input.read(buffer) >= 0) {
+        // drain
+      }
+      input.close();
+    }
+    catch (IOException e) {
+      LOGGER.trace("could not drain response: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Drops a broken connection instead of returning it to the keep-alive cache.
+   */
+  private static void disconnect(HttpURLConnection conn) {
+    if (conn != null) {
+      conn.disconnect();
+    }
+  }
+
+  private static ApiException httpError(int code) {
+    switch (code) {
+      case 400:
+        return new ApiException(ApiException.HTTP_BAD_REQUEST, "Server says \"400 Bad HTTP request\".");
+      case 401:
+        return new ApiException(ApiException.HTTP_UNAUTHORIZED, "Server says \"401 Unauthorized\".");
+      case 403:
+        return new ApiException(ApiException.HTTP_FORBIDDEN, "Server says \"403 Forbidden\".");
+      case 404:
+        return new ApiException(ApiException.HTTP_NOT_FOUND, "Server says \"404 Not Found\".");
+      default:
+        if (code >= 100 && code < 200) {
+          return new ApiException(ApiException.HTTP_INFO, "Server returned informational code " + code + " instead of 200.");
+        }
+        else if (code >= 200 && code < 300) {
+          return new ApiException(ApiException.HTTP_SUCCESS, "Server returned success code " + code + " instead of 200.");
+        }
+        else if (code >= 300 && code < 400) {
+          return new ApiException(ApiException.HTTP_REDIRECTION, "Server returned redirection code " + code + " instead of 200.");
+        }
+        else if (code >= 400 && code < 500) {
+          return new ApiException(ApiException.HTTP_CLIENT_ERROR, "Server returned client error " + code + ".");
+        }
+        else if (code >= 500 && code < 600) {
+          return new ApiException(ApiException.HTTP_SERVER_ERROR, "Server returned server error " + code + ".");
+        }
+        else {
+          return new ApiException(ApiException.HTTP_UNKNOWN, "Server returned unspecified code " + code + ".");
+        }
+    }
+  }
+}
@@ -1,112 +1,990 @@
 package org.tinymediamanager.jsonrpc.io;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.lang.reflect.Method;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
-import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ObjectNode;
+import org.codehaus.jackson.util.ByteArrayBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tinymediamanager.jsonrpc.api.AbstractCall;
+import org.tinymediamanager.jsonrpc.api.PreparedCall;
 import org.tinymediamanager.jsonrpc.config.HostConfig;
 import org.tinymediamanager.jsonrpc.notification.AbstractEvent;
 
+/**
+ * Manages the TCP connection to the JSON-RPC port of one Kodi host.
+ * <p/>
+ * The connection is non-blocking and served by a {@link SelectorLoop}; by default all connection managers share a single I/O thread. Optionally,
+ * several {@link #setConnectionCount(int) striped} connections are opened to the host, so a large response doesn't hold up all other calls.
+ * <p/>
+ * Every call has a deadline (see {@link #setRequestTimeout(long, TimeUnit)}): if no response arrives in time, the call is failed with
+ * {@link ApiException#REQUEST_TIMEOUT}. Pending calls can be {@link #cancel(long) cancelled}, and all pending calls are failed with
+ * {@link ApiException#IO_DISCONNECTED} once the connection is closed, so no callback is left waiting forever. A {@link #getHealthMonitor() health
+ * monitor} pings the host regularly and drops a connection which doesn't answer anymore. Once the host failed repeatedly, its
+ * {@link CircuitBreaker} makes calls fail right away until it answers again.
+ * <p/>
+ * With a {@link #setReconnectPolicy(ReconnectPolicy) reconnect policy}, a lost connection is re-established automatically instead. Meanwhile calls
+ * are buffered, pending {@link AbstractCall#isIdempotent() idempotent} calls are sent again once reconnected and all other pending calls are failed,
+ * since it is unknown whether Kodi has executed them. Calls still waiting for a slot of the limiter haven't been sent yet, so they are simply sent
+ * once reconnected. Registered listeners are kept and notified about the disconnect and the reconnect.
+ * <p/>
+ * The I/O thread only cuts the incoming stream into messages and looks up the call of a response by the id in its raw bytes. Responses are parsed
+ * into their calls by a pool of parser threads, one per core, so large responses are parsed in parallel; notifications and batch responses are
+ * parsed one after another in the order they arrived. Callbacks and listeners then run on the {@link #setCallbackExecutor(Executor) callback
+ * executor}, so a slow callback doesn't hold up other responses, and every listener receives its events one after another in the order they
+ * arrived.
+ * <p/>
+ * The number of requests in flight is limited by a {@link #setConcurrencyLimiter(ConcurrencyLimiter) limiter} adapting to the latency of the host;
+ * further calls wait until a slot is free, by {@link AbstractCall#getPriority() priority} and then in the order they were made. Interactive calls
+ * such as <tt>Input.*</tt> and <tt>Player.*</tt> are sent right away, so they don't get stuck behind library listings.
+ */
 public class JavaConnectionManager {
   private static final Logger                LOGGER             = LoggerFactory.getLogger(JavaConnectionManager.class);
-  private final List<ConnectionListener>     connectionListener = new ArrayList<ConnectionListener>();
+  private final List<ListenerQueue>          connectionListener = new CopyOnWriteArrayList<ListenerQueue>();
   /**
    * Since we can't return the de-serialized object from the service, put the response back into the received one and return the received one.
    */
-  private final Map<String, CallRequest<?>>  mCallRequests      = new ConcurrentHashMap<String, CallRequest<?>>();
+  private final LongMap<CallRequest<?>>      mCallRequests      = new LongMap<CallRequest<?>>();
+  /**
+   * Highest id of all calls registered so far; a response to a lower id which is not pending anymore belongs to a call cancelled or timed out.
+   */
+  private final AtomicLong                   maxCallId          = new AtomicLong();
+
+  /**
+   * Parses the messages without id in the order they arrived: notifications, batch responses and errors not related to a call.
+   */
+  private final SerialExecutor               inOrderParser      = new SerialExecutor(ParserPool.INSTANCE);
+
+  private volatile boolean                   isConnected        = false;
+
+  private SelectorLoop                       selectorLoop;
+  private volatile Stripe[]                  stripes            = new Stripe[0];
+  private volatile int                       connectionCount    = 1;
+
+  private HostConfig                         hostConfig;
+
+  /**
+   * Default deadline of calls in milliseconds.
+   */
+  public static final long                   DEFAULT_REQUEST_TIMEOUT = 30000;
+
+  private final HashedWheelTimer             timer              = HashedWheelTimer.getDefault();
+  private volatile long                      requestTimeout     = DEFAULT_REQUEST_TIMEOUT;
+
+  private volatile ReconnectPolicy           reconnectPolicy;
+  private volatile boolean                   reconnecting       = false;
+  private int                                reconnectAttempts;
+  /**
+   * Requests waiting for the connection to be re-established; guarded by itself.
+   */
+  private final Deque<CallRequest<?>[]>      outbox             = new ArrayDeque<CallRequest<?>[]>();
+
+  private volatile Executor                  callbackExecutor   = DefaultCallbackExecutor.INSTANCE;
+
+  private volatile ConcurrencyLimiter        limiter            = new ConcurrencyLimiter();
+
+  private final HealthMonitor                healthMonitor      = new HealthMonitor(this);
+  private volatile CircuitBreaker            breaker;
+
+  /**
+   * Coalesced calls by key, present while a call of the key is in flight; guarded by itself.
+   */
+  private final Map<String, Coalesced>       coalesced          = new HashMap<String, Coalesced>();
+
+  /**
+   * Static reference to Jackson's object mapper.
+   */
+  private final static ObjectMapper          OM                 = new ObjectMapper();
+
+  /**
+   * Buffer requests are encoded into, reused by every thread sending.
+   */
+  private static final ThreadLocal<ByteArrayBuilder> BUFFER = new ThreadLocal<ByteArrayBuilder>() {
+    @Override
+    protected ByteArrayBuilder initialValue() {
+      return new ByteArrayBuilder(1024);
+    }
+  };
+
+  private static final CallRequest<?>[]      NO_CALLS           = new CallRequest<?>[0];
+
+  /**
+   * Creates a connection manager using the shared {@link SelectorLoop#getDefault() default loop}.
+   */
+  public JavaConnectionManager() {
+    this(null);
+  }
+
+  /**
+   * Creates a connection manager whose connection is served by the given loop.
+   *
+   * @param selectorLoop
+   *          The loop to use, or <tt>null</tt> for the default loop
+   */
+  public JavaConnectionManager(SelectorLoop selectorLoop) {
+    this.selectorLoop = selectorLoop;
+  }
+
+  /**
+   * Executes a JSON-RPC request with the full result in the callback.
+   *
+   * @param call
+   *          Call to execute
+   * @param callback
+   * @return
+   */
+  public <T> JavaConnectionManager call(final AbstractCall<T> call, final ApiCallback<T> callback) {
+    return call(call, callback, requestTimeout);
+  }
+
+  /**
+   * Executes a new call of a prepared template, whose request is spliced from the template instead of being serialized.
+   *
+   * @param prepared
+   *          Template of the call
+   * @param callback
+   * @return
+   */
+  public <T> JavaConnectionManager call(final PreparedCall<T> prepared, final ApiCallback<T> callback) {
+    return call(prepared.newCall(), callback, requestTimeout);
+  }
+
+  /**
+   * Executes a new call of a prepared template asynchronously.
+   *
+   * @param prepared
+   *          Template of the call
+   * @return Future of the new call
+   */
+  public <T> CompletableFuture<AbstractCall<T>> callAsync(final PreparedCall<T> prepared) {
+    return callAsync(prepared.newCall());
+  }
+
+  /**
+   * Executes a JSON-RPC request, replacing an earlier call with the same {@link AbstractCall#getCoalescingKey() key} which hasn't been sent yet.
+   * <p/>
+   * At most one call per key is in flight; while it is, only the latest of the further calls is kept and sent once the response has arrived. The
+   * callbacks of the replaced calls receive the response of the call which replaced them. This suits setters with absolute values such as
+   * <tt>Application.SetVolume</tt>, <tt>Player.SetSpeed</tt> or <tt>Player.Seek</tt> to a position, fired by UI gestures; it must not be used for
+   * relative changes like seeking by steps, since all but the last step may be dropped.
+   *
+   * @param call
+   *          Call to execute
+   * @param callback
+   * @return
+   */
+  public <T> JavaConnectionManager callCoalesced(final AbstractCall<T> call, final ApiCallback<T> callback) {
+    final String key = call.getCoalescingKey();
+    synchronized (coalesced) {
+      final Coalesced waiting = coalesced.get(key);
+      if (waiting != null) {
+        waiting.call = call;
+        waiting.callbacks.add(callback);
+        return this;
+      }
+      coalesced.put(key, new Coalesced());
+    }
+    final List<ApiCallback<?>> callbacks = new ArrayList<ApiCallback<?>>(1);
+    callbacks.add(callback);
+    sendCoalesced(key, call, callbacks);
+    return this;
+  }
+
+  /**
+   * Executes a JSON-RPC request asynchronously, coalesced with other calls of the same key.
+   *
+   * @param call
+   *          Call to execute
+   * @return Future of the call, or of the call which replaced it
+   * @see #callCoalesced(AbstractCall, ApiCallback)
+   */
+  public <T> CompletableFuture<AbstractCall<T>> callCoalescedAsync(final AbstractCall<T> call) {
+    final FutureCallback<T> callback = new FutureCallback<T>();
+    callCoalesced(call, callback);
+    return callback.getFuture();
+  }
+
+  private <T> void sendCoalesced(final String key, final AbstractCall<T> call, final List<ApiCallback<?>> callbacks) {
+    call(call, new ApiCallback<T>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public void onResponse(AbstractCall<T> response) {
+        sendNextCoalesced(key);
+        for (ApiCallback<?> callback : callbacks) {
+          ((ApiCallback<T>) callback).onResponse(response);
+        }
+      }
+
+      @Override
+      public void onError(int code, String message, String hint) {
+        sendNextCoalesced(key);
+        for (ApiCallback<?> callback : callbacks) {
+          callback.onError(code, message, hint);
+        }
+      }
+    });
+  }
+
+  private void sendNextCoalesced(String key) {
+    final AbstractCall<?> next;
+    final List<ApiCallback<?>> callbacks;
+    synchronized (coalesced) {
+      final Coalesced waiting = coalesced.get(key);
+      if (waiting.call == null) {
+        coalesced.remove(key);
+        return;
+      }
+      next = waiting.call;
+      callbacks = waiting.callbacks;
+      waiting.call = null;
+      waiting.callbacks = new ArrayList<ApiCallback<?>>();
+    }
+    sendCoalesced(key, next, callbacks);
+  }
+
+  /**
+   * Sends a call as JSON-RPC notification (without id), for calls whose result is of no interest such as <tt>Input.*</tt>. Kodi executes it but
+   * doesn't answer, and nothing is kept waiting for a response; errors go unnoticed though.
+   * <p/>
+   * Since there is no response, a notification can't serve as the probe of a {@link CircuitBreaker.State#HALF_OPEN half-open} circuit. So
+   * notifications are dropped for as long as the circuit is not {@link CircuitBreaker.State#CLOSED closed}, i.e. until a regular call has been
+   * answered again.
+   *
+   * @param call
+   *          Call to send
+   * @return <tt>true</tt> if the call has been sent, <tt>false</tt> if not connected or the circuit of the host is open or half-open
+   */
+  public boolean fireAndForget(final AbstractCall<?> call) {
+    // not allowRequest(): that would take the single probe of a half-open circuit, whose outcome a notification never reports
+    final CircuitBreaker b = breaker;
+    if (!isConnected || (b != null && b.getState() != CircuitBreaker.State.CLOSED)) {
+      LOGGER.debug("Not sending {} - NOT connected!", call.getName());
+      return false;
+    }
+    final byte[] data = encodeNotification(call);
+    if (data == null || !send(NO_CALLS, data)) {
+      LOGGER.debug("Could not send {}", call.getName());
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Executes a JSON-RPC request with the full result in the callback, failing it if no response arrives within the given time.
+   *
+   * @param call
+   *          Call to execute
+   * @param callback
+   * @param timeout
+   *          Deadline in milliseconds, 0 for none
+   * @return
+   */
+  public <T> JavaConnectionManager call(final AbstractCall<T> call, final ApiCallback<T> callback, long timeout) {
+    final ApiException rejected = checkSend();
+    if (rejected == null) {
+      send(timeout, new CallRequest<T>(call, callback));
+    }
+    else {
+      callback.onError(rejected.getCode(), rejected.getMessage(), null);
+    }
+    return this;
+  }
+
+  /**
+   * Executes a JSON-RPC request and streams the items of its result into the consumer, without building the complete response tree or result
+   * list. Once all items have been consumed, the callback is notified (and {@link AbstractCall#getResults()} returns an empty list).
+   * <p/>
+   * <i>Note</i>: The consumer is called on a parser thread, so it should hand over time consuming work.
+   *
+   * @param call
+   *          Call to execute, must support streaming (see {@link AbstractCall#isStreamable()})
+   * @param consumer
+   *          Receives every item of the result
+   * @param callback
+   * @return
+   */
+  public <T> JavaConnectionManager call(final AbstractCall<T> call, final Consumer<? super T> consumer, final ApiCallback<T> callback) {
+    if (!call.isStreamable()) {
+      throw new IllegalArgumentException(call.getName() + " does not support streaming");
+    }
+    final ApiException rejected = checkSend();
+    if (rejected == null) {
+      send(requestTimeout, new CallRequest<T>(call, callback, consumer));
+    }
+    else {
+      callback.onError(rejected.getCode(), rejected.getMessage(), null);
+    }
+    return this;
+  }
+
+  /**
+   * Executes all calls of the batch with a single JSON-RPC batch request. The response of each call is passed to its own callback.
+   *
+   * @param batch
+   *          Calls to execute
+   * @return
+   */
+  public JavaConnectionManager call(final CallBatch batch) {
+    if (batch.isEmpty()) {
+      return this;
+    }
+    final ApiException rejected = checkSend();
+    if (rejected == null) {
+      final List<CallBatch.CallEntry<?>> entries = batch.getEntries();
+      final CallRequest<?>[] callRequests = new CallRequest<?>[entries.size()];
+      for (int i = 0; i < callRequests.length; i++) {
+        callRequests[i] = newCallRequest(entries.get(i));
+      }
+      send(requestTimeout, callRequests);
+    }
+    else {
+      batch.fail(rejected.getCode(), rejected.getMessage());
+    }
+    return this;
+  }
+
+  /**
+   * Checks whether a call can be sent.
+   *
+   * @return <tt>null</tt> if it can, otherwise the error to fail it with
+   */
+  private ApiException checkSend() {
+    final CircuitBreaker b = breaker;
+    if (!isConnected && !reconnecting) {
+      if (b != null && b.getState() != CircuitBreaker.State.CLOSED) {
+        return b.openException();
+      }
+      LOGGER.error("Cannot send call - NOT connected!");
+      return new ApiException(ApiException.IO_DISCONNECTED, "Cannot send call - NOT connected!");
+    }
+    if (b != null && !b.allowRequest()) {
+      return b.openException();
+    }
+    return null;
+  }
+
+  private <T> CallRequest<T> newCallRequest(CallBatch.CallEntry<T> entry) {
+    return new CallRequest<T>(entry.call, entry.callback);
+  }
+
+  /**
+   * Registers the calls of a request and sends it, as soon as the {@link #setConcurrencyLimiter(ConcurrencyLimiter) limiter} allows.
+   *
+   * @param timeout
+   *          Deadline of the calls in milliseconds, 0 for none
+   * @param request
+   *          The calls contained in the request, more than one making up a batch
+   */
+  private void send(long timeout, final CallRequest<?>... request) {
+    final ConcurrencyLimiter l = limiter;
+    final ConcurrencyLimiter.Ticket ticket = l == null ? null : l.newTicket(request.length, priorityOf(request));
+    for (CallRequest<?> callRequest : request) {
+      callRequest.ticket = ticket;
+      addCallRequest(callRequest, timeout);
+    }
+    if (ticket == null) {
+      writeSocket(request);
+      return;
+    }
+    ticket.submit(new Runnable() {
+      @Override
+      public void run() {
+        // calls may have timed out or been cancelled while waiting for a slot
+        final CallRequest<?>[] pending = pendingPart(request);
+        if (pending != null) {
+          writeSocket(pending);
+        }
+      }
+    });
+  }
+
+  /**
+   * @return The most urgent priority of the calls
+   */
+  private static AbstractCall.Priority priorityOf(CallRequest<?>... callRequests) {
+    AbstractCall.Priority priority = AbstractCall.Priority.BULK;
+    for (CallRequest<?> callRequest : callRequests) {
+      final AbstractCall.Priority p = callRequest.mCall.getPriority();
+      if (p.compareTo(priority) < 0) {
+        priority = p;
+      }
+    }
+    return priority;
+  }
+
+  /**
+   * Registers a pending call and schedules its deadline.
+   */
+  private void addCallRequest(final CallRequest<?> callRequest, final long timeout) {
+    final long id = callRequest.mCall.getId();
+    mCallRequests.put(id, callRequest);
+    maxCallId.accumulateAndGet(id, Math::max);
+    if (timeout > 0) {
+      callRequest.timeout = timer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          final CallRequest<?> expired = takeCallRequest(id, ConcurrencyLimiter.Outcome.TIMED_OUT);
+          if (expired != null) {
+            expired.error(ApiException.REQUEST_TIMEOUT, "No response received within " + timeout + "ms.", null);
+          }
+        }
+      }, timeout, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Removes a pending call, cancels its deadline and frees its slot.
+   *
+   * @param id
+   *          Id of the call
+   * @param outcome
+   *          How the call ended, for the limiter to adapt
+   * @return The call request, or <tt>null</tt> if there is no such pending call (anymore)
+   */
+  private CallRequest<?> takeCallRequest(long id, ConcurrencyLimiter.Outcome outcome) {
+    final CallRequest<?> callRequest = mCallRequests.remove(id);
+    if (callRequest != null) {
+      final boolean sent = callRequest.isSent();
+      if (callRequest.ticket != null) {
+        callRequest.ticket.complete(outcome);
+      }
+      final CircuitBreaker b = breaker;
+      if (b != null) {
+        if (outcome == ConcurrencyLimiter.Outcome.ANSWERED) {
+          // the host is reachable, even if the response is an error
+          b.onSuccess();
+        }
+        else if (outcome == ConcurrencyLimiter.Outcome.TIMED_OUT && sent) {
+          // a call timing out before it was written only means we are busy
+          b.onFailure();
+        }
+      }
+      callRequest.moveTo(null);
+      final HashedWheelTimer.Timeout timeout = callRequest.timeout;
+      if (timeout != null) {
+        timeout.cancel();
+      }
+    }
+    return callRequest;
+  }
+
+  /**
+   * Cancels a pending call; its callback is failed with {@link ApiException#CANCELLED} and a late response is ignored.
+   *
+   * @param callId
+   *          Id of the call, see {@link AbstractCall#getId()}
+   * @return <tt>true</tt> if the call was pending, <tt>false</tt> if it has already been answered or failed
+   */
+  public boolean cancel(long callId) {
+    final CallRequest<?> callRequest = takeCallRequest(callId, ConcurrencyLimiter.Outcome.ABANDONED);
+    if (callRequest == null) {
+      return false;
+    }
+    callRequest.error(ApiException.CANCELLED, "Call cancelled.", null);
+    return true;
+  }
+
+  /**
+   * Sets the deadline of calls without an explicit timeout.
+   *
+   * @param timeout
+   *          Timeout, 0 for none
+   * @param unit
+   *          Unit of the timeout
+   */
+  public void setRequestTimeout(long timeout, TimeUnit unit) {
+    this.requestTimeout = unit.toMillis(timeout);
+  }
+
+  /**
+   * @return The deadline of calls in milliseconds, 0 for none
+   */
+  public long getRequestTimeout() {
+    return requestTimeout;
+  }
+
+  /**
+   * Executes a JSON-RPC request asynchronously.
+   * <p/>
+   * The returned future completes with the call containing the response, or exceptionally with an {@link ApiException} if the request failed or the
+   * manager is not connected. Futures of many calls can be freely combined (e.g. via {@link CompletableFuture#allOf(CompletableFuture...)}).
+   *
+   * @param call
+   *          Call to execute
+   * @return Future of the call, completed once the response has arrived
+   */
+  public <T> CompletableFuture<AbstractCall<T>> callAsync(final AbstractCall<T> call) {
+    final FutureCallback<T> callback = new FutureCallback<T>();
+    call(call, callback);
+    return callback.getFuture();
+  }
+
+  /**
+   * Executes a JSON-RPC request asynchronously and streams the items of its result into the consumer.
+   *
+   * @param call
+   *          Call to execute, must support streaming (see {@link AbstractCall#isStreamable()})
+   * @param consumer
+   *          Receives every item of the result (on a parser thread)
+   * @return Future of the call, completed once all items have been consumed
+   * @see #call(AbstractCall, Consumer, ApiCallback)
+   */
+  public <T> CompletableFuture<AbstractCall<T>> callAsync(final AbstractCall<T> call, final Consumer<? super T> consumer) {
+    final FutureCallback<T> callback = new FutureCallback<T>();
+    call(call, consumer, callback);
+    return callback.getFuture();
+  }
+
+  /**
+   * Executes a JSON-RPC request asynchronously and returns its results as list.
+   *
+   * @param call
+   *          Call to execute
+   * @return Stage completing with the results of the call
+   * @see #callAsync(AbstractCall)
+   */
+  public <T> CompletionStage<List<T>> callForResults(final AbstractCall<T> call) {
+    return callAsync(call).thenApply(AbstractCall::getResults);
+  }
+
+  public void registerConnectionListener(ConnectionListener listener) {
+    if (listener != null) {
+      connectionListener.add(new ListenerQueue(listener));
+    }
+  }
+
+  public void unregisterConnectionListener(ConnectionListener listener) {
+    if (listener != null) {
+      for (ListenerQueue queue : connectionListener) {
+        if (queue.listener == listener) {
+          connectionListener.remove(queue);
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Sets the executor running callbacks and listeners. By default, a virtual thread per task is used on Java 21 and newer, and a shared pool of
+   * daemon threads otherwise.
+   *
+   * @param callbackExecutor
+   *          Executor to use; an executor running tasks inline (<tt>Runnable::run</tt>) runs them on the parser threads and the I/O thread
+   */
+  public void setCallbackExecutor(Executor callbackExecutor) {
+    this.callbackExecutor = callbackExecutor == null ? DefaultCallbackExecutor.INSTANCE : callbackExecutor;
+  }
+
+  public Executor getCallbackExecutor() {
+    return callbackExecutor;
+  }
+
+  /**
+   * Sets the limiter of concurrent requests. By default, each connection manager adapts the number of requests in flight to the latency of its
+   * host, so a bulk operation doesn't make Kodi unresponsive for everything else.
+   *
+   * @param limiter
+   *          Limiter to use, possibly shared with other managers of the same host, or <tt>null</tt> to send all calls right away
+   */
+  public void setConcurrencyLimiter(ConcurrencyLimiter limiter) {
+    this.limiter = limiter;
+  }
+
+  public ConcurrencyLimiter getConcurrencyLimiter() {
+    return limiter;
+  }
+
+  /**
+   * @return Number of calls sent or queued and not yet answered
+   */
+  public int getPendingCalls() {
+    return mCallRequests.size();
+  }
+
+  /**
+   * Sets the number of TCP connections opened to the host, taking effect with the next connect. Calls are sent on the connection with the fewest
+   * outstanding calls; notifications are only received on the first one, so listeners don't get them twice.
+   *
+   * @param connectionCount
+   *          Number of connections, at least 1 (the default)
+   */
+  public void setConnectionCount(int connectionCount) {
+    if (connectionCount < 1) {
+      throw new IllegalArgumentException("At least one connection is needed: " + connectionCount);
+    }
+    this.connectionCount = connectionCount;
+  }
+
+  public int getConnectionCount() {
+    return connectionCount;
+  }
 
-  private final Map<String, AbstractCall<?>> mCalls             = new ConcurrentHashMap<String, AbstractCall<?>>();
+  /**
+   * Returns the monitor pinging the host while connected, which keeps track of its health and latency. It is enabled with an interval of
+   * {@link HealthMonitor#DEFAULT_INTERVAL} ms.
+   *
+   * @return The health monitor of the host
+   */
+  public HealthMonitor getHealthMonitor() {
+    return healthMonitor;
+  }
+
+  public boolean isConnected() {
+    return isConnected;
+  }
+
+  public void connect(HostConfig config) throws ApiException {
+    if (isConnected || reconnecting) {
+      disconnect();
+    }
+    this.hostConfig = config;
+    final CircuitBreaker b = CircuitBreaker.forHost(config);
+    breaker = b;
+    b.acquire();
+    try {
+      stripes = openConnections(config);
+      b.onSuccess();
+      isConnected = true;
+      healthMonitor.start();
+      notifyConnected();
+    }
+    catch (UnknownHostException e) {
+      b.onFailure();
+      disconnect();
+      throw new ApiException(ApiException.IO_UNKNOWN_HOST, e.getMessage(), e);
+    }
+    catch (ConnectException e) {
+      b.onFailure();
+      disconnect();
+      throw new ApiException(ApiException.IO_EXCEPTION_WHILE_OPENING, e.getMessage(), e);
+    }
+    catch (SocketTimeoutException e) {
+      b.onFailure();
+      disconnect();
+      throw new ApiException(ApiException.IO_SOCKETTIMEOUT, e.getMessage(), e);
+    }
+    catch (IOException e) {
+      b.onFailure();
+      disconnect();
+      throw new ApiException(ApiException.IO_EXCEPTION, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Opens the configured number of connections; the first one receives the notifications.
+   */
+  private Stripe[] openConnections(HostConfig config) throws IOException {
+    final Stripe[] opened = new Stripe[connectionCount];
+    try {
+      for (int i = 0; i < opened.length; i++) {
+        opened[i] = new Stripe(openConnection(config, i == 0));
+      }
+      return opened;
+    }
+    catch (IOException e) {
+      close(opened);
+      throw e;
+    }
+  }
 
-  private boolean                            isConnected        = false;
+  private static void close(Stripe[] stripes) {
+    for (Stripe stripe : stripes) {
+      if (stripe != null) {
+        stripe.connection.close(null);
+      }
+    }
+  }
 
-  private Socket                             socket;
-  private BufferedWriter                     bufferedWriter;
+  private boolean isCurrent(NioConnection connection) {
+    for (Stripe stripe : stripes) {
+      if (stripe.connection == connection) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private NioConnection openConnection(HostConfig config, final boolean primary) throws IOException {
+    if (selectorLoop == null) {
+      selectorLoop = SelectorLoop.getDefault();
+    }
+    final InetSocketAddress address = new InetSocketAddress(config.mAddress, config.mTcpPort);
+    if (address.isUnresolved()) {
+      throw new UnknownHostException(config.mAddress);
+    }
+    return NioConnection.open(selectorLoop, address, config.getConnectTimeout(), new NioConnection.Handler() {
+      @Override
+      public void onMessage(NioConnection source, byte[] message) {
+        parseIncomingMessage(message, primary);
+      }
+
+      @Override
+      public void onClosed(NioConnection source, Exception cause) {
+        // only react if the connection has been lost, not closed by ourselves or replaced
+        if (cause != null && isCurrent(source)) {
+          LOGGER.error("", cause);
+          connectionLost();
+        }
+      }
+    });
+  }
+
+  /**
+   * Enables or disables automatic reconnection.
+   *
+   * @param reconnectPolicy
+   *          How to reconnect (e.g. {@link ReconnectPolicy#DEFAULT}), or <tt>null</tt> to disconnect for good when the connection is lost
+   */
+  public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+    this.reconnectPolicy = reconnectPolicy;
+  }
+
+  public ReconnectPolicy getReconnectPolicy() {
+    return reconnectPolicy;
+  }
+
+  /**
+   * @return <tt>true</tt> while the connection is being re-established
+   */
+  public boolean isReconnecting() {
+    return reconnecting;
+  }
+
+  /**
+   * Handles the loss of a connection: either disconnects for good or starts reconnecting all connections.
+   */
+  private void connectionLost() {
+    final ReconnectPolicy policy = reconnectPolicy;
+    // calls written from now on see the connection lost and take care of themselves (see markWritten), so only the ones written before count;
+    // calls not written yet are buffered by their sender until reconnected
+    final List<CallRequest<?>> written = new ArrayList<CallRequest<?>>();
+    final boolean reconnect;
+    synchronized (outbox) {
+      if (reconnecting) {
+        // another connection to the host has already been lost
+        return;
+      }
+      reconnect = policy != null && isConnected;
+      if (reconnect) {
+        isConnected = false;
+        reconnecting = true;
+        for (CallRequest<?> callRequest : mCallRequests.values()) {
+          if (callRequest.isSent()) {
+            written.add(callRequest);
+          }
+        }
+      }
+    }
+    if (!reconnect) {
+      disconnect();
+      return;
+    }
+    healthMonitor.stop();
+    close(stripes);
+
+    for (CallRequest<?> callRequest : written) {
+      resend(callRequest);
+    }
+
+    LOGGER.info("Connection to {} lost, reconnecting", hostConfig);
+    notifyDisconnect();
+    reconnectAttempts = 0;
+    scheduleReconnect(policy);
+  }
+
+  private void scheduleReconnect(ReconnectPolicy policy) {
+    timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        // connecting blocks, so don't do it on the timer thread
+        ReconnectThread.INSTANCE.execute(new Runnable() {
+          @Override
+          public void run() {
+            tryReconnect();
+          }
+        });
+      }
+    }, policy.getDelay(reconnectAttempts), TimeUnit.MILLISECONDS);
+  }
 
-  private HostConfig                         hostConfig;
+  private void tryReconnect() {
+    if (!reconnecting) {
+      return;
+    }
+    final ReconnectPolicy policy = reconnectPolicy;
+    try {
+      final Stripe[] opened = openConnections(hostConfig);
+      synchronized (outbox) {
+        if (!reconnecting) {
+          // disconnected in the meantime
+          close(opened);
+          return;
+        }
+        stripes = opened;
+        CallRequest<?>[] request;
+        while ((request = outbox.poll()) != null) {
+          final CallRequest<?>[] pending = pendingPart(request);
+          final byte[] data = pending == null ? null : encode(pending);
+          if (data != null) {
+            // even if the new connection is already closed again, its loss is handled after reconnecting
+            send(pending, data);
+            for (CallRequest<?> callRequest : pending) {
+              callRequest.written = true;
+            }
+          }
+        }
+        reconnecting = false;
+        isConnected = true;
+      }
+      breaker.onSuccess();
+      LOGGER.info("Reconnected to {} after {} attempt(s)", hostConfig, reconnectAttempts + 1);
+      healthMonitor.start();
+      notifyConnected();
+      for (Stripe stripe : opened) {
+        if (!stripe.connection.isOpen()) {
+          // lost again while still reconnecting, which went unnoticed
+          connectionLost();
+          break;
+        }
+      }
+    }
+    catch (IOException e) {
+      breaker.onFailure();
+      reconnectAttempts++;
+      if (policy != null && policy.shouldRetry(reconnectAttempts)) {
+        LOGGER.debug("Reconnect attempt {} failed: {}", reconnectAttempts, e.getMessage());
+        scheduleReconnect(policy);
+      }
+      else {
+        LOGGER.error("Giving up reconnecting to {} after {} attempt(s)", hostConfig, reconnectAttempts);
+        disconnect();
+      }
+    }
+  }
 
   /**
-   * Static reference to Jackson's object mapper.
+   * Handles a call written to a connection which has been lost: replays it if it can be safely sent twice, otherwise fails it since it's unknown
+   * whether it has been executed.
    */
-  private final static ObjectMapper          OM                 = new ObjectMapper();
+  private void resend(CallRequest<?> callRequest) {
+    if (callRequest.mCall.isIdempotent()) {
+      final CallRequest<?>[] request = new CallRequest<?>[] { callRequest };
+      if (!enqueue(request)) {
+        // reconnected in the meantime
+        writeSocket(request);
+      }
+    }
+    else if (takeCallRequest(callRequest.mCall.getId(), ConcurrencyLimiter.Outcome.ABANDONED) != null) {
+      callRequest.error(ApiException.IO_DISCONNECTED, "Connection lost before the response was received.", null);
+    }
+  }
 
   /**
-   * Executes a JSON-RPC request with the full result in the callback.
+   * Marks the calls of a request as written, once its bytes have been handed to a connection, or the connection turned out to be closed without
+   * its loss having been handled yet.
    *
-   * @param call
-   *          Call to execute
-   * @param callback
-   * @return
+   * @return <tt>false</tt> if the connection has been lost in the meantime, before it could take the calls into account for replaying
    */
-  public <T> JavaConnectionManager call(final AbstractCall<T> call, final ApiCallback<T> callback) {
-    if (isConnected) {
-      mCallRequests.put(call.getId(), new CallRequest<T>(call, callback));
-      mCalls.put(call.getId(), call);
-      writeSocket(call);
-    }
-    else {
-      LOGGER.error("Cannot send call - NOT connected!");
+  private boolean markWritten(CallRequest<?>[] request) {
+    synchronized (outbox) {
+      if (reconnecting) {
+        return false;
+      }
+      for (CallRequest<?> callRequest : request) {
+        callRequest.written = true;
+      }
+      return true;
     }
-    return this;
   }
 
-  public void registerConnectionListener(ConnectionListener listener) {
-    if (listener != null) {
-      connectionListener.add(listener);
-    }
+  /**
+   * Drops the connection since the host doesn't respond anymore, see {@link HealthMonitor}.
+   */
+  void connectionDead() {
+    connectionLost();
   }
 
-  public void unregisterConnectionListener(ConnectionListener listener) {
-    if (listener != null) {
-      connectionListener.remove(listener);
+  /**
+   * Buffers a request until the connection has been re-established.
+   *
+   * @return <tt>false</tt> if not reconnecting (anymore), so the request has to be sent right away
+   */
+  private boolean enqueue(CallRequest<?>[] request) {
+    synchronized (outbox) {
+      if (!reconnecting) {
+        return false;
+      }
+      final ReconnectPolicy policy = reconnectPolicy;
+      if (policy != null && outbox.size() >= policy.getMaxQueuedRequests()) {
+        failRequest(request, ApiException.IO_DISCONNECTED, "Too many calls waiting for the connection to be re-established.");
+      }
+      else {
+        outbox.add(request);
+      }
+      return true;
     }
   }
 
-  public boolean isConnected() {
-    return isConnected;
-  }
-
-  public void connect(HostConfig config) throws ApiException {
-    if (isConnected) {
-      disconnect();
+  /**
+   * Returns the part of a request whose calls are still pending (they may have timed out or been cancelled while buffered).
+   *
+   * @return The request, the pending calls of the batch request or <tt>null</tt> if nothing needs to be sent anymore
+   */
+  private CallRequest<?>[] pendingPart(CallRequest<?>[] request) {
+    int count = 0;
+    for (CallRequest<?> callRequest : request) {
+      if (mCallRequests.containsKey(callRequest.mCall.getId())) {
+        count++;
+      }
     }
-    this.hostConfig = config;
-    try {
-      final InetSocketAddress address = new InetSocketAddress(config.mAddress, config.mTcpPort);
-      socket = new Socket();
-      socket.setSoTimeout(0);
-      socket.connect(address);
-      bufferedWriter = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
-      startParsingIncomingMessages();
-      isConnected = true;
-      notifyConnected();
+    if (count == request.length) {
+      return request;
     }
-    catch (UnknownHostException e) {
-      disconnect();
-      throw new ApiException(ApiException.IO_UNKNOWN_HOST, e.getMessage(), e);
+    if (count == 0) {
+      return null;
     }
-    catch (ConnectException e) {
-      disconnect();
-      throw new ApiException(ApiException.IO_EXCEPTION_WHILE_OPENING, e.getMessage(), e);
+    final CallRequest<?>[] pending = new CallRequest<?>[count];
+    int i = 0;
+    for (CallRequest<?> callRequest : request) {
+      if (mCallRequests.containsKey(callRequest.mCall.getId())) {
+        pending[i++] = callRequest;
+      }
     }
-    catch (IOException e) {
-      disconnect();
-      throw new ApiException(ApiException.IO_EXCEPTION, e.getMessage(), e);
+    return pending;
+  }
+
+  private void failRequest(CallRequest<?>[] request, int code, String message) {
+    for (CallRequest<?> callRequest : request) {
+      if (takeCallRequest(callRequest.mCall.getId(), ConcurrencyLimiter.Outcome.ABANDONED) != null) {
+        callRequest.error(code, message, null);
+      }
     }
   }
 
@@ -118,66 +996,122 @@ public class JavaConnectionManager {
     connect(hostConfig);
   }
 
-  private void startParsingIncomingMessages() {
-    new Thread() {
+  /**
+   * Hands a complete message cut out of the TCP stream over to the parser threads (called on the I/O thread).
+   * <p/>
+   * Only the id of the message is read here, so the call is completed right away: its deadline can't expire anymore while the response is parsed,
+   * and the limiter measures the latency of the host rather than of the parsing.
+   *
+   * @param message
+   *          The raw JSON message
+   * @param primary
+   *          Whether the message has been received on the connection listening for notifications
+   */
+  private void parseIncomingMessage(final byte[] message, final boolean primary) {
+    final long id;
+    try {
+      id = ResponseParser.peekId(message);
+    }
+    catch (IOException e) {
+      LOGGER.error("could not parse incoming message", e);
+      return;
+    }
+    if (id == 0) {
+      inOrderParser.execute(new Runnable() {
+        @Override
+        public void run() {
+          parseMessage(message, primary);
+        }
+      });
+      return;
+    }
 
+    final CallRequest<?> callRequest = takeCallRequest(id, ConcurrencyLimiter.Outcome.ANSWERED);
+    if (callRequest == null) {
+      if (isStale(id)) {
+        LOGGER.debug("Ignoring response to id {}, the call is not pending anymore", id);
+      }
+      else {
+        LOGGER.error("No such request for id {}: DATA={}", id, new String(message, StandardCharsets.UTF_8));
+      }
+      return;
+    }
+    ParserPool.INSTANCE.execute(new Runnable() {
       @Override
       public void run() {
-        final JsonFactory jf = OM.getJsonFactory();
-        JsonParser jp;
-        try {
-          jp = jf.createJsonParser(socket.getInputStream());
-          JsonNode node;
-          while ((node = OM.readTree(jp)) != null) {
-            notifyClients(node);
-          }
-        }
-        catch (Exception e) {
-          disconnect();
-          LOGGER.error("", e);
-          // e.printStackTrace();
-        }
-      };
-
-    }.start();
+        callRequest.parse(message);
+      }
+    });
+  }
 
+  /**
+   * Checks whether a response without pending call is expected: late responses to calls which have been cancelled, timed out or failed are.
+   *
+   * @return <tt>true</tt> if a call with the id has been sent, <tt>false</tt> if the id has never been issued
+   */
+  private boolean isStale(long id) {
+    return id > 0 && id <= maxCallId.get();
   }
 
-  public void disconnect() {
-    if (isConnected) {
-      try {
-        if (bufferedWriter != null) {
-          bufferedWriter.close();
-        }
-      }
-      catch (Exception e) {
-        e.printStackTrace();
-      }
-      try {
-        if (socket != null) {
-          socket.close();
+  /**
+   * Parses a message without id: a notification, a batch response or an error (called on a parser thread).
+   */
+  private void parseMessage(byte[] message, boolean primary) {
+    try {
+      final JsonNode node = OM.readTree(message);
+      if (node.isArray()) {
+        // response to a batch request
+        for (JsonNode response : node) {
+          notifyClients(response, primary);
         }
       }
-      catch (Exception e) {
-        e.printStackTrace();
+      else {
+        notifyClients(node, primary);
       }
-      notifyDisconnect();
+    }
+    catch (Exception e) {
+      LOGGER.error("could not parse incoming message", e);
+    }
+  }
+
+  public void disconnect() {
+    final boolean wasReconnecting;
+    synchronized (outbox) {
+      wasReconnecting = reconnecting;
+      reconnecting = false;
+      outbox.clear();
+    }
+    healthMonitor.stop();
+    if (isConnected) {
       isConnected = false;
+      close(stripes);
+      failPendingCalls();
+      notifyDisconnect();
+    }
+    else if (wasReconnecting) {
+      failPendingCalls();
     }
     else {
       // TODO throw exception
     }
   }
 
-  @SuppressWarnings({ "rawtypes", "unchecked" })
-  private void notifyClients(JsonNode node) {
+  /**
+   * Fails all calls still waiting for their response, since it won't arrive anymore.
+   */
+  private void failPendingCalls() {
+    for (CallRequest<?> callRequest : mCallRequests.values()) {
+      if (takeCallRequest(callRequest.mCall.getId(), ConcurrencyLimiter.Outcome.ABANDONED) != null) {
+        callRequest.error(ApiException.IO_DISCONNECTED, "Connection closed before the response was received.", null);
+      }
+    }
+  }
+
+  private void notifyClients(JsonNode node, boolean primary) {
     if (node.has("error")) {
-      final String id = node.get("id").getValueAsText();
-      if (mCallRequests.containsKey(id)) {
-        CallRequest callRequest = mCallRequests.remove(id);
-        mCalls.remove(id);
-        ApiCallback callback = callRequest.mCallback;
-        AbstractCall call = callRequest.mCall;
+      final long id = ResponseParser.getId(node);
+      final CallRequest<?> callRequest = takeCallRequest(id, ConcurrencyLimiter.Outcome.ANSWERED);
+      if (callRequest != null) {
         JsonNode errorNode = node.get("error");
         int errorCode = -1;
         if (errorNode.has("code"))
@@ -188,7 +1122,10 @@ public class JavaConnectionManager {
         String hint = "";
         if (errorNode.has("data"))
           hint = errorNode.get("data").toString();
-        callback.onError(errorCode, message, hint);
+        callRequest.error(errorCode, message, hint);
+      }
+      else if (isStale(id)) {
+        LOGGER.debug("Ignoring error response to id {}, the call is not pending anymore", id);
       }
       else {
         LOGGER.error("No such request for id {}: ERROR={}", id, node.toString());
@@ -198,25 +1135,29 @@ public class JavaConnectionManager {
     }
     else if (node.has("id")) {
       // it's api call.
-      final String id = node.get("id").getValueAsText();
-      if (mCallRequests.containsKey(id)) {
-        CallRequest callRequest = mCallRequests.remove(id);
-        mCalls.remove(id);
-        ApiCallback callback = callRequest.mCallback;
-        AbstractCall call = callRequest.mCall;
-        call.setResponse(node);
-        callback.onResponse(call);
+      final long id = ResponseParser.getId(node);
+      final CallRequest<?> callRequest = takeCallRequest(id, ConcurrencyLimiter.Outcome.ANSWERED);
+      if (callRequest != null) {
+        callRequest.respond(node);
+      }
+      else if (isStale(id)) {
+        LOGGER.debug("Ignoring response to id {}, the call is not pending anymore", id);
       }
       else {
         LOGGER.error("No such request for id {}: DATA={}", id, node.toString());
       }
     }
-    else {
-      // it's a notification.
+    else if (primary) {
+      // it's a notification, Kodi sends them on every connection.
       final AbstractEvent event = AbstractEvent.parse((ObjectNode) node);
       if (event != null) {
-        for (ConnectionListener listener : connectionListener) {
-          listener.notificationReceived(event);
+        for (final ListenerQueue queue : connectionListener) {
+          queue.execute(new Runnable() {
+            @Override
+            public void run() {
+              queue.listener.notificationReceived(event);
+            }
+          });
         }
       }
       else {
@@ -228,33 +1169,174 @@ public class JavaConnectionManager {
 
   /**
    * Serializes the API request and dumps it on the socket.
+   * <p/>
+   * The calls write themselves straight to UTF-8 bytes (see {@link AbstractCall#writeRequest(JsonGenerator)}), which are handed to the lock-free
+   * outbound queue of the connection. The I/O thread is the only consumer of that queue: it packs all requests queued in the meantime into one
+   * buffer, so a burst of calls is written with a few syscalls.
    *
-   * @param call
+   * @param request
+   *          The calls of the request, more than one making up a batch
+   */
+  private void writeSocket(CallRequest<?>[] request) {
+    if (reconnecting && enqueue(request)) {
+      return;
+    }
+    final byte[] data = encode(request);
+    if (data == null) {
+      failRequest(request, ApiException.JSON_EXCEPTION, "Could not serialize request.");
+      return;
+    }
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("CALL: {}", new String(data, StandardCharsets.UTF_8));
+    }
+    if (!send(request, data) && reconnecting && enqueue(request)) {
+      // the connection has just been lost
+      return;
+    }
+    if (!markWritten(request)) {
+      // lost right after handing the request over, maybe before it was written
+      for (CallRequest<?> callRequest : request) {
+        resend(callRequest);
+      }
+    }
+  }
+
+  /**
+   * Sends an encoded request on the connection with the fewest outstanding calls.
+   *
+   * @return <tt>false</tt> if there is no open connection
+   */
+  private boolean send(CallRequest<?>[] request, byte[] data) {
+    final Stripe[] s = stripes;
+    if (s.length == 0) {
+      return false;
+    }
+    if (s.length == 1) {
+      return s[0].connection.send(data);
+    }
+
+    Stripe stripe = s[0];
+    for (int i = 1; i < s.length; i++) {
+      if (s[i].outstanding.get() < stripe.outstanding.get()) {
+        stripe = s[i];
+      }
+    }
+    for (CallRequest<?> callRequest : request) {
+      callRequest.moveTo(stripe);
+    }
+    return stripe.connection.send(data);
+  }
+
+  /**
+   * @return The request as UTF-8 encoded JSON, a batch array if it consists of more than one call, or <tt>null</tt> if it could not be serialized
+   */
+  private static byte[] encode(CallRequest<?>[] request) {
+    if (request.length == 1 && request[0].mCall instanceof PreparedCall.Instance) {
+      return ((PreparedCall.Instance<?>) request[0].mCall).toBytes();
+    }
+    final ByteArrayBuilder buffer = BUFFER.get();
+    try {
+      final JsonGenerator g = OM.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8);
+      if (request.length == 1) {
+        request[0].mCall.writeRequest(g);
+      }
+      else {
+        g.writeStartArray();
+        for (CallRequest<?> callRequest : request) {
+          callRequest.mCall.writeRequest(g);
+        }
+        g.writeEndArray();
+      }
+      g.close();
+      return buffer.toByteArray();
+    }
+    catch (Exception e) {
+      LOGGER.error("could not serialize request", e);
+      return null;
+    }
+    finally {
+      buffer.reset();
+    }
+  }
+
+  /**
+   * @return The call as UTF-8 encoded JSON-RPC notification, or <tt>null</tt> if it could not be serialized
    */
-  private void writeSocket(AbstractCall<?> call) {
-    final String data = call.getRequest().toString();
-    LOGGER.debug("CALL: {}", data);
+  private static byte[] encodeNotification(AbstractCall<?> call) {
+    final ByteArrayBuilder buffer = BUFFER.get();
     try {
-      bufferedWriter.write(data + "\n");
-      bufferedWriter.flush();
+      final JsonGenerator g = OM.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8);
+      call.writeNotification(g);
+      g.close();
+      return buffer.toByteArray();
     }
-    catch (IOException e) {
-      // TODO
+    catch (Exception e) {
+      LOGGER.error("could not serialize notification", e);
+      return null;
+    }
+    finally {
+      buffer.reset();
     }
   }
 
   /**
-   * A call request bundles an API call and its callback of the same type.
+   * A call request bundles an API call and its callback of the same type. The callback is always run on the callback executor.
    *
    * @author freezy <freezy@xbmc.org>
    */
-  private static class CallRequest<T> {
-    private final AbstractCall<T> mCall;
-    private final ApiCallback<T>  mCallback;
+  private class CallRequest<T> {
+    private final AbstractCall<T>             mCall;
+    private final ApiCallback<T>              mCallback;
+    private final Consumer<? super T>         mConsumer;
+    private volatile HashedWheelTimer.Timeout timeout;
+    private ConcurrencyLimiter.Ticket         ticket;
+    /**
+     * Whether the request has been handed to a connection; guarded by the outbox.
+     */
+    private volatile boolean                  written;
+    private Stripe                            stripe;
+    private boolean                           released;
 
     public CallRequest(AbstractCall<T> call, ApiCallback<T> callback) {
+      this(call, callback, null);
+    }
+
+    public CallRequest(AbstractCall<T> call, ApiCallback<T> callback, Consumer<? super T> consumer) {
       this.mCall = call;
       this.mCallback = callback;
+      this.mConsumer = consumer;
+    }
+
+    /**
+     * @return <tt>true</tt> if the request has been handed to a connection, <tt>false</tt> while it is waiting for a slot of the limiter or for the
+     *         connection to be re-established
+     */
+    boolean isSent() {
+      return written;
+    }
+
+    /**
+     * Counts the call as outstanding on the given connection instead of the previous one.
+     *
+     * @param newStripe
+     *          Connection the call has been sent on, <tt>null</tt> once the call is completed
+     */
+    void moveTo(Stripe newStripe) {
+      final Stripe previous;
+      synchronized (this) {
+        if (released) {
+          return;
+        }
+        previous = stripe;
+        stripe = newStripe;
+        released = newStripe == null;
+      }
+      if (newStripe != null) {
+        newStripe.outstanding.incrementAndGet();
+      }
+      if (previous != null) {
+        previous.outstanding.decrementAndGet();
+      }
     }
 
     public void update(AbstractCall<?> call) {
@@ -262,23 +1344,229 @@ public class JavaConnectionManager {
     }
 
     public void respond() {
-      mCallback.onResponse(mCall);
+      dispatch(new Runnable() {
+        @Override
+        public void run() {
+          mCallback.onResponse(mCall);
+        }
+      });
+    }
+
+    /**
+     * Parses the response into the call and notifies the callback (called on a parser thread).
+     */
+    public void respond(final JsonNode response) {
+      try {
+        mCall.setResponse(response);
+      }
+      catch (RuntimeException e) {
+        LOGGER.error("could not parse response of " + mCall.getName(), e);
+        error(ApiException.JSON_EXCEPTION, "Parse error: " + e.getMessage(), null);
+        return;
+      }
+      respond();
+    }
+
+    /**
+     * Parses the raw response of the call, already taken from the pending calls, and notifies the callback (called on a parser thread).
+     * Streaming calls read the response token by token and pass the items to their consumer; calls with lazy results keep the raw response.
+     */
+    void parse(byte[] message) {
+      try {
+        if (mConsumer != null) {
+          final JsonParser jp = OM.getJsonFactory().createJsonParser(message);
+          final JsonNode error = ResponseParser.streamResponse(jp, mCall, mConsumer);
+          jp.close();
+          if (error != null) {
+            error(error);
+          }
+          else {
+            respond();
+          }
+          return;
+        }
+        if (mCall.isLazyResults() && mCall.isStreamable()) {
+          final JsonNode error = ResponseParser.indexResponse(mCall, message);
+          if (error != null) {
+            error(error);
+          }
+          else {
+            respond();
+          }
+          return;
+        }
+
+        final JsonNode node = OM.readTree(message);
+        final JsonNode error = node.get("error");
+        if (error != null) {
+          error(error);
+        }
+        else {
+          respond(node);
+        }
+      }
+      catch (Exception e) {
+        error(ApiException.JSON_EXCEPTION, "Parse error: " + e.getMessage(), null);
+      }
+    }
+
+    public void error(final int code, final String message, final String hint) {
+      dispatch(new Runnable() {
+        @Override
+        public void run() {
+          mCallback.onError(code, message, hint);
+        }
+      });
+    }
+
+    public void error(final JsonNode errorNode) {
+      dispatch(new Runnable() {
+        @Override
+        public void run() {
+          ResponseParser.notifyError(mCallback, errorNode);
+        }
+      });
+    }
+
+    private void dispatch(final Runnable task) {
+      callbackExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            task.run();
+          }
+          catch (Exception e) {
+            LOGGER.error("callback of " + mCall.getName() + " failed", e);
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * One of the connections to the host and the number of calls waiting for a response on it.
+   */
+  private static final class Stripe {
+    private final NioConnection connection;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    Stripe(NioConnection connection) {
+      this.connection = connection;
+    }
+  }
+
+  /**
+   * The call waiting for the call in flight with the same key, and the callbacks of all calls it replaced.
+   */
+  private static final class Coalesced {
+    private AbstractCall<?>      call;
+    private List<ApiCallback<?>> callbacks = new ArrayList<ApiCallback<?>>();
+  }
+
+  /**
+   * Delivers the events of one listener in order, one after another.
+   */
+  private class ListenerQueue implements Executor {
+    private final ConnectionListener listener;
+    private final SerialExecutor     queue;
+
+    ListenerQueue(ConnectionListener listener) {
+      this.listener = listener;
+      this.queue = new SerialExecutor(new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          // resolved per task, so changing the callback executor affects registered listeners as well
+          callbackExecutor.execute(command);
+        }
+      });
     }
 
-    public void error(int code, String message, String hint) {
-      mCallback.onError(code, message, hint);
+    @Override
+    public void execute(Runnable task) {
+      queue.execute(task);
     }
   }
 
   private void notifyDisconnect() {
-    for (ConnectionListener listener : connectionListener) {
-      listener.disconnected();
+    for (final ListenerQueue queue : connectionListener) {
+      queue.execute(new Runnable() {
+        @Override
+        public void run() {
+          queue.listener.disconnected();
+        }
+      });
     }
   }
 
   private void notifyConnected() {
-    for (ConnectionListener listener : connectionListener) {
-      listener.connected();
+    for (final ListenerQueue queue : connectionListener) {
+      queue.execute(new Runnable() {
+        @Override
+        public void run() {
+          queue.listener.connected();
+        }
+      });
+    }
+  }
+
+  /**
+   * Threads parsing the responses of all connection managers, one per core, created on first use.
+   */
+  private static final class ParserPool {
+    private static final Executor INSTANCE = create();
+
+    private static Executor create() {
+      final AtomicLong count = new AtomicLong();
+      return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          final Thread thread = new Thread(r, "kodi-json-rpc-parser-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+
+  /**
+   * Single thread shared by all connection managers to re-establish lost connections, created on first use. Connecting blocks until the
+   * {@link HostConfig#getConnectTimeout() connect timeout} at most, so it is kept off the timer and the common pool, which the application and the
+   * async callbacks depend on.
+   */
+  private static final class ReconnectThread {
+    private static final Executor INSTANCE = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        final Thread thread = new Thread(r, "kodi-json-rpc-reconnect");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Executor shared by all connection managers unless configured otherwise, created on first use.
+   */
+  private static final class DefaultCallbackExecutor {
+    private static final Executor INSTANCE = create();
+
+    private static Executor create() {
+      try {
+        // Java 21+
+        final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        return (Executor) factory.invoke(null);
+      }
+      catch (Exception e) {
+        final AtomicLong count = new AtomicLong();
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "kodi-json-rpc-callback-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      }
     }
   }
 
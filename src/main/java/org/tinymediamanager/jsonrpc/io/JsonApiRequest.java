@@ -21,39 +21,52 @@
 
 package org.tinymediamanager.jsonrpc.io;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
-import java.net.ConnectException;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.SocketTimeoutException;
-import java.net.URL;
-
-import org.codehaus.jackson.JsonProcessingException;
-import org.codehaus.jackson.map.ObjectMapper;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.node.ObjectNode;
-import org.codehaus.jackson.node.TextNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tinymediamanager.jsonrpc.api.AbstractCall;
 import org.tinymediamanager.jsonrpc.config.HostConfig;
 
 /**
  * Performs HTTP POST requests on the XBMC JSON API and handles the parsing from and to {@link ObjectNode}.
  * <p/>
- * <i>Note</i>: All in here is synchronous.
+ * Requests are sent through one keep-alive {@link HttpTransport} per host; connect and read timeouts are taken from the {@link HostConfig}. While the
+ * {@link CircuitBreaker} of a host is open, requests fail right away with {@link ApiException#CIRCUIT_OPEN}.
+ * <p/>
+ * <i>Note</i>: The <tt>execute</tt> methods are synchronous, the <tt>executeAsync</tt> methods run the request on an executor and return a
+ * {@link CompletableFuture}.
  *
  * @author Joel Stemmer <stemmertech@gmail.com>
  * @author freezy <freezy@xbmc.org>
  */
 public class JsonApiRequest {
 
-  private static final Logger       LOGGER          = LoggerFactory.getLogger(JsonApiRequest.class);
-  private static final String       TAG             = JsonApiRequest.class.getSimpleName();
-  private static final int          REQUEST_TIMEOUT = 5000;                                         // 5 sec
-  private static final ObjectMapper OM              = new ObjectMapper();
+  private static final Logger                                   LOGGER        = LoggerFactory.getLogger(JsonApiRequest.class);
+  private static final String                                   TAG           = JsonApiRequest.class.getSimpleName();
+  private static final int                                      ASYNC_THREADS = 8;
+
+  /**
+   * Keep-alive transports, one per host.
+   */
+  private static final ConcurrentMap<HostConfig, HttpTransport> TRANSPORTS    = new ConcurrentHashMap<HostConfig, HttpTransport>();
+
+  /**
+   * Default executor for asynchronous requests (daemon threads, created lazily).
+   */
+  private static ExecutorService                                asyncExecutor;
 
   /**
    * Executes a POST request to the URL using the JSON Object as request body and returns a JSON Object if the response was successful.
@@ -66,171 +79,277 @@ public class JsonApiRequest {
    * @throws ApiException
    */
   public static ObjectNode execute(HostConfig config, ObjectNode entity) throws ApiException {
-    String response = postRequest(config, entity.toString());
-    LOGGER.debug("Response: {}", response);
-    return parseResponse(response);
+    return parseResponse(post(config, HttpTransport.encode(entity)));
   }
 
   /**
-   * Execute a POST request on URL using entity as request body.
-   *
-   * @param url
-   * @param entity
-   * @return The response as a string
-   * @throws ApiException
-   * @throws IOException
+   * Posts the encoded request, unless the circuit of the host is open, and records the outcome.
    */
-  private static String postRequest(HostConfig config, String entity) throws ApiException {
+  private static JsonNode post(HostConfig config, byte[] body) throws ApiException {
+    final CircuitBreaker breaker = CircuitBreaker.forHost(config);
+    breaker.acquire();
     try {
-      URL url = new URL("http", config.getAddress(), config.getHttpPort(), "/jsonrpc");
-      final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-
-      conn.setRequestMethod("POST");
+      final JsonNode response = getTransport(config).post(config, body);
+      breaker.onSuccess();
+      return response;
+    }
+    catch (ApiException e) {
+      breaker.onError(e.getCode());
+      throw e;
+    }
+  }
 
-      // http basic authorization
-      if (config.getUsername() != null && !config.getUsername().isEmpty() && config.getPassword() != null && !config.getPassword().isEmpty()) {
-        final String token = Base64.encodeToString((config.getUsername() + ":" + config.getPassword()).getBytes(), false);
-        conn.setRequestProperty("Authorization", "Basic " + token);
+  /**
+   * Returns the (cached) transport of the host.
+   *
+   * @param config
+   *          Host configuration
+   * @return Transport of the host
+   * @throws ApiException
+   */
+  private static HttpTransport getTransport(HostConfig config) throws ApiException {
+    HttpTransport transport = TRANSPORTS.get(config);
+    if (transport == null) {
+      transport = new HttpTransport(config);
+      final HttpTransport existing = TRANSPORTS.putIfAbsent(config, transport);
+      if (existing != null) {
+        transport = existing;
       }
-      conn.setRequestProperty("Content-Type", "application/json");
-      conn.setRequestProperty("User-Agent", buildUserAgent());
-
-      conn.setConnectTimeout(REQUEST_TIMEOUT);
-      conn.setReadTimeout(REQUEST_TIMEOUT);
-
-      conn.setDoOutput(true);
+    }
+    return transport;
+  }
 
-      LOGGER.debug("CALL: {}", entity.toString());
+  /**
+   * Executes the call synchronously and puts the response into it.
+   *
+   * @param config
+   *          Host to send the call to
+   * @param call
+   *          Call to execute
+   * @return The same call, containing the response
+   * @throws ApiException
+   */
+  public static <T> AbstractCall<T> execute(HostConfig config, AbstractCall<T> call) throws ApiException {
+    if (call.isLazyResults() && call.isStreamable()) {
+      final CircuitBreaker breaker = CircuitBreaker.forHost(config);
+      breaker.acquire();
+      final JsonNode error;
       try {
-        OutputStreamWriter output = new OutputStreamWriter(conn.getOutputStream(), "UTF-8");
-        output.write(entity);
-        output.close();
-      }
-      catch (UnsupportedEncodingException e) {
-        throw new ApiException(ApiException.UNSUPPORTED_ENCODING, "Unable to convert request to UTF-8", e);
+        error = getTransport(config).index(config, call);
+        breaker.onSuccess();
       }
-
-      StringBuilder response = new StringBuilder();
-      BufferedReader reader = null;
-
-      final int code = conn.getResponseCode();
-      if (code == 200) {
-        try {
-          reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), "UTF-8"), 8192);
-          String line;
-          while ((line = reader.readLine()) != null) {
-            response.append(line);
-          }
-        }
-        catch (UnsupportedEncodingException e) {
-          throw new ApiException(ApiException.UNSUPPORTED_ENCODING, "Unable to convert HTTP response to UTF-8", e);
-        }
-        finally {
-          if (reader != null) {
-            reader.close();
-          }
-        }
-
-        return response.toString();
-
+      catch (ApiException e) {
+        breaker.onError(e.getCode());
+        throw e;
       }
-      else {
-        switch (code) {
-          case 400:
-            throw new ApiException(ApiException.HTTP_BAD_REQUEST, "Server says \"400 Bad HTTP request\".");
-          case 401:
-            throw new ApiException(ApiException.HTTP_UNAUTHORIZED, "Server says \"401 Unauthorized\".");
-          case 403:
-            throw new ApiException(ApiException.HTTP_FORBIDDEN, "Server says \"403 Forbidden\".");
-          case 404:
-            throw new ApiException(ApiException.HTTP_NOT_FOUND, "Server says \"404 Not Found\".");
-          default:
-            if (code >= 100 && code < 200) {
-              throw new ApiException(ApiException.HTTP_INFO, "Server returned informational code " + code + " instead of 200.");
-            }
-            else if (code >= 200 && code < 300) {
-              throw new ApiException(ApiException.HTTP_SUCCESS, "Server returned success code " + code + " instead of 200.");
-            }
-            else if (code >= 300 && code < 400) {
-              throw new ApiException(ApiException.HTTP_REDIRECTION, "Server returned redirection code " + code + " instead of 200.");
-            }
-            else if (code >= 400 && code < 500) {
-              throw new ApiException(ApiException.HTTP_CLIENT_ERROR, "Server returned client error " + code + ".");
-            }
-            else if (code >= 500 && code < 600) {
-              throw new ApiException(ApiException.HTTP_SERVER_ERROR, "Server returned server error " + code + ".");
-            }
-            else {
-              throw new ApiException(ApiException.HTTP_UNKNOWN, "Server returned unspecified code " + code + ".");
-            }
-        }
+      if (error != null) {
+        throw apiError(error);
       }
+      return call;
+    }
+    final ObjectNode response = parseResponse(post(config, HttpTransport.encode(call)));
+    if (response != null) {
+      call.setResponse(response);
     }
-    catch (MalformedURLException e) {
-      throw new ApiException(ApiException.MALFORMED_URL, e.getMessage(), e);
+    return call;
+  }
+
+  /**
+   * Executes the call synchronously and streams the items of its result into the consumer as they are read from the response body. Neither the
+   * complete response tree nor the result list is ever built.
+   *
+   * @param config
+   *          Host to send the call to
+   * @param call
+   *          Call to execute, must support streaming (see {@link AbstractCall#isStreamable()})
+   * @param consumer
+   *          Receives every item of the result
+   * @throws ApiException
+   */
+  public static <T> void stream(HostConfig config, AbstractCall<T> call, Consumer<? super T> consumer) throws ApiException {
+    if (!call.isStreamable()) {
+      throw new IllegalArgumentException(call.getName() + " does not support streaming");
     }
-    catch (SocketTimeoutException e) {
-      throw new ApiException(ApiException.IO_SOCKETTIMEOUT, e.getMessage(), e);
+    final CircuitBreaker breaker = CircuitBreaker.forHost(config);
+    breaker.acquire();
+    final JsonNode error;
+    try {
+      error = getTransport(config).stream(config, call, consumer);
+      breaker.onSuccess();
     }
-    catch (ConnectException e) {
-      throw new ApiException(ApiException.IO_EXCEPTION_WHILE_OPENING, e.getMessage(), e);
+    catch (ApiException e) {
+      breaker.onError(e.getCode());
+      throw e;
     }
-    catch (IOException e) {
-      throw new ApiException(ApiException.IO_EXCEPTION, e.getMessage(), e);
+    if (error != null) {
+      throw apiError(error);
     }
   }
 
   /**
-   * Parses the JSON response string and returns a {@link ObjectNode}.
+   * Executes the call asynchronously on the default executor.
    *
-   * If the response is not valid JSON, contained an error message or did not include a result then a HandlerException is thrown.
+   * @param config
+   *          Host to send the call to
+   * @param call
+   *          Call to execute
+   * @return Future completing with the call containing the response, or exceptionally with an {@link ApiException}
+   */
+  public static <T> CompletableFuture<AbstractCall<T>> executeAsync(HostConfig config, AbstractCall<T> call) {
+    return executeAsync(config, call, getAsyncExecutor());
+  }
+
+  /**
+   * Executes the call asynchronously on the given executor.
    *
-   * @param response
-   * @return ObjectNode Root node of the server response, unserialized as ObjectNode.
+   * @param config
+   *          Host to send the call to
+   * @param call
+   *          Call to execute
+   * @param executor
+   *          Executor running the (blocking) HTTP request
+   * @return Future completing with the call containing the response, or exceptionally with an {@link ApiException}
+   */
+  public static <T> CompletableFuture<AbstractCall<T>> executeAsync(final HostConfig config, final AbstractCall<T> call, Executor executor) {
+    final CompletableFuture<AbstractCall<T>> future = new CompletableFuture<AbstractCall<T>>();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          future.complete(execute(config, call));
+        }
+        catch (Exception e) {
+          future.completeExceptionally(e);
+        }
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Executes all calls of the batch with a single HTTP request. The response of each call is passed to its own callback.
+   * <p/>
+   * If the request fails as a whole, the callbacks of all calls are notified with the error before the exception is thrown.
+   *
+   * @param config
+   *          Host to send the batch to
+   * @param batch
+   *          Calls to execute
    * @throws ApiException
    */
-  private static ObjectNode parseResponse(String response) throws ApiException {
+  public static void execute(HostConfig config, CallBatch batch) throws ApiException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    final JsonNode response;
     try {
-      final ObjectNode node = (ObjectNode) OM.readTree(response.toString());
+      response = post(config, HttpTransport.encode(batch));
+    }
+    catch (ApiException e) {
+      batch.fail(e.getCode(), e.getMessage());
+      throw e;
+    }
+    batch.dispatch(response);
+  }
 
-      if (node.has("error")) {
-        if (node.get("error").isTextual()) {
-          final TextNode error = (TextNode) node.get("error");
-          throw new ApiException(ApiException.API_ERROR, "Error: " + error.getTextValue(), null);
+  /**
+   * Executes all calls of the batch asynchronously with a single HTTP request on the default executor.
+   *
+   * @param config
+   *          Host to send the batch to
+   * @param batch
+   *          Calls to execute
+   * @return Future completing with the batch once all callbacks have been notified
+   */
+  public static CompletableFuture<CallBatch> executeAsync(final HostConfig config, final CallBatch batch) {
+    final CompletableFuture<CallBatch> future = new CompletableFuture<CallBatch>();
+    getAsyncExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          execute(config, batch);
+          future.complete(batch);
         }
-        else {
-          final ObjectNode error = (ObjectNode) node.get("error");
-          throw new ApiException(ApiException.API_ERROR, "Error " + error.get("code").getIntValue() + ": " + error.get("message").getTextValue(),
-              null);
+        catch (Exception e) {
+          future.completeExceptionally(e);
         }
       }
+    });
+    return future;
+  }
 
-      if (!node.has("result")) {
-        throw new ApiException(ApiException.RESPONSE_ERROR, "Neither result nor error object found in response.", null);
-      }
+  /**
+   * Executes the call asynchronously on the default executor and returns its results as list.
+   *
+   * @param config
+   *          Host to send the call to
+   * @param call
+   *          Call to execute
+   * @return Stage completing with the results of the call
+   */
+  public static <T> CompletionStage<List<T>> executeForResults(HostConfig config, AbstractCall<T> call) {
+    return executeAsync(config, call).thenApply(AbstractCall::getResults);
+  }
 
-      if (node.get("result").isNull()) {
-        return null;
-      }
+  private static synchronized Executor getAsyncExecutor() {
+    if (asyncExecutor == null) {
+      asyncExecutor = Executors.newFixedThreadPool(ASYNC_THREADS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
 
-      return node;
+        @Override
+        public Thread newThread(Runnable r) {
+          final Thread thread = new Thread(r, "kodi-json-rpc-http-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
     }
-    catch (JsonProcessingException e) {
-      throw new ApiException(ApiException.JSON_EXCEPTION, "Parse error: " + e.getMessage(), e);
+    return asyncExecutor;
+  }
+
+  /**
+   * Checks the JSON response and returns it as {@link ObjectNode}.
+   *
+   * If the response is not a JSON object, contained an error message or did not include a result then a HandlerException is thrown.
+   *
+   * @param response
+   * @return ObjectNode Root node of the server response, unserialized as ObjectNode.
+   * @throws ApiException
+   */
+  private static ObjectNode parseResponse(JsonNode response) throws ApiException {
+    if (!(response instanceof ObjectNode)) {
+      throw new ApiException(ApiException.RESPONSE_ERROR, "Response is not a JSON object.", null);
+    }
+    final ObjectNode node = (ObjectNode) response;
+
+    if (node.has("error")) {
+      throw apiError(node.get("error"));
     }
-    catch (IOException e) {
-      throw new ApiException(ApiException.JSON_EXCEPTION, "Parse error: " + e.getMessage(), e);
+
+    if (!node.has("result")) {
+      throw new ApiException(ApiException.RESPONSE_ERROR, "Neither result nor error object found in response.", null);
     }
+
+    if (node.get("result").isNull()) {
+      return null;
+    }
+
+    return node;
   }
 
   /**
-   * Build user agent used for the HTTP requests
-   *
-   * TODO: include version information
+   * Creates the exception for the <tt>error</tt> node of a response.
    *
-   * @return String containing the user agent
+   * @param error
+   *          Error node (text or object)
+   * @return Exception to throw
    */
-  private static String buildUserAgent() {
-    return "tinyMediaManager-jsonrpclib-kodi";
+  private static ApiException apiError(JsonNode error) {
+    if (error.isTextual()) {
+      return new ApiException(ApiException.API_ERROR, "Error: " + error.getTextValue(), null);
+    }
+    else {
+      return new ApiException(ApiException.API_ERROR, "Error " + error.get("code").getIntValue() + ": " + error.get("message").getTextValue(), null);
+    }
   }
 }
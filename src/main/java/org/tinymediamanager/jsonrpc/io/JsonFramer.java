@@ -0,0 +1,112 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits a raw byte stream into complete top-level JSON messages.
+ * <p/>
+ * Kodi writes its responses and notifications back-to-back on the TCP socket without any delimiter, so we keep track of the nesting depth (ignoring
+ * brackets inside of strings) and cut a message as soon as the depth drops back to zero. The framer never parses anything, it only looks at the
+ * structural characters.
+ * <p/>
+ * <i>Note</i>: Instances are not thread safe and are meant to be fed from the I/O thread only.
+ */
+class JsonFramer {
+
+  /**
+   * Receives every complete message found by the framer.
+   */
+  interface MessageHandler {
+    void onMessage(byte[] message);
+  }
+
+  private static final int INITIAL_SIZE = 8192;
+  private static final int MAX_RETAINED = 1024 * 1024;
+
+  private byte[]           buffer       = new byte[INITIAL_SIZE];
+  private int              length       = 0;
+  private int              depth        = 0;
+  private boolean          inString     = false;
+  private boolean          escaped      = false;
+
+  /**
+   * Consumes all remaining bytes of the buffer and calls the handler once per complete top-level message.
+   *
+   * @param data
+   *          Freshly read data, flipped for reading
+   * @param handler
+   *          Handler receiving the messages
+   */
+  void feed(ByteBuffer data, MessageHandler handler) {
+    while (data.hasRemaining()) {
+      final byte b = data.get();
+
+      if (depth == 0 && !inString) {
+        // skip whitespace (and any garbage) in between messages
+        if (b != '{' && b != '[') {
+          continue;
+        }
+      }
+      append(b);
+
+      if (inString) {
+        if (escaped) {
+          escaped = false;
+        }
+        else if (b == '\\') {
+          escaped = true;
+        }
+        else if (b == '"') {
+          inString = false;
+        }
+        continue;
+      }
+
+      switch (b) {
+        case '"':
+          inString = true;
+          break;
+
+        case '{':
+        case '[':
+          depth++;
+          break;
+
+        case '}':
+        case ']':
+          depth--;
+          if (depth == 0) {
+            final byte[] message = Arrays.copyOf(buffer, length);
+            length = 0;
+            if (buffer.length > MAX_RETAINED) {
+              // don't keep the memory of a huge library response around forever
+              buffer = new byte[INITIAL_SIZE];
+            }
+            handler.onMessage(message);
+          }
+          break;
+
+        default:
+          break;
+      }
+    }
+  }
+
+  /**
+   * Drops any partially received message.
+   */
+  void reset() {
+    length = 0;
+    depth = 0;
+    inString = false;
+    escaped = false;
+  }
+
+  private void append(byte b) {
+    if (length == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    buffer[length++] = b;
+  }
+}
@@ -0,0 +1,184 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.tinymediamanager.jsonrpc.api.AbstractCall;
+import org.tinymediamanager.jsonrpc.api.model.ListModel;
+import org.tinymediamanager.jsonrpc.config.HostConfig;
+
+/**
+ * Walks a list call page by page using {@link ListModel.Limits}, so huge libraries can be iterated with bounded memory.
+ * <p/>
+ * Works with every list call taking limits (e.g. <tt>VideoLibrary.GetMovies</tt>, <tt>GetTVShows</tt>, <tt>GetEpisodes</tt>,
+ * <tt>AudioLibrary.GetSongs</tt>, <tt>GetAlbums</tt>, <tt>GetArtists</tt>, <tt>Files.GetDirectory</tt>, <tt>PVR.GetBroadcasts</tt>): the pager
+ * creates one call per page through the given factory. While a page is consumed, the next page is already in flight. The total number of items is
+ * taken from the {@link ListModel.LimitsReturned} of the first page.
+ * <p/>
+ * <u>Example</u>:
+ *
+ * <pre>
+ * ListPager&lt;MovieDetail&gt; movies = new ListPager&lt;MovieDetail&gt;(connectionManager, 500, new Function&lt;ListModel.Limits, AbstractCall&lt;MovieDetail&gt;&gt;() {
+ *   public AbstractCall&lt;MovieDetail&gt; apply(ListModel.Limits limits) {
+ *     return new VideoLibrary.GetMovies(limits, MovieFields.FILE);
+ *   }
+ * });
+ * for (MovieDetail movie : movies) {
+ *   ...
+ * }
+ * </pre>
+ *
+ * Errors are thrown by the iterator as {@link CompletionException} with the {@link ApiException} as cause.
+ */
+public class ListPager<T> implements Iterable<T> {
+
+  private final Function<ListModel.Limits, AbstractCall<T>>                   callFactory;
+  private final Function<AbstractCall<T>, CompletableFuture<AbstractCall<T>>> executor;
+  private final int                                                           pageSize;
+
+  /**
+   * Creates a pager sending its calls via TCP.
+   *
+   * @param connectionManager
+   *          Connected connection manager
+   * @param pageSize
+   *          Number of items per page
+   * @param callFactory
+   *          Creates the call for the given page limits
+   */
+  public ListPager(final JavaConnectionManager connectionManager, int pageSize, Function<ListModel.Limits, AbstractCall<T>> callFactory) {
+    this(pageSize, callFactory, new Function<AbstractCall<T>, CompletableFuture<AbstractCall<T>>>() {
+      @Override
+      public CompletableFuture<AbstractCall<T>> apply(AbstractCall<T> call) {
+        return connectionManager.callAsync(call);
+      }
+    });
+  }
+
+  /**
+   * Creates a pager sending its calls via HTTP.
+   *
+   * @param config
+   *          Host to send the calls to
+   * @param pageSize
+   *          Number of items per page
+   * @param callFactory
+   *          Creates the call for the given page limits
+   */
+  public ListPager(final HostConfig config, int pageSize, Function<ListModel.Limits, AbstractCall<T>> callFactory) {
+    this(pageSize, callFactory, new Function<AbstractCall<T>, CompletableFuture<AbstractCall<T>>>() {
+      @Override
+      public CompletableFuture<AbstractCall<T>> apply(AbstractCall<T> call) {
+        return JsonApiRequest.executeAsync(config, call);
+      }
+    });
+  }
+
+  /**
+   * Creates a pager sending its calls with the given executor.
+   *
+   * @param pageSize
+   *          Number of items per page
+   * @param callFactory
+   *          Creates the call for the given page limits
+   * @param executor
+   *          Sends a call and returns the future of its response
+   */
+  public ListPager(int pageSize, Function<ListModel.Limits, AbstractCall<T>> callFactory,
+      Function<AbstractCall<T>, CompletableFuture<AbstractCall<T>>> executor) {
+    if (pageSize <= 0) {
+      throw new IllegalArgumentException("page size must be positive");
+    }
+    this.pageSize = pageSize;
+    this.callFactory = callFactory;
+    this.executor = executor;
+  }
+
+  /**
+   * Returns a new iterator; the first page is requested immediately.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new PageIterator();
+  }
+
+  @Override
+  public Spliterator<T> spliterator() {
+    return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED);
+  }
+
+  /**
+   * @return A sequential stream over all items of all pages
+   */
+  public Stream<T> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  private CompletableFuture<AbstractCall<T>> requestPage(int start) {
+    return executor.apply(callFactory.apply(new ListModel.Limits(start + pageSize, start)));
+  }
+
+  /**
+   * Iterates over the items of the current page while the next page is already being fetched.
+   */
+  private class PageIterator implements Iterator<T> {
+    private CompletableFuture<AbstractCall<T>> nextPage;
+    private int                                nextStart;
+    private List<T>                            items;
+    private int                                index;
+
+    PageIterator() {
+      nextStart = 0;
+      nextPage = requestPage(0);
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (items == null || index >= items.size()) {
+        if (nextPage == null) {
+          return false;
+        }
+        fetch();
+      }
+      return true;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return items.get(index++);
+    }
+
+    /**
+     * Waits for the page in flight, then immediately requests the following one (if any).
+     */
+    private void fetch() {
+      final AbstractCall<T> call = nextPage.join();
+      final List<T> results = call.getResultList();
+      items = results;
+      index = 0;
+
+      final int received = results == null ? 0 : results.size();
+      nextStart += pageSize;
+      final ListModel.LimitsReturned limits = call.getLimits();
+      final boolean more;
+      if (limits != null && limits.total != null) {
+        more = received > 0 && nextStart < limits.total;
+      }
+      else {
+        more = received >= pageSize;
+      }
+      nextPage = more ? requestPage(nextStart) : null;
+    }
+  }
+}
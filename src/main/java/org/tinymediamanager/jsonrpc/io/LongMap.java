@@ -0,0 +1,184 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread-safe map from positive <tt>long</tt> keys to values, used to look up pending calls by their id.
+ * <p/>
+ * Keys are spread over a fixed number of stripes, each one an open-addressing table with linear probing guarded by its own lock. Keys are stored
+ * unboxed, and since call ids are sequential, consecutive calls end up in different stripes and rarely contend.
+ */
+final class LongMap<V> {
+  private static final int STRIPES = 16;
+
+  private final Stripe[]   stripes = new Stripe[STRIPES];
+
+  LongMap() {
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  private Stripe stripe(long key) {
+    if (key <= 0) {
+      throw new IllegalArgumentException("Key must be positive: " + key);
+    }
+    return stripes[(int) (key & (STRIPES - 1))];
+  }
+
+  /**
+   * @return The previous value of the key, or <tt>null</tt>
+   */
+  V put(long key, V value) {
+    return cast(stripe(key).put(key, value));
+  }
+
+  /**
+   * @return The value of the key, or <tt>null</tt>
+   */
+  V get(long key) {
+    return key <= 0 ? null : cast(stripe(key).get(key));
+  }
+
+  boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+  /**
+   * @return The removed value of the key, or <tt>null</tt>
+   */
+  V remove(long key) {
+    return key <= 0 ? null : cast(stripe(key).remove(key));
+  }
+
+  int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  /**
+   * @return A snapshot of all values
+   */
+  List<V> values() {
+    final List<V> values = new ArrayList<V>();
+    for (Stripe stripe : stripes) {
+      stripe.addValuesTo(values);
+    }
+    return values;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V cast(Object value) {
+    return (V) value;
+  }
+
+  /**
+   * An open-addressing table; a key of 0 marks a free slot. Removal shifts the following entries back, so no tombstones are needed.
+   */
+  private static final class Stripe {
+    private long[]   keys   = new long[16];
+    private Object[] values = new Object[16];
+    private int      size;
+
+    private int index(long key, int mask) {
+      // the low bits select the stripe, so hash the rest
+      final long h = (key >>> 4) * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    synchronized Object put(long key, Object value) {
+      final int mask = keys.length - 1;
+      int i = index(key, mask);
+      while (keys[i] != 0) {
+        if (keys[i] == key) {
+          final Object previous = values[i];
+          values[i] = value;
+          return previous;
+        }
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      values[i] = value;
+      if (++size * 2 > keys.length) {
+        resize();
+      }
+      return null;
+    }
+
+    synchronized Object get(long key) {
+      final int mask = keys.length - 1;
+      int i = index(key, mask);
+      while (keys[i] != 0) {
+        if (keys[i] == key) {
+          return values[i];
+        }
+        i = (i + 1) & mask;
+      }
+      return null;
+    }
+
+    synchronized Object remove(long key) {
+      final int mask = keys.length - 1;
+      int i = index(key, mask);
+      while (keys[i] != key) {
+        if (keys[i] == 0) {
+          return null;
+        }
+        i = (i + 1) & mask;
+      }
+      final Object removed = values[i];
+      size--;
+
+      // move back entries whose probe sequence passes the freed slot
+      int free = i;
+      int j = (i + 1) & mask;
+      while (keys[j] != 0) {
+        final int home = index(keys[j], mask);
+        if (((j - home) & mask) >= ((j - free) & mask)) {
+          keys[free] = keys[j];
+          values[free] = values[j];
+          free = j;
+        }
+        j = (j + 1) & mask;
+      }
+      keys[free] = 0;
+      values[free] = null;
+      return removed;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized <V> void addValuesTo(List<V> list) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] != 0) {
+          list.add((V) values[i]);
+        }
+      }
+    }
+
+    private void resize() {
+      final long[] oldKeys = keys;
+      final Object[] oldValues = values;
+      keys = new long[oldKeys.length * 2];
+      values = new Object[oldKeys.length * 2];
+      final int mask = keys.length - 1;
+      for (int k = 0; k < oldKeys.length; k++) {
+        if (oldKeys[k] != 0) {
+          int i = index(oldKeys[k], mask);
+          while (keys[i] != 0) {
+            i = (i + 1) & mask;
+          }
+          keys[i] = oldKeys[k];
+          values[i] = oldValues[k];
+        }
+      }
+    }
+  }
+}
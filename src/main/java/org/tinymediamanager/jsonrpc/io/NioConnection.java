@@ -0,0 +1,302 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A non-blocking TCP connection to the JSON-RPC port of one Kodi host, driven by a {@link SelectorLoop}.
+ * <p/>
+ * Outgoing messages may be queued from any thread; they are copied into a direct buffer and written by the I/O thread. Incoming data is read into a
+ * direct buffer and cut into complete JSON messages by a {@link JsonFramer}.
+ */
+class NioConnection {
+  private static final Logger LOGGER      = LoggerFactory.getLogger(NioConnection.class);
+  private static final int    BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Receives the messages and the close event of a connection. All methods are called on the I/O thread.
+   */
+  interface Handler {
+    void onMessage(NioConnection connection, byte[] message);
+
+    /**
+     * @param cause
+     *          The reason the connection was closed, or <tt>null</tt> if it was closed locally
+     */
+    void onClosed(NioConnection connection, Exception cause);
+  }
+
+  private final SelectorLoop              loop;
+  private final SocketChannel             channel;
+  private final Handler                   handler;
+  private final JsonFramer                framer         = new JsonFramer();
+  private final ByteBuffer                readBuffer     = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final ByteBuffer                writeBuffer    = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final Queue<byte[]>             outbound       = new ConcurrentLinkedQueue<byte[]>();
+  private final AtomicBoolean             flushScheduled = new AtomicBoolean(false);
+  private final AtomicBoolean             closed         = new AtomicBoolean(false);
+  /**
+   * Completed once the connection has been established, or exceptionally if it could not be.
+   */
+  private final CompletableFuture<Void>   connected      = new CompletableFuture<Void>();
+  private final Runnable                  flushTask;
+  private final JsonFramer.MessageHandler messageHandler;
+
+  private volatile SelectionKey           key;
+  private byte[]                          current;
+  private int                             currentOffset;
+
+  private NioConnection(SelectorLoop loop, SocketChannel channel, Handler handler) {
+    this.loop = loop;
+    this.channel = channel;
+    this.handler = handler;
+    this.flushTask = new Runnable() {
+      @Override
+      public void run() {
+        flushScheduled.set(false);
+        try {
+          handleWrite();
+        }
+        catch (CancelledKeyException e) {
+          // closed by another thread in the meantime
+        }
+        catch (IOException e) {
+          close(e);
+        }
+      }
+    };
+    this.messageHandler = new JsonFramer.MessageHandler() {
+      @Override
+      public void onMessage(byte[] message) {
+        NioConnection.this.handler.onMessage(NioConnection.this, message);
+      }
+    };
+  }
+
+  /**
+   * Connects to the given address and registers the connection with the loop. The connection is established by the I/O thread; the calling thread
+   * waits for it until the timeout, so it must not be the I/O thread itself.
+   *
+   * @param loop
+   *          Selector loop serving the connection
+   * @param address
+   *          Address of the Kodi TCP port
+   * @param connectTimeout
+   *          Time to wait for the connection in milliseconds, 0 for the timeout of the operating system
+   * @param handler
+   *          Receives messages and the close event
+   * @return The connected connection
+   * @throws SocketTimeoutException
+   *           if the connection could not be established within the timeout
+   * @throws IOException
+   *           if the connection could not be established
+   */
+  static NioConnection open(SelectorLoop loop, InetSocketAddress address, int connectTimeout, Handler handler) throws IOException {
+    if (loop.inLoop()) {
+      throw new IllegalStateException("Cannot wait for a connection on the I/O thread");
+    }
+    final SocketChannel channel = SocketChannel.open();
+    try {
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      channel.connect(address);
+    }
+    catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+
+    final NioConnection connection = new NioConnection(loop, channel, handler);
+    loop.execute(new Runnable() {
+      @Override
+      public void run() {
+        connection.register();
+      }
+    });
+    try {
+      if (connectTimeout > 0) {
+        connection.connected.get(connectTimeout, TimeUnit.MILLISECONDS);
+      }
+      else {
+        connection.connected.get();
+      }
+      return connection;
+    }
+    catch (TimeoutException e) {
+      connection.close(null);
+      throw new SocketTimeoutException("Connecting to " + address + " timed out after " + connectTimeout + "ms");
+    }
+    catch (InterruptedException e) {
+      connection.close(null);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while connecting to " + address);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Queues a message for sending.
+   *
+   * @param data
+   *          The complete, encoded message
+   * @return false if the connection is already closed
+   */
+  boolean send(byte[] data) {
+    if (closed.get()) {
+      return false;
+    }
+    outbound.offer(data);
+    if (flushScheduled.compareAndSet(false, true)) {
+      loop.execute(flushTask);
+    }
+    return true;
+  }
+
+  boolean isOpen() {
+    return !closed.get();
+  }
+
+  /**
+   * Closes the connection; only the first call has an effect.
+   *
+   * @param cause
+   *          Reason for closing or <tt>null</tt> if closed on purpose
+   */
+  void close(Exception cause) {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    final SelectionKey k = key;
+    if (k != null) {
+      k.cancel();
+    }
+    try {
+      channel.close();
+    }
+    catch (IOException e) {
+      LOGGER.warn("could not close channel: {}", e.getMessage());
+    }
+    outbound.clear();
+    connected.completeExceptionally(cause != null ? cause : new ClosedChannelException());
+    handler.onClosed(this, cause);
+  }
+
+  private void register() {
+    if (closed.get()) {
+      return;
+    }
+    try {
+      if (channel.isConnected()) {
+        // connected right away, as it may happen with local hosts
+        key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+        connected.complete(null);
+      }
+      else {
+        key = channel.register(loop.selector(), SelectionKey.OP_CONNECT, this);
+      }
+    }
+    catch (IOException e) {
+      close(e);
+    }
+  }
+
+  /**
+   * Completes the connection once the socket signals it is connected (or has failed to).
+   */
+  void handleConnect() throws IOException {
+    if (channel.finishConnect()) {
+      key.interestOps(SelectionKey.OP_READ);
+      connected.complete(null);
+    }
+  }
+
+  /**
+   * Reads all available data and hands complete messages to the handler.
+   */
+  void handleRead() throws IOException {
+    int read;
+    while ((read = channel.read(readBuffer)) > 0) {
+      readBuffer.flip();
+      framer.feed(readBuffer, messageHandler);
+      readBuffer.clear();
+    }
+    if (read < 0) {
+      close(new EOFException("connection closed by remote host"));
+    }
+  }
+
+  /**
+   * Writes as much of the queued data as the socket accepts and (de-)registers write interest accordingly.
+   */
+  void handleWrite() throws IOException {
+    final SelectionKey k = key;
+    if (k == null || !k.isValid()) {
+      return;
+    }
+
+    while (true) {
+      fillWriteBuffer();
+      writeBuffer.flip();
+      if (!writeBuffer.hasRemaining()) {
+        writeBuffer.clear();
+        if (k.interestOps() != SelectionKey.OP_READ) {
+          k.interestOps(SelectionKey.OP_READ);
+        }
+        return;
+      }
+
+      channel.write(writeBuffer);
+      if (writeBuffer.hasRemaining()) {
+        // socket buffer full; continue as soon as the socket is writable again
+        writeBuffer.compact();
+        k.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return;
+      }
+      writeBuffer.clear();
+    }
+  }
+
+  /**
+   * Copies queued messages into the write buffer until it is full or the queue is empty.
+   */
+  private void fillWriteBuffer() {
+    while (writeBuffer.hasRemaining()) {
+      if (current == null) {
+        current = outbound.poll();
+        currentOffset = 0;
+        if (current == null) {
+          return;
+        }
+      }
+      final int length = Math.min(writeBuffer.remaining(), current.length - currentOffset);
+      writeBuffer.put(current, currentOffset, length);
+      currentOffset += length;
+      if (currentOffset == current.length) {
+        current = null;
+      }
+    }
+  }
+}
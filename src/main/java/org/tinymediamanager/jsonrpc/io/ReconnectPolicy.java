@@ -0,0 +1,78 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Configures how a {@link JavaConnectionManager} re-establishes a lost TCP connection.
+ * <p/>
+ * Reconnection attempts are made with exponential backoff: the delay doubles after each failed attempt up to a maximum, and a random jitter of up
+ * to half the delay keeps many clients from reconnecting in lockstep after a Kodi restart. While reconnecting, new calls are buffered up to a
+ * limit and sent once the connection is back.
+ */
+public class ReconnectPolicy {
+
+  /**
+   * 500ms initial delay, 30s maximum delay, unlimited attempts, up to 1000 buffered requests.
+   */
+  public static final ReconnectPolicy DEFAULT = new ReconnectPolicy(500, 30000, 0, 1000);
+
+  private final long                  initialDelay;
+  private final long                  maxDelay;
+  private final int                   maxAttempts;
+  private final int                   maxQueuedRequests;
+
+  /**
+   * @param initialDelay
+   *          Delay before the first attempt in milliseconds
+   * @param maxDelay
+   *          Upper bound of the delay between two attempts in milliseconds
+   * @param maxAttempts
+   *          Number of attempts before giving up, 0 for unlimited
+   * @param maxQueuedRequests
+   *          Number of requests buffered while reconnecting; further calls are failed right away
+   */
+  public ReconnectPolicy(long initialDelay, long maxDelay, int maxAttempts, int maxQueuedRequests) {
+    this.initialDelay = initialDelay;
+    this.maxDelay = maxDelay;
+    this.maxAttempts = maxAttempts;
+    this.maxQueuedRequests = maxQueuedRequests;
+  }
+
+  public long getInitialDelay() {
+    return initialDelay;
+  }
+
+  public long getMaxDelay() {
+    return maxDelay;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public int getMaxQueuedRequests() {
+    return maxQueuedRequests;
+  }
+
+  /**
+   * Returns the delay before the given attempt.
+   *
+   * @param attempt
+   *          Number of failed attempts so far
+   * @return Delay in milliseconds, between half and the full backoff
+   */
+  public long getDelay(int attempt) {
+    final long backoff = (long) Math.min(maxDelay, initialDelay * Math.pow(2, attempt));
+    final long half = backoff / 2;
+    return half + (half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+  }
+
+  /**
+   * @param attempt
+   *          Number of failed attempts so far
+   * @return <tt>true</tt> if another attempt should be made
+   */
+  public boolean shouldRetry(int attempt) {
+    return maxAttempts <= 0 || attempt < maxAttempts;
+  }
+}
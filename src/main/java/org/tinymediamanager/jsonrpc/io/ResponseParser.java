@@ -0,0 +1,170 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.tinymediamanager.jsonrpc.api.AbstractCall;
+
+/**
+ * Token level helpers for reading JSON-RPC responses without building the complete tree.
+ */
+final class ResponseParser {
+  private static final ObjectMapper OM = new ObjectMapper();
+
+  private ResponseParser() {
+  }
+
+  /**
+   * Walks the envelope of a response and streams its <tt>result</tt> into the call.
+   *
+   * @param jp
+   *          Parser positioned before the response object
+   * @param call
+   *          Call the response belongs to
+   * @param consumer
+   *          Receives the items of the result
+   * @return The <tt>error</tt> node if the response contains an error, <tt>null</tt> otherwise
+   * @throws IOException
+   *           if the response could not be read
+   */
+  static <T> JsonNode streamResponse(JsonParser jp, final AbstractCall<T> call, final Consumer<? super T> consumer) throws IOException {
+    return readResponse(jp, new ResultReader() {
+      @Override
+      public void read(JsonParser jp) throws IOException {
+        call.streamResult(jp, consumer);
+      }
+    });
+  }
+
+  /**
+   * Walks the envelope of a raw response and keeps its <tt>result</tt> in the call as {@link AbstractCall#setLazyResults(boolean) lazy} list
+   * without building a tree of it.
+   *
+   * @param call
+   *          Call the response belongs to, with lazy results
+   * @param data
+   *          The raw response
+   * @return The <tt>error</tt> node if the response contains an error, <tt>null</tt> otherwise
+   * @throws IOException
+   *           if the response could not be read
+   */
+  static JsonNode indexResponse(final AbstractCall<?> call, final byte[] data) throws IOException {
+    final JsonParser jp = OM.getJsonFactory().createJsonParser(data);
+    try {
+      return readResponse(jp, new ResultReader() {
+        @Override
+        public void read(JsonParser jp) throws IOException {
+          call.indexResult(jp, data);
+        }
+      });
+    }
+    finally {
+      jp.close();
+    }
+  }
+
+  private static JsonNode readResponse(JsonParser jp, ResultReader reader) throws IOException {
+    if (jp.nextToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException("Response is not a JSON object.", jp.getCurrentLocation());
+    }
+
+    JsonNode error = null;
+    while (jp.nextToken() == JsonToken.FIELD_NAME) {
+      final String field = jp.getCurrentName();
+      jp.nextToken();
+      if (AbstractCall.RESULT.equals(field)) {
+        reader.read(jp);
+      }
+      else if ("error".equals(field)) {
+        error = OM.readTree(jp);
+      }
+      else {
+        jp.skipChildren();
+      }
+    }
+    return error;
+  }
+
+  /**
+   * Returns the id of a response without parsing it into a tree.
+   *
+   * @param message
+   *          Raw JSON message
+   * @return The id or 0 if the message is no object or has no numeric id (i.e. is a notification)
+   * @throws IOException
+   *           if the message could not be read
+   */
+  static long peekId(byte[] message) throws IOException {
+    final JsonParser jp = OM.getJsonFactory().createJsonParser(message);
+    try {
+      if (jp.nextToken() != JsonToken.START_OBJECT) {
+        return 0;
+      }
+      while (jp.nextToken() == JsonToken.FIELD_NAME) {
+        final String field = jp.getCurrentName();
+        final JsonToken token = jp.nextToken();
+        if ("id".equals(field)) {
+          return token == JsonToken.VALUE_NUMBER_INT ? jp.getLongValue() : 0;
+        }
+        jp.skipChildren();
+      }
+      return 0;
+    }
+    finally {
+      jp.close();
+    }
+  }
+
+  /**
+   * Returns the id of a parsed response.
+   *
+   * @param response
+   *          Response object
+   * @return The id or 0 if the response has no numeric id
+   */
+  static long getId(JsonNode response) {
+    final JsonNode id = response.get("id");
+    return id != null && id.isIntegralNumber() ? id.getLongValue() : 0;
+  }
+
+  /**
+   * Passes a JSON-RPC error to the callback.
+   *
+   * @param callback
+   *          Callback to notify
+   * @param errorNode
+   *          The <tt>error</tt> node of the response
+   */
+  static void notifyError(ApiCallback<?> callback, JsonNode errorNode) {
+    int errorCode = -1;
+    String message = "";
+    String hint = "";
+    if (errorNode.isTextual()) {
+      message = errorNode.getTextValue();
+    }
+    else {
+      if (errorNode.has("code")) {
+        errorCode = errorNode.get("code").getIntValue();
+      }
+      if (errorNode.has("message")) {
+        message = errorNode.get("message").getTextValue();
+      }
+      if (errorNode.has("data")) {
+        hint = errorNode.get("data").toString();
+      }
+    }
+    callback.onError(errorCode, message, hint);
+  }
+
+  /**
+   * Reads the <tt>result</tt> of a response.
+   */
+  private interface ResultReader {
+    void read(JsonParser jp) throws IOException;
+  }
+}
@@ -0,0 +1,176 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single I/O thread multiplexing the TCP connections of any number of {@link JavaConnectionManager}s.
+ * <p/>
+ * All reads and writes of the registered connections happen on this thread; other threads only hand over work via {@link #execute(Runnable)}.
+ * Unless configured otherwise, every connection manager shares the {@link #getDefault() default loop}, so managing dozens of Kodi hosts costs one
+ * thread in total.
+ */
+public class SelectorLoop {
+  private static final Logger          LOGGER = LoggerFactory.getLogger(SelectorLoop.class);
+
+  private static SelectorLoop          defaultLoop;
+
+  private final String                 name;
+  private final Queue<Runnable>        tasks  = new ConcurrentLinkedQueue<Runnable>();
+  private Selector                     selector;
+  private Thread                       thread;
+  private volatile boolean             running;
+
+  /**
+   * Creates a new, not yet started selector loop.
+   *
+   * @param name
+   *          Name of the I/O thread
+   */
+  public SelectorLoop(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Returns the loop shared by all connection managers which have not been given an own loop. The loop is started on first access.
+   *
+   * @return The default selector loop
+   * @throws IOException
+   *           if the selector cannot be opened
+   */
+  public static synchronized SelectorLoop getDefault() throws IOException {
+    if (defaultLoop == null || !defaultLoop.running) {
+      defaultLoop = new SelectorLoop("kodi-json-rpc-io");
+      defaultLoop.start();
+    }
+    return defaultLoop;
+  }
+
+  /**
+   * Opens the selector and starts the I/O thread (daemon).
+   *
+   * @throws IOException
+   *           if the selector cannot be opened
+   */
+  public synchronized void start() throws IOException {
+    if (running) {
+      return;
+    }
+    selector = Selector.open();
+    running = true;
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        loop();
+      }
+    }, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stops the I/O thread and closes all connections still registered.
+   */
+  public synchronized void shutdown() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    selector.wakeup();
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Runs the task on the I/O thread. If called from the I/O thread itself, the task is run immediately.
+   *
+   * @param task
+   *          Task to run
+   */
+  public void execute(Runnable task) {
+    if (Thread.currentThread() == thread) {
+      task.run();
+    }
+    else {
+      tasks.offer(task);
+      selector.wakeup();
+    }
+  }
+
+  /**
+   * @return true if the calling thread is the I/O thread of this loop
+   */
+  public boolean inLoop() {
+    return Thread.currentThread() == thread;
+  }
+
+  Selector selector() {
+    return selector;
+  }
+
+  private void loop() {
+    while (running) {
+      try {
+        selector.select();
+        runTasks();
+
+        final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+          final SelectionKey key = it.next();
+          it.remove();
+          final NioConnection connection = (NioConnection) key.attachment();
+          try {
+            if (key.isValid() && key.isConnectable()) {
+              connection.handleConnect();
+            }
+            if (key.isValid() && key.isReadable()) {
+              connection.handleRead();
+            }
+            if (key.isValid() && key.isWritable()) {
+              connection.handleWrite();
+            }
+          }
+          catch (Exception e) {
+            connection.close(e);
+          }
+        }
+      }
+      catch (Exception e) {
+        LOGGER.error("error in selector loop", e);
+      }
+    }
+
+    // shut down: close everything still open
+    runTasks();
+    for (SelectionKey key : selector.keys().toArray(new SelectionKey[0])) {
+      ((NioConnection) key.attachment()).close(new IOException("selector loop shut down"));
+    }
+    try {
+      selector.close();
+    }
+    catch (IOException e) {
+      LOGGER.warn("could not close selector: {}", e.getMessage());
+    }
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      try {
+        task.run();
+      }
+      catch (Exception e) {
+        LOGGER.error("error running I/O task", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs tasks one after another in submission order on top of another (possibly parallel) executor.
+ * <p/>
+ * At most one task is handed to the underlying executor at a time; it drains the queue, so a burst of tasks costs a single hand-over.
+ */
+class SerialExecutor implements Executor {
+  private static final Logger   LOGGER  = LoggerFactory.getLogger(SerialExecutor.class);
+
+  private final Executor        executor;
+  private final Queue<Runnable> tasks   = new ConcurrentLinkedQueue<Runnable>();
+  private final AtomicBoolean   running = new AtomicBoolean();
+
+  SerialExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    tasks.add(task);
+    schedule();
+  }
+
+  private void schedule() {
+    if (!tasks.isEmpty() && running.compareAndSet(false, true)) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          drain();
+        }
+      });
+    }
+  }
+
+  private void drain() {
+    try {
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        try {
+          task.run();
+        }
+        catch (Exception e) {
+          LOGGER.error("task failed", e);
+        }
+      }
+    }
+    finally {
+      running.set(false);
+      // a task may have been added after the last poll
+      schedule();
+    }
+  }
+}
@@ -0,0 +1,494 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.jsonrpc.api.AbstractCall;
+import org.tinymediamanager.jsonrpc.api.call.VideoLibrary;
+import org.tinymediamanager.jsonrpc.api.model.ListModel;
+import org.tinymediamanager.jsonrpc.api.model.VideoModel;
+import org.tinymediamanager.jsonrpc.api.model.VideoModel.EpisodeDetail;
+import org.tinymediamanager.jsonrpc.api.model.VideoModel.MovieDetail;
+import org.tinymediamanager.jsonrpc.api.model.VideoModel.TVShowDetail;
+import org.tinymediamanager.jsonrpc.notification.AbstractEvent;
+import org.tinymediamanager.jsonrpc.notification.VideoLibraryEvent;
+
+/**
+ * In-memory mirror of the movies, TV shows and episodes of the Kodi video library.
+ * <p/>
+ * {@link #load()} fetches the whole library once (page by page). From then on the mirror keeps itself current with the
+ * <tt>VideoLibrary.*</tt> notifications received by the connection manager: updated items are re-fetched by id, removed items are dropped.
+ * Updates which are part of a transaction (i.e. a library scan or clean) are collected and fetched with a single batch request once the scan has
+ * finished. After a reconnect, the library is reloaded in the background.
+ * <p/>
+ * Lookups by id, IMDb number or file path are answered from memory and never block.
+ */
+public class VideoLibraryMirror implements ConnectionListener {
+  private static final Logger           LOGGER                     = LoggerFactory.getLogger(VideoLibraryMirror.class);
+
+  /**
+   * JSON-RPC error code returned when asking for the details of an item which does not exist (anymore).
+   */
+  private static final int              INVALID_PARAMS             = -32602;
+  private static final int              PAGE_SIZE                  = 500;
+
+  public static final String[]          DEFAULT_MOVIE_PROPERTIES   = { VideoModel.MovieFields.TITLE, VideoModel.MovieFields.YEAR,
+      VideoModel.MovieFields.IMDBNUMBER, VideoModel.MovieFields.FILE, VideoModel.MovieFields.PLAYCOUNT, VideoModel.MovieFields.DATEADDED };
+  public static final String[]          DEFAULT_TVSHOW_PROPERTIES  = { VideoModel.TVShowFields.TITLE, VideoModel.TVShowFields.YEAR,
+      VideoModel.TVShowFields.IMDBNUMBER, VideoModel.TVShowFields.FILE, VideoModel.TVShowFields.DATEADDED };
+  public static final String[]          DEFAULT_EPISODE_PROPERTIES = { VideoModel.EpisodeFields.TITLE, VideoModel.EpisodeFields.SEASON,
+      VideoModel.EpisodeFields.EPISODE, VideoModel.EpisodeFields.TVSHOWID, VideoModel.EpisodeFields.FILE, VideoModel.EpisodeFields.PLAYCOUNT };
+
+  private final JavaConnectionManager   connectionManager;
+  private final Section<MovieDetail>    movies;
+  private final Section<TVShowDetail>   tvShows;
+  private final Section<EpisodeDetail>  episodes;
+
+  private volatile boolean              loading;
+  private volatile boolean              loaded;
+
+  /**
+   * Creates a mirror fetching the {@link #DEFAULT_MOVIE_PROPERTIES default properties}.
+   *
+   * @param connectionManager
+   *          Connection manager to fetch the library and receive the notifications with
+   */
+  public VideoLibraryMirror(JavaConnectionManager connectionManager) {
+    this(connectionManager, DEFAULT_MOVIE_PROPERTIES, DEFAULT_TVSHOW_PROPERTIES, DEFAULT_EPISODE_PROPERTIES);
+  }
+
+  /**
+   * Creates a mirror fetching the given properties. The properties needed for the lookups (file, IMDb number, TV show id) are always fetched.
+   *
+   * @param connectionManager
+   *          Connection manager to fetch the library and receive the notifications with
+   * @param movieProperties
+   *          Properties of movies, see {@link VideoModel.MovieFields}
+   * @param tvShowProperties
+   *          Properties of TV shows, see {@link VideoModel.TVShowFields}
+   * @param episodeProperties
+   *          Properties of episodes, see {@link VideoModel.EpisodeFields}
+   */
+  public VideoLibraryMirror(JavaConnectionManager connectionManager, String[] movieProperties, String[] tvShowProperties,
+      String[] episodeProperties) {
+    this.connectionManager = connectionManager;
+
+    final String[] movieProps = with(movieProperties, VideoModel.MovieFields.FILE, VideoModel.MovieFields.IMDBNUMBER);
+    movies = new Section<MovieDetail>("movie") {
+      @Override
+      AbstractCall<MovieDetail> list(ListModel.Limits limits) {
+        return new VideoLibrary.GetMovies(limits, movieProps);
+      }
+
+      @Override
+      AbstractCall<MovieDetail> details(int id) {
+        return new VideoLibrary.GetMovieDetails(id, movieProps);
+      }
+
+      @Override
+      Integer idOf(MovieDetail item) {
+        return item.movieid;
+      }
+
+      @Override
+      String fileOf(MovieDetail item) {
+        return item.file;
+      }
+
+      @Override
+      String imdbNumberOf(MovieDetail item) {
+        return item.imdbnumber;
+      }
+    };
+
+    final String[] tvShowProps = with(tvShowProperties, VideoModel.TVShowFields.FILE, VideoModel.TVShowFields.IMDBNUMBER);
+    tvShows = new Section<TVShowDetail>("tvshow") {
+      @Override
+      AbstractCall<TVShowDetail> list(ListModel.Limits limits) {
+        return new VideoLibrary.GetTVShows(limits, tvShowProps);
+      }
+
+      @Override
+      AbstractCall<TVShowDetail> details(int id) {
+        return new VideoLibrary.GetTVShowDetails(id, tvShowProps);
+      }
+
+      @Override
+      Integer idOf(TVShowDetail item) {
+        return item.tvshowid;
+      }
+
+      @Override
+      String fileOf(TVShowDetail item) {
+        return item.file;
+      }
+
+      @Override
+      String imdbNumberOf(TVShowDetail item) {
+        return item.imdbnumber;
+      }
+    };
+
+    final String[] episodeProps = with(episodeProperties, VideoModel.EpisodeFields.FILE, VideoModel.EpisodeFields.TVSHOWID);
+    episodes = new Section<EpisodeDetail>("episode") {
+      @Override
+      AbstractCall<EpisodeDetail> list(ListModel.Limits limits) {
+        return new VideoLibrary.GetEpisodes(limits, episodeProps);
+      }
+
+      @Override
+      AbstractCall<EpisodeDetail> details(int id) {
+        return new VideoLibrary.GetEpisodeDetails(id, episodeProps);
+      }
+
+      @Override
+      Integer idOf(EpisodeDetail item) {
+        return item.episodeid;
+      }
+
+      @Override
+      String fileOf(EpisodeDetail item) {
+        return item.file;
+      }
+    };
+  }
+
+  /**
+   * Loads the complete library and starts listening for changes. Blocks until all items have been fetched, so don't call this from a callback.
+   *
+   * @throws ApiException
+   *           If the library could not be fetched
+   */
+  public void load() throws ApiException {
+    // (re-)register exactly once
+    connectionManager.unregisterConnectionListener(this);
+    connectionManager.registerConnectionListener(this);
+    loading = true;
+    try {
+      // start all three listings before draining them, so they are fetched in parallel
+      final Iterator<MovieDetail> movieIterator = new ListPager<MovieDetail>(connectionManager, PAGE_SIZE, movies::list).iterator();
+      final Iterator<TVShowDetail> tvShowIterator = new ListPager<TVShowDetail>(connectionManager, PAGE_SIZE, tvShows::list).iterator();
+      final Iterator<EpisodeDetail> episodeIterator = new ListPager<EpisodeDetail>(connectionManager, PAGE_SIZE, episodes::list).iterator();
+      movies.reload(movieIterator);
+      tvShows.reload(tvShowIterator);
+      episodes.reload(episodeIterator);
+      loaded = true;
+    }
+    catch (CompletionException e) {
+      if (e.getCause() instanceof ApiException) {
+        throw (ApiException) e.getCause();
+      }
+      throw new ApiException(ApiException.API_ERROR, "Could not load video library: " + e.getMessage(), e);
+    }
+    finally {
+      loading = false;
+    }
+    // changes notified while loading
+    flush();
+  }
+
+  /**
+   * Stops listening for changes. The mirrored items stay available but are not kept current anymore.
+   */
+  public void close() {
+    connectionManager.unregisterConnectionListener(this);
+    loaded = false;
+  }
+
+  /**
+   * @return <tt>true</tt> if the library has been loaded and is kept current
+   */
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  public MovieDetail getMovie(int movieid) {
+    return movies.byId.get(movieid);
+  }
+
+  public MovieDetail getMovieByImdbNumber(String imdbNumber) {
+    return imdbNumber == null ? null : movies.byImdbNumber.get(imdbNumber);
+  }
+
+  public MovieDetail getMovieByFile(String file) {
+    return file == null ? null : movies.byFile.get(file);
+  }
+
+  public Collection<MovieDetail> getMovies() {
+    return Collections.unmodifiableCollection(movies.byId.values());
+  }
+
+  public TVShowDetail getTVShow(int tvshowid) {
+    return tvShows.byId.get(tvshowid);
+  }
+
+  public TVShowDetail getTVShowByImdbNumber(String imdbNumber) {
+    return imdbNumber == null ? null : tvShows.byImdbNumber.get(imdbNumber);
+  }
+
+  public TVShowDetail getTVShowByFile(String file) {
+    return file == null ? null : tvShows.byFile.get(file);
+  }
+
+  public Collection<TVShowDetail> getTVShows() {
+    return Collections.unmodifiableCollection(tvShows.byId.values());
+  }
+
+  public EpisodeDetail getEpisode(int episodeid) {
+    return episodes.byId.get(episodeid);
+  }
+
+  public EpisodeDetail getEpisodeByFile(String file) {
+    return file == null ? null : episodes.byFile.get(file);
+  }
+
+  public Collection<EpisodeDetail> getEpisodes() {
+    return Collections.unmodifiableCollection(episodes.byId.values());
+  }
+
+  @Override
+  public void connected() {
+    if (loaded) {
+      // notifications may have been missed while disconnected
+      ReloadThread.INSTANCE.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            load();
+          }
+          catch (ApiException e) {
+            LOGGER.warn("Could not reload video library: {}", e.getMessage());
+          }
+        }
+      });
+    }
+  }
+
+  @Override
+  public void disconnected() {
+  }
+
+  @Override
+  public void notificationReceived(AbstractEvent event) {
+    if (event instanceof VideoLibraryEvent.Update) {
+      final VideoLibraryEvent.Data data = ((VideoLibraryEvent.Update) event).data;
+      final Section<?> section = sectionOf(data.type);
+      if (section == null) {
+        return;
+      }
+      if (loading || data.transaction) {
+        section.pending.add(data.id);
+      }
+      else {
+        section.refresh(data.id);
+      }
+    }
+    else if (event instanceof VideoLibraryEvent.Remove) {
+      final VideoLibraryEvent.Data data = ((VideoLibraryEvent.Remove) event).data;
+      final Section<?> section = sectionOf(data.type);
+      if (section == null) {
+        return;
+      }
+      section.remove(data.id);
+      if (loading) {
+        // the item may be part of a page fetched before the removal
+        section.pending.add(data.id);
+      }
+      if (data.type == VideoLibraryEvent.Type.TVSHOW) {
+        removeEpisodesOf(data.id);
+      }
+    }
+    else if (event instanceof VideoLibraryEvent.ScanFinished || event instanceof VideoLibraryEvent.CleanFinished) {
+      if (!loading) {
+        flush();
+      }
+    }
+  }
+
+  /**
+   * Fetches all items collected while loading or during a transaction with a single batch request.
+   */
+  private void flush() {
+    final CallBatch batch = new CallBatch();
+    movies.drainTo(batch);
+    tvShows.drainTo(batch);
+    episodes.drainTo(batch);
+    if (!batch.isEmpty()) {
+      LOGGER.debug("Refreshing {} changed video library items", batch.size());
+      connectionManager.call(batch);
+    }
+  }
+
+  private void removeEpisodesOf(int tvshowid) {
+    for (EpisodeDetail episode : episodes.byId.values()) {
+      if (episode.tvshowid != null && episode.tvshowid == tvshowid) {
+        episodes.remove(episode.episodeid);
+      }
+    }
+  }
+
+  private Section<?> sectionOf(int type) {
+    switch (type) {
+      case VideoLibraryEvent.Type.MOVIE:
+        return movies;
+      case VideoLibraryEvent.Type.TVSHOW:
+        return tvShows;
+      case VideoLibraryEvent.Type.EPISODE:
+        return episodes;
+      default:
+        return null;
+    }
+  }
+
+  private static String[] with(String[] properties, String... required) {
+    final Set<String> all = new LinkedHashSet<String>(Arrays.asList(properties));
+    all.addAll(Arrays.asList(required));
+    return all.toArray(new String[all.size()]);
+  }
+
+  /**
+   * Thread reloading the mirrors after a reconnect, created on first use. Loading blocks until the whole library has been fetched, so it is kept off
+   * the common pool, which the application and the async callbacks depend on.
+   */
+  private static final class ReloadThread {
+    private static final Executor INSTANCE = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        final Thread thread = new Thread(r, "kodi-json-rpc-mirror");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * The mirrored items of one media type, indexed by id, file and IMDb number.
+   * <p/>
+   * Reads are lock-free; modifications are serialized so the indices stay consistent.
+   */
+  private abstract class Section<T> {
+    final String          type;
+    final Map<Integer, T> byId         = new ConcurrentHashMap<Integer, T>();
+    final Map<String, T>  byFile       = new ConcurrentHashMap<String, T>();
+    final Map<String, T>  byImdbNumber = new ConcurrentHashMap<String, T>();
+    final Set<Integer>    pending      = ConcurrentHashMap.newKeySet();
+
+    Section(String type) {
+      this.type = type;
+    }
+
+    abstract AbstractCall<T> list(ListModel.Limits limits);
+
+    abstract AbstractCall<T> details(int id);
+
+    abstract Integer idOf(T item);
+
+    abstract String fileOf(T item);
+
+    String imdbNumberOf(T item) {
+      return null;
+    }
+
+    synchronized void put(T item) {
+      final Integer id = idOf(item);
+      if (id == null) {
+        return;
+      }
+      final T previous = byId.put(id, item);
+      if (previous != null) {
+        unindex(previous);
+      }
+      final String file = fileOf(item);
+      if (file != null && !file.isEmpty()) {
+        byFile.put(file, item);
+      }
+      final String imdbNumber = imdbNumberOf(item);
+      if (imdbNumber != null && !imdbNumber.isEmpty()) {
+        byImdbNumber.put(imdbNumber, item);
+      }
+    }
+
+    synchronized void remove(int id) {
+      final T previous = byId.remove(id);
+      if (previous != null) {
+        unindex(previous);
+      }
+    }
+
+    private void unindex(T item) {
+      final String file = fileOf(item);
+      if (file != null) {
+        byFile.remove(file, item);
+      }
+      final String imdbNumber = imdbNumberOf(item);
+      if (imdbNumber != null) {
+        byImdbNumber.remove(imdbNumber, item);
+      }
+    }
+
+    /**
+     * Puts all items of a full listing and drops the ones not listed anymore.
+     */
+    void reload(Iterator<T> items) {
+      final Set<Integer> listed = new HashSet<Integer>();
+      while (items.hasNext()) {
+        final T item = items.next();
+        put(item);
+        listed.add(idOf(item));
+      }
+      for (Integer id : byId.keySet()) {
+        if (!listed.contains(id)) {
+          remove(id);
+        }
+      }
+    }
+
+    void refresh(int id) {
+      connectionManager.call(details(id), refresher(id));
+    }
+
+    void drainTo(CallBatch batch) {
+      for (Iterator<Integer> it = pending.iterator(); it.hasNext();) {
+        final int id = it.next();
+        it.remove();
+        batch.add(details(id), refresher(id));
+      }
+    }
+
+    ApiCallback<T> refresher(final int id) {
+      return new ApiCallback<T>() {
+        @Override
+        public void onResponse(AbstractCall<T> call) {
+          final T item = call.getResult();
+          if (item != null) {
+            put(item);
+          }
+        }
+
+        @Override
+        public void onError(int code, String message, String hint) {
+          if (code == INVALID_PARAMS) {
+            // gone in the meantime
+            remove(id);
+          }
+          else {
+            LOGGER.warn("Could not refresh {} {}: {}", type, id, message);
+          }
+        }
+      };
+    }
+  }
+}
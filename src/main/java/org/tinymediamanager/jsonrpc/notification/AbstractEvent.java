@@ -21,6 +21,9 @@
 
 package org.tinymediamanager.jsonrpc.notification;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.codehaus.jackson.node.ObjectNode;
 
 /**
@@ -40,46 +43,94 @@ public abstract class AbstractEvent {
 
   public abstract String getMethod();
 
+  /**
+   * Creates the event of a notification.
+   */
+  public interface Parser {
+
+    /**
+     * @param params
+     *          The <tt>params</tt> object of the notification
+     * @return The event
+     */
+    AbstractEvent parse(ObjectNode params);
+  }
+
+  /**
+   * Parsers by notification method.
+   */
+  private static final Map<String, Parser> PARSERS = new ConcurrentHashMap<String, Parser>();
+
+  static {
+    register(PlayerEvent.Play.METHOD, PlayerEvent.Play::new);
+    register(PlayerEvent.Pause.METHOD, PlayerEvent.Pause::new);
+    register(PlayerEvent.Stop.METHOD, PlayerEvent.Stop::new);
+    register(PlayerEvent.SpeedChanged.METHOD, PlayerEvent.SpeedChanged::new);
+    register(PlayerEvent.Seek.METHOD, PlayerEvent.Seek::new);
+    register(PlayerEvent.Resume.METHOD, PlayerEvent.Resume::new);
+    register(PlayerEvent.PropertyChanged.METHOD, PlayerEvent.PropertyChanged::new);
+    register(PlayerEvent.AVStart.METHOD, PlayerEvent.AVStart::new);
+    register(PlayerEvent.AVChange.METHOD, PlayerEvent.AVChange::new);
+    register(SystemEvent.Quit.METHOD, SystemEvent.Quit::new);
+    register(SystemEvent.Restart.METHOD, SystemEvent.Restart::new);
+    register(SystemEvent.Wake.METHOD, SystemEvent.Wake::new);
+    register(SystemEvent.LowBattery.METHOD, SystemEvent.LowBattery::new);
+    register(SystemEvent.Sleep.METHOD, SystemEvent.Sleep::new);
+    register(VideoLibraryEvent.Update.METHOD, VideoLibraryEvent.Update::new);
+    register(VideoLibraryEvent.Remove.METHOD, VideoLibraryEvent.Remove::new);
+    register(VideoLibraryEvent.ScanStarted.METHOD, VideoLibraryEvent.ScanStarted::new);
+    register(VideoLibraryEvent.ScanFinished.METHOD, VideoLibraryEvent.ScanFinished::new);
+    register(VideoLibraryEvent.CleanStarted.METHOD, VideoLibraryEvent.CleanStarted::new);
+    register(VideoLibraryEvent.CleanFinished.METHOD, VideoLibraryEvent.CleanFinished::new);
+    register(VideoLibraryEvent.Export.METHOD, VideoLibraryEvent.Export::new);
+    register(VideoLibraryEvent.Refresh.METHOD, VideoLibraryEvent.Refresh::new);
+    register(AudioLibraryEvent.Update.METHOD, AudioLibraryEvent.Update::new);
+    register(AudioLibraryEvent.Remove.METHOD, AudioLibraryEvent.Remove::new);
+    register(AudioLibraryEvent.ScanStarted.METHOD, AudioLibraryEvent.ScanStarted::new);
+    register(AudioLibraryEvent.ScanFinished.METHOD, AudioLibraryEvent.ScanFinished::new);
+    register(AudioLibraryEvent.CleanStarted.METHOD, AudioLibraryEvent.CleanStarted::new);
+    register(AudioLibraryEvent.CleanFinished.METHOD, AudioLibraryEvent.CleanFinished::new);
+    register(AudioLibraryEvent.Export.METHOD, AudioLibraryEvent.Export::new);
+    register(ApplicationEvent.VolumeChanged.METHOD, ApplicationEvent.VolumeChanged::new);
+    register(GUIEvent.ScreensaverActivated.METHOD, GUIEvent.ScreensaverActivated::new);
+    register(GUIEvent.ScreensaverDeactivated.METHOD, GUIEvent.ScreensaverDeactivated::new);
+    register(GUIEvent.DPMSActivated.METHOD, GUIEvent.DPMSActivated::new);
+    register(GUIEvent.DPMSDeactivated.METHOD, GUIEvent.DPMSDeactivated::new);
+    register(InputEvent.InputRequested.METHOD, InputEvent.InputRequested::new);
+    register(InputEvent.InputFinished.METHOD, InputEvent.InputFinished::new);
+    register(PlaylistEvent.Add.METHOD, PlaylistEvent.Add::new);
+    register(PlaylistEvent.Remove.METHOD, PlaylistEvent.Remove::new);
+    register(PlaylistEvent.Clear.METHOD, PlaylistEvent.Clear::new);
+    register(PVREvent.ScanStarted.METHOD, PVREvent.ScanStarted::new);
+    register(PVREvent.ScanFinished.METHOD, PVREvent.ScanFinished::new);
+  }
+
+  /**
+   * Registers the parser of a notification, replacing the parser previously registered for the method. This way notifications unknown to this
+   * library (e.g. those sent by add-ons) can be parsed as well.
+   *
+   * @param method
+   *          Method of the notification, e.g. <tt>Player.OnPlay</tt>
+   * @param parser
+   *          Creates the event
+   */
+  public static void register(String method, Parser parser) {
+    PARSERS.put(method, parser);
+  }
+
   /**
    * Parses the notification type and returns an instance.
    * 
    * @param node
    *          Original notification, as read from API.
-   * @return
+   * @return The event, or <tt>null</tt> if the notification is unknown
    */
   public static AbstractEvent parse(ObjectNode node) {
-    final String method = node.get("method").getTextValue();
-    final ObjectNode params = (ObjectNode) node.get("params");
-    if (method.equals(PlayerEvent.Play.METHOD)) {
-      return new PlayerEvent.Play(params);
-    }
-    else if (method.equals(PlayerEvent.Pause.METHOD)) {
-      return new PlayerEvent.Pause(params);
-    }
-    else if (method.equals(PlayerEvent.Stop.METHOD)) {
-      return new PlayerEvent.Stop(params);
-    }
-    else if (method.equals(PlayerEvent.SpeedChanged.METHOD)) {
-      return new PlayerEvent.SpeedChanged(params);
-    }
-    else if (method.equals(PlayerEvent.Seek.METHOD)) {
-      return new PlayerEvent.Seek(params);
-    }
-    else if (method.equals(SystemEvent.Quit.METHOD)) {
-      return new SystemEvent.Quit(params);
-    }
-    else if (method.equals(SystemEvent.Restart.METHOD)) {
-      return new SystemEvent.Restart(params);
-    }
-    else if (method.equals(SystemEvent.Wake.METHOD)) {
-      return new SystemEvent.Wake(params);
-    }
-    else if (method.equals(SystemEvent.LowBattery.METHOD)) {
-      return new SystemEvent.LowBattery(params);
-    }
-    else {
+    final Parser parser = PARSERS.get(node.get("method").getTextValue());
+    if (parser == null) {
       return null;
     }
+    return parser.parse((ObjectNode) node.get("params"));
   }
 
   public static int parseInt(ObjectNode node, String key) {
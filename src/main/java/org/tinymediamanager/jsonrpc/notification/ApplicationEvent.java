@@ -0,0 +1,81 @@
+/*
+ *      Copyright (C) 2005-2015 Team XBMC
+ *      http://xbmc.org
+ *
+ *  This Program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2, or (at your option)
+ *  any later version.
+ *
+ *  This Program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with XBMC Remote; see the file license.  If not, write to
+ *  the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *  http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+package org.tinymediamanager.jsonrpc.notification;
+
+import org.codehaus.jackson.node.ObjectNode;
+
+/**
+ * Parses Application.* events.
+ */
+public class ApplicationEvent {
+
+  /*
+   * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * notifications:
+   * https://github.com/xbmc/xbmc/blob/master/xbmc/interfaces/json-rpc/notifications.json * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+   * * * * * *
+   */
+
+  /**
+   * The volume of the application has changed.
+   */
+  public static class VolumeChanged extends AbstractEvent {
+    public final static int    ID     = 0x41;
+    public final static String METHOD = "Application.OnVolumeChanged";
+    public final Data          data;
+
+    public VolumeChanged(ObjectNode node) {
+      super(node);
+      data = new Data((ObjectNode) node.get("data"));
+    }
+
+    @Override
+    public String toString() {
+      return "VOLUME-CHANGED: " + data.volume + (data.muted ? " (muted)" : "") + ".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /*
+   * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * types:
+   * https://github.com/xbmc/xbmc/blob/master/xbmc/interfaces/json-rpc/types.json * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+   * *
+   */
+
+  public static class Data {
+    public final int     volume;
+    public final boolean muted;
+
+    public Data(ObjectNode node) {
+      volume = AbstractEvent.parseInt(node, "volume");
+      muted = node.has("muted") && node.get("muted").getBooleanValue();
+    }
+  }
+}
@@ -0,0 +1,296 @@
+/*
+ *      Copyright (C) 2005-2015 Team XBMC
+ *      http://xbmc.org
+ *
+ *  This Program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2, or (at your option)
+ *  any later version.
+ *
+ *  This Program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with XBMC Remote; see the file license.  If not, write to
+ *  the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *  http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+package org.tinymediamanager.jsonrpc.notification;
+
+import org.codehaus.jackson.node.ObjectNode;
+
+/**
+ * Parses AudioLibrary.* events.
+ */
+public class AudioLibraryEvent {
+
+  /*
+   * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * notifications:
+   * https://github.com/xbmc/xbmc/blob/master/xbmc/interfaces/json-rpc/notifications.json * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+   * * * * * *
+   */
+
+  /**
+   * An audio item has been updated (or added, see {@link Data#added}).
+   */
+  public static class Update extends AbstractEvent {
+    public final static int    ID     = 0x31;
+    public final static String METHOD = "AudioLibrary.OnUpdate";
+    public final Data          data;
+
+    public Update(ObjectNode node) {
+      super(node);
+      data = new Data((ObjectNode) node.get("data"));
+    }
+
+    @Override
+    public String toString() {
+      return "AUDIO-UPDATE: " + data + (data.added ? " added" : "") + ".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * An audio item has been removed.
+   */
+  public static class Remove extends AbstractEvent {
+    public final static int    ID     = 0x32;
+    public final static String METHOD = "AudioLibrary.OnRemove";
+    public final Data          data;
+
+    public Remove(ObjectNode node) {
+      super(node);
+      data = new Data((ObjectNode) node.get("data"));
+    }
+
+    @Override
+    public String toString() {
+      return "AUDIO-REMOVE: " + data + ".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * An audio library scan has started.
+   */
+  public static class ScanStarted extends AbstractEvent {
+    public final static int    ID     = 0x33;
+    public final static String METHOD = "AudioLibrary.OnScanStarted";
+
+    public ScanStarted(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "AUDIO-SCAN-STARTED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * Scanning the audio library has been finished.
+   */
+  public static class ScanFinished extends AbstractEvent {
+    public final static int    ID     = 0x34;
+    public final static String METHOD = "AudioLibrary.OnScanFinished";
+
+    public ScanFinished(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "AUDIO-SCAN-FINISHED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * An audio library clean operation has started.
+   */
+  public static class CleanStarted extends AbstractEvent {
+    public final static int    ID     = 0x35;
+    public final static String METHOD = "AudioLibrary.OnCleanStarted";
+
+    public CleanStarted(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "AUDIO-CLEAN-STARTED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * The audio library has been cleaned.
+   */
+  public static class CleanFinished extends AbstractEvent {
+    public final static int    ID     = 0x36;
+    public final static String METHOD = "AudioLibrary.OnCleanFinished";
+
+    public CleanFinished(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "AUDIO-CLEAN-FINISHED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * An export of the audio library has been finished.
+   */
+  public static class Export extends AbstractEvent {
+    public final static int    ID     = 0x37;
+    public final static String METHOD = "AudioLibrary.OnExport";
+
+    public Export(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "AUDIO-EXPORT";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /*
+   * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * types:
+   * https://github.com/xbmc/xbmc/blob/master/xbmc/interfaces/json-rpc/types.json * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+   * *
+   */
+
+  /**
+   * The item affected by an update or removal.
+   */
+  public static class Data {
+    public final int     type;
+    public final int     id;
+    /**
+     * <tt>true</tt> if the change is part of a larger transaction (such as a library scan) and more changes are about to follow.
+     */
+    public final boolean transaction;
+    public final boolean added;
+
+    public Data(ObjectNode node) {
+      type = Type.parse(AbstractEvent.parseString(node, "type"));
+      id = AbstractEvent.parseInt(node, "id");
+      transaction = node.has("transaction") && node.get("transaction").getBooleanValue();
+      added = node.has("added") && node.get("added").getBooleanValue();
+    }
+
+    @Override
+    public String toString() {
+      return Type.stringValue(type) + "(" + id + ")";
+    }
+  }
+
+  public static class Type {
+    public static final int UNKNOWN = 0x00;
+    public static final int SONG    = 0x01;
+    public static final int ALBUM   = 0x02;
+    public static final int ARTIST  = 0x03;
+
+    public static int parse(String type) {
+      if ("song".equals(type)) {
+        return SONG;
+      }
+      else if ("album".equals(type)) {
+        return ALBUM;
+      }
+      else if ("artist".equals(type)) {
+        return ARTIST;
+      }
+      else {
+        return UNKNOWN;
+      }
+    }
+
+    public static String stringValue(int type) {
+      switch (type) {
+        case SONG:
+          return "Song";
+        case ALBUM:
+          return "Album";
+        case ARTIST:
+          return "Artist";
+        case UNKNOWN:
+        default:
+          return "Unknown";
+      }
+    }
+  }
+}
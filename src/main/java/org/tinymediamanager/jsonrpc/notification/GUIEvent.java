@@ -0,0 +1,151 @@
+/*
+ *      Copyright (C) 2005-2015 Team XBMC
+ *      http://xbmc.org
+ *
+ *  This Program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2, or (at your option)
+ *  any later version.
+ *
+ *  This Program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with XBMC Remote; see the file license.  If not, write to
+ *  the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *  http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+package org.tinymediamanager.jsonrpc.notification;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.ObjectNode;
+
+/**
+ * Parses GUI.* events.
+ */
+public class GUIEvent {
+
+  /*
+   * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * notifications:
+   * https://github.com/xbmc/xbmc/blob/master/xbmc/interfaces/json-rpc/notifications.json * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+   * * * * * *
+   */
+
+  /**
+   * The screensaver has been activated.
+   */
+  public static class ScreensaverActivated extends AbstractEvent {
+    public final static int    ID     = 0x51;
+    public final static String METHOD = "GUI.OnScreensaverActivated";
+
+    public ScreensaverActivated(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "SCREENSAVER-ACTIVATED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * The screensaver has been deactivated.
+   */
+  public static class ScreensaverDeactivated extends AbstractEvent {
+    public final static int    ID     = 0x52;
+    public final static String METHOD = "GUI.OnScreensaverDeactivated";
+    /**
+     * <tt>true</tt> if the screensaver has been deactivated because the system is shutting down.
+     */
+    public final boolean       shuttingDown;
+
+    public ScreensaverDeactivated(ObjectNode node) {
+      super(node);
+      final JsonNode data = node.get("data");
+      shuttingDown = data != null && data.has("shuttingdown") && data.get("shuttingdown").getBooleanValue();
+    }
+
+    @Override
+    public String toString() {
+      return "SCREENSAVER-DEACTIVATED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * Energy saving/DPMS has been activated.
+   */
+  public static class DPMSActivated extends AbstractEvent {
+    public final static int    ID     = 0x53;
+    public final static String METHOD = "GUI.OnDPMSActivated";
+
+    public DPMSActivated(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "DPMS-ACTIVATED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * Energy saving/DPMS has been deactivated.
+   */
+  public static class DPMSDeactivated extends AbstractEvent {
+    public final static int    ID     = 0x54;
+    public final static String METHOD = "GUI.OnDPMSDeactivated";
+
+    public DPMSDeactivated(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "DPMS-DEACTIVATED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+}
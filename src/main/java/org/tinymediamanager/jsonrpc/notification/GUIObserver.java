@@ -0,0 +1,66 @@
+/*
+ *      Copyright (C) 2005-2015 Team XBMC
+ *      http://xbmc.org
+ *
+ *  This Program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2, or (at your option)
+ *  any later version.
+ *
+ *  This Program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with XBMC Remote; see the file license.  If not, write to
+ *  the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *  http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+package org.tinymediamanager.jsonrpc.notification;
+
+import org.tinymediamanager.jsonrpc.notification.GUIEvent.DPMSActivated;
+import org.tinymediamanager.jsonrpc.notification.GUIEvent.DPMSDeactivated;
+import org.tinymediamanager.jsonrpc.notification.GUIEvent.ScreensaverActivated;
+import org.tinymediamanager.jsonrpc.notification.GUIEvent.ScreensaverDeactivated;
+
+/**
+ * This is used as callback where not every type of notification needs to be implemented.
+ */
+public abstract class GUIObserver {
+
+  public void onScreensaverActivated(ScreensaverActivated notification) {
+  }
+
+  public void onScreensaverDeactivated(ScreensaverDeactivated notification) {
+  }
+
+  public void onDPMSActivated(DPMSActivated notification) {
+  }
+
+  public void onDPMSDeactivated(DPMSDeactivated notification) {
+  }
+
+  /**
+   * Passes a GUI.* event to the matching method; other events are ignored.
+   * 
+   * @param event
+   *          Received event
+   */
+  public void dispatch(AbstractEvent event) {
+    if (event instanceof ScreensaverActivated) {
+      onScreensaverActivated((ScreensaverActivated) event);
+    }
+    else if (event instanceof ScreensaverDeactivated) {
+      onScreensaverDeactivated((ScreensaverDeactivated) event);
+    }
+    else if (event instanceof DPMSActivated) {
+      onDPMSActivated((DPMSActivated) event);
+    }
+    else if (event instanceof DPMSDeactivated) {
+      onDPMSDeactivated((DPMSDeactivated) event);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ *      Copyright (C) 2005-2015 Team XBMC
+ *      http://xbmc.org
+ *
+ *  This Program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2, or (at your option)
+ *  any later version.
+ *
+ *  This Program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with XBMC Remote; see the file license.  If not, write to
+ *  the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *  http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+package org.tinymediamanager.jsonrpc.notification;
+
+import org.codehaus.jackson.node.ObjectNode;
+
+/**
+ * Parses Input.* events.
+ */
+public class InputEvent {
+
+  /*
+   * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * notifications:
+   * https://github.com/xbmc/xbmc/blob/master/xbmc/interfaces/json-rpc/notifications.json * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+   * * * * * *
+   */
+
+  /**
+   * The user is requested to provide some information.
+   */
+  public static class InputRequested extends AbstractEvent {
+    public final static int    ID     = 0x61;
+    public final static String METHOD = "Input.OnInputRequested";
+    public final Data          data;
+
+    public InputRequested(ObjectNode node) {
+      super(node);
+      data = new Data((ObjectNode) node.get("data"));
+    }
+
+    @Override
+    public String toString() {
+      return "INPUT-REQUESTED: " + data.type + " \"" + data.title + "\".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * The user has provided the requested input.
+   */
+  public static class InputFinished extends AbstractEvent {
+    public final static int    ID     = 0x62;
+    public final static String METHOD = "Input.OnInputFinished";
+
+    public InputFinished(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "INPUT-FINISHED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /*
+   * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * types:
+   * https://github.com/xbmc/xbmc/blob/master/xbmc/interfaces/json-rpc/types.json * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+   * *
+   */
+
+  public static class Data {
+    /**
+     * Type of the requested input, e.g. <tt>keyboard</tt>, <tt>number</tt>, <tt>date</tt>, <tt>time</tt>, <tt>ip</tt> or <tt>password</tt>.
+     */
+    public final String type;
+    public final String value;
+    public final String title;
+
+    public Data(ObjectNode node) {
+      type = AbstractEvent.parseString(node, "type");
+      value = AbstractEvent.parseString(node, "value");
+      title = AbstractEvent.parseString(node, "title");
+    }
+  }
+}
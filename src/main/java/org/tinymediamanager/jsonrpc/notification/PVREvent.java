@@ -0,0 +1,90 @@
+/*
+ *      Copyright (C) 2005-2015 Team XBMC
+ *      http://xbmc.org
+ *
+ *  This Program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2, or (at your option)
+ *  any later version.
+ *
+ *  This Program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with XBMC Remote; see the file license.  If not, write to
+ *  the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *  http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+package org.tinymediamanager.jsonrpc.notification;
+
+import org.codehaus.jackson.node.ObjectNode;
+
+/**
+ * Parses PVR.* events.
+ */
+public class PVREvent {
+
+  /*
+   * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * notifications:
+   * https://github.com/xbmc/xbmc/blob/master/xbmc/interfaces/json-rpc/notifications.json * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+   * * * * * *
+   */
+
+  /**
+   * A PVR channel scan has started.
+   */
+  public static class ScanStarted extends AbstractEvent {
+    public final static int    ID     = 0x81;
+    public final static String METHOD = "PVR.OnScanStarted";
+
+    public ScanStarted(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "PVR-SCAN-STARTED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * A PVR channel scan has been finished.
+   */
+  public static class ScanFinished extends AbstractEvent {
+    public final static int    ID     = 0x82;
+    public final static String METHOD = "PVR.OnScanFinished";
+
+    public ScanFinished(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "PVR-SCAN-FINISHED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+}
@@ -21,6 +21,7 @@
 
 package org.tinymediamanager.jsonrpc.notification;
 
+import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.node.ObjectNode;
 import org.tinymediamanager.jsonrpc.api.model.GlobalModel;
 
@@ -200,6 +201,128 @@ public class PlayerEvent {
     }
   }
 
+  /**
+   * Playback of a media item has been resumed. If there is no ID available extra information will be provided.
+   */
+  public static class Resume extends AbstractEvent {
+    public final static int    ID     = 0x06;
+    public final static String METHOD = "Player.OnResume";
+    public final Data          data;
+
+    public Resume(ObjectNode node) {
+      super(node);
+      data = new Data((ObjectNode) node.get("data"));
+    }
+
+    @Override
+    public String toString() {
+      return "RESUME: Item " + data.item + " with player " + data.player.playerId + ".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * A property of the playing items has changed.
+   */
+  public static class PropertyChanged extends AbstractEvent {
+    public final static int    ID     = 0x07;
+    public final static String METHOD = "Player.OnPropertyChanged";
+    public final Player        player;
+    /**
+     * The changed properties and their new values.
+     */
+    public final JsonNode      property;
+
+    public PropertyChanged(ObjectNode node) {
+      super(node);
+      final ObjectNode data = (ObjectNode) node.get("data");
+      player = new Player((ObjectNode) data.get("player"));
+      property = data.get("property");
+    }
+
+    @Override
+    public String toString() {
+      return "PROPERTY-CHANGED: Player " + player.playerId + " changed " + property + ".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * Audio and/or video of a media item has started to play.
+   */
+  public static class AVStart extends AbstractEvent {
+    public final static int    ID     = 0x08;
+    public final static String METHOD = "Player.OnAVStart";
+    public final Data          data;
+
+    public AVStart(ObjectNode node) {
+      super(node);
+      data = new Data((ObjectNode) node.get("data"));
+    }
+
+    @Override
+    public String toString() {
+      return "AV-START: Item " + data.item + " with player " + data.player.playerId + ".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * Audio- or videostream has changed.
+   */
+  public static class AVChange extends AbstractEvent {
+    public final static int    ID     = 0x09;
+    public final static String METHOD = "Player.OnAVChange";
+    public final Data          data;
+
+    public AVChange(ObjectNode node) {
+      super(node);
+      data = new Data((ObjectNode) node.get("data"));
+    }
+
+    @Override
+    public String toString() {
+      return "AV-CHANGE: Item " + data.item + " with player " + data.player.playerId + ".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
   /*
    * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * types:
    * https://github.com/xbmc/xbmc/blob/master/xbmc/interfaces/json-rpc/types.json * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
@@ -302,7 +425,7 @@ public class PlayerEvent {
 
     public Player(ObjectNode node) {
       playerId = node.get("playerid").getIntValue();
-      speed = node.get("speed").getValueAsInt(0);
+      speed = node.has("speed") ? node.get("speed").asInt(0) : 0;
     }
   }
 
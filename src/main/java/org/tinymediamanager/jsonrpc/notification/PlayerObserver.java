@@ -21,8 +21,12 @@
 
 package org.tinymediamanager.jsonrpc.notification;
 
+import org.tinymediamanager.jsonrpc.notification.PlayerEvent.AVChange;
+import org.tinymediamanager.jsonrpc.notification.PlayerEvent.AVStart;
 import org.tinymediamanager.jsonrpc.notification.PlayerEvent.Pause;
 import org.tinymediamanager.jsonrpc.notification.PlayerEvent.Play;
+import org.tinymediamanager.jsonrpc.notification.PlayerEvent.PropertyChanged;
+import org.tinymediamanager.jsonrpc.notification.PlayerEvent.Resume;
 import org.tinymediamanager.jsonrpc.notification.PlayerEvent.Seek;
 import org.tinymediamanager.jsonrpc.notification.PlayerEvent.SpeedChanged;
 import org.tinymediamanager.jsonrpc.notification.PlayerEvent.Stop;
@@ -48,4 +52,52 @@ public abstract class PlayerObserver {
 
   public void onSeek(Seek notification) {
   }
+
+  public void onResume(Resume notification) {
+  }
+
+  public void onPropertyChanged(PropertyChanged notification) {
+  }
+
+  public void onAVStart(AVStart notification) {
+  }
+
+  public void onAVChange(AVChange notification) {
+  }
+
+  /**
+   * Passes a Player.* event to the matching method; other events are ignored.
+   * 
+   * @param event
+   *          Received event
+   */
+  public void dispatch(AbstractEvent event) {
+    if (event instanceof Play) {
+      onPlay((Play) event);
+    }
+    else if (event instanceof Pause) {
+      onPause((Pause) event);
+    }
+    else if (event instanceof Stop) {
+      onStop((Stop) event);
+    }
+    else if (event instanceof SpeedChanged) {
+      onSpeedChanged((SpeedChanged) event);
+    }
+    else if (event instanceof Seek) {
+      onSeek((Seek) event);
+    }
+    else if (event instanceof Resume) {
+      onResume((Resume) event);
+    }
+    else if (event instanceof PropertyChanged) {
+      onPropertyChanged((PropertyChanged) event);
+    }
+    else if (event instanceof AVStart) {
+      onAVStart((AVStart) event);
+    }
+    else if (event instanceof AVChange) {
+      onAVChange((AVChange) event);
+    }
+  }
 }
@@ -0,0 +1,131 @@
+/*
+ *      Copyright (C) 2005-2015 Team XBMC
+ *      http://xbmc.org
+ *
+ *  This Program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2, or (at your option)
+ *  any later version.
+ *
+ *  This Program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with XBMC Remote; see the file license.  If not, write to
+ *  the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *  http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+package org.tinymediamanager.jsonrpc.notification;
+
+import org.codehaus.jackson.node.ObjectNode;
+
+/**
+ * Parses Playlist.* events.
+ */
+public class PlaylistEvent {
+
+  /*
+   * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * notifications:
+   * https://github.com/xbmc/xbmc/blob/master/xbmc/interfaces/json-rpc/notifications.json * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+   * * * * * *
+   */
+
+  /**
+   * A playlist item has been added.
+   */
+  public static class Add extends AbstractEvent {
+    public final static int       ID     = 0x71;
+    public final static String    METHOD = "Playlist.OnAdd";
+    public final int              playlistId;
+    public final int              position;
+    public final PlayerEvent.Item item;
+
+    public Add(ObjectNode node) {
+      super(node);
+      final ObjectNode data = (ObjectNode) node.get("data");
+      playlistId = AbstractEvent.parseInt(data, "playlistid");
+      position = AbstractEvent.parseInt(data, "position");
+      item = data.has("item") ? new PlayerEvent.Item((ObjectNode) data.get("item")) : null;
+    }
+
+    @Override
+    public String toString() {
+      return "PLAYLIST-ADD: Item " + item + " to playlist " + playlistId + " at " + position + ".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * A playlist item has been removed.
+   */
+  public static class Remove extends AbstractEvent {
+    public final static int    ID     = 0x72;
+    public final static String METHOD = "Playlist.OnRemove";
+    public final int           playlistId;
+    public final int           position;
+
+    public Remove(ObjectNode node) {
+      super(node);
+      final ObjectNode data = (ObjectNode) node.get("data");
+      playlistId = AbstractEvent.parseInt(data, "playlistid");
+      position = AbstractEvent.parseInt(data, "position");
+    }
+
+    @Override
+    public String toString() {
+      return "PLAYLIST-REMOVE: Position " + position + " of playlist " + playlistId + ".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * A playlist has been cleared.
+   */
+  public static class Clear extends AbstractEvent {
+    public final static int    ID     = 0x73;
+    public final static String METHOD = "Playlist.OnClear";
+    public final int           playlistId;
+
+    public Clear(ObjectNode node) {
+      super(node);
+      playlistId = AbstractEvent.parseInt((ObjectNode) node.get("data"), "playlistid");
+    }
+
+    @Override
+    public String toString() {
+      return "PLAYLIST-CLEAR: Playlist " + playlistId + ".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+}
@@ -143,4 +143,31 @@ public class SystemEvent {
       return METHOD;
     }
   }
+
+  /**
+   * The system will be suspended.
+   */
+  public static class Sleep extends AbstractEvent {
+    public final static int    ID     = 0x15;
+    public final static String METHOD = "System.OnSleep";
+
+    public Sleep(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "SLEEP";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
 }
@@ -0,0 +1,339 @@
+/*
+ *      Copyright (C) 2005-2015 Team XBMC
+ *      http://xbmc.org
+ *
+ *  This Program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2, or (at your option)
+ *  any later version.
+ *
+ *  This Program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with XBMC Remote; see the file license.  If not, write to
+ *  the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *  http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+package org.tinymediamanager.jsonrpc.notification;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.ObjectNode;
+
+/**
+ * Parses VideoLibrary.* events.
+ */
+public class VideoLibraryEvent {
+
+  /*
+   * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * notifications:
+   * https://github.com/xbmc/xbmc/blob/master/xbmc/interfaces/json-rpc/notifications.json * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+   * * * * * *
+   */
+
+  /**
+   * A video item has been updated (or added, see {@link Data#added}).
+   */
+  public static class Update extends AbstractEvent {
+    public final static int    ID     = 0x21;
+    public final static String METHOD = "VideoLibrary.OnUpdate";
+    public final Data          data;
+
+    public Update(ObjectNode node) {
+      super(node);
+      data = new Data((ObjectNode) node.get("data"));
+    }
+
+    @Override
+    public String toString() {
+      return "VIDEO-UPDATE: " + data + (data.added ? " added" : "") + ".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * A video item has been removed.
+   */
+  public static class Remove extends AbstractEvent {
+    public final static int    ID     = 0x22;
+    public final static String METHOD = "VideoLibrary.OnRemove";
+    public final Data          data;
+
+    public Remove(ObjectNode node) {
+      super(node);
+      data = new Data((ObjectNode) node.get("data"));
+    }
+
+    @Override
+    public String toString() {
+      return "VIDEO-REMOVE: " + data + ".";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * A video library scan has started.
+   */
+  public static class ScanStarted extends AbstractEvent {
+    public final static int    ID     = 0x23;
+    public final static String METHOD = "VideoLibrary.OnScanStarted";
+
+    public ScanStarted(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "VIDEO-SCAN-STARTED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * Scanning the video library has been finished.
+   */
+  public static class ScanFinished extends AbstractEvent {
+    public final static int    ID     = 0x24;
+    public final static String METHOD = "VideoLibrary.OnScanFinished";
+
+    public ScanFinished(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "VIDEO-SCAN-FINISHED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * The video library has been cleaned.
+   */
+  public static class CleanFinished extends AbstractEvent {
+    public final static int    ID     = 0x25;
+    public final static String METHOD = "VideoLibrary.OnCleanFinished";
+
+    public CleanFinished(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "VIDEO-CLEAN-FINISHED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * A video library clean operation has started.
+   */
+  public static class CleanStarted extends AbstractEvent {
+    public final static int    ID     = 0x26;
+    public final static String METHOD = "VideoLibrary.OnCleanStarted";
+
+    public CleanStarted(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "VIDEO-CLEAN-STARTED";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * An export of the video library has been finished.
+   */
+  public static class Export extends AbstractEvent {
+    public final static int    ID     = 0x27;
+    public final static String METHOD = "VideoLibrary.OnExport";
+
+    public Export(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "VIDEO-EXPORT";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /**
+   * The video library has been refreshed and a home screen reload might be necessary.
+   */
+  public static class Refresh extends AbstractEvent {
+    public final static int    ID     = 0x28;
+    public final static String METHOD = "VideoLibrary.OnRefresh";
+
+    public Refresh(ObjectNode node) {
+      super(node);
+    }
+
+    @Override
+    public String toString() {
+      return "VIDEO-REFRESH";
+    }
+
+    @Override
+    public int getId() {
+      return ID;
+    }
+
+    @Override
+    public String getMethod() {
+      return METHOD;
+    }
+  }
+
+  /*
+   * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * types:
+   * https://github.com/xbmc/xbmc/blob/master/xbmc/interfaces/json-rpc/types.json * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+   * *
+   */
+
+  /**
+   * The item affected by an update or removal.
+   */
+  public static class Data {
+    public final int     type;
+    public final int     id;
+    public final int     playcount;
+    /**
+     * <tt>true</tt> if the change is part of a larger transaction (such as a library scan) and more changes are about to follow.
+     */
+    public final boolean transaction;
+    public final boolean added;
+
+    public Data(ObjectNode node) {
+      final JsonNode item = node.has("item") ? node.get("item") : node;
+      type = Type.parse(item.has("type") ? item.get("type").getTextValue() : null);
+      id = AbstractEvent.parseInt((ObjectNode) item, "id");
+      playcount = AbstractEvent.parseInt(node, "playcount");
+      transaction = node.has("transaction") && node.get("transaction").getBooleanValue();
+      added = node.has("added") && node.get("added").getBooleanValue();
+    }
+
+    @Override
+    public String toString() {
+      return Type.stringValue(type) + "(" + id + ")";
+    }
+  }
+
+  public static class Type {
+    public static final int UNKNOWN    = 0x00;
+    public static final int MOVIE      = 0x01;
+    public static final int TVSHOW     = 0x02;
+    public static final int EPISODE    = 0x03;
+    public static final int MOVIESET   = 0x04;
+    public static final int MUSICVIDEO = 0x05;
+
+    public static int parse(String type) {
+      if ("movie".equals(type)) {
+        return MOVIE;
+      }
+      else if ("tvshow".equals(type)) {
+        return TVSHOW;
+      }
+      else if ("episode".equals(type)) {
+        return EPISODE;
+      }
+      else if ("set".equals(type)) {
+        return MOVIESET;
+      }
+      else if ("musicvideo".equals(type)) {
+        return MUSICVIDEO;
+      }
+      else {
+        return UNKNOWN;
+      }
+    }
+
+    public static String stringValue(int type) {
+      switch (type) {
+        case MOVIE:
+          return "Movie";
+        case TVSHOW:
+          return "TVShow";
+        case EPISODE:
+          return "Episode";
+        case MOVIESET:
+          return "MovieSet";
+        case MUSICVIDEO:
+          return "Musicvideo";
+        case UNKNOWN:
+        default:
+          return "Unknown";
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ *      Copyright (C) 2005-2015 Team XBMC
+ *      http://xbmc.org
+ *
+ *  This Program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 2, or (at your option)
+ *  any later version.
+ *
+ *  This Program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with XBMC Remote; see the file license.  If not, write to
+ *  the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ *  http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+package org.tinymediamanager.jsonrpc.notification;
+
+import org.tinymediamanager.jsonrpc.notification.VideoLibraryEvent.CleanFinished;
+import org.tinymediamanager.jsonrpc.notification.VideoLibraryEvent.CleanStarted;
+import org.tinymediamanager.jsonrpc.notification.VideoLibraryEvent.Export;
+import org.tinymediamanager.jsonrpc.notification.VideoLibraryEvent.Refresh;
+import org.tinymediamanager.jsonrpc.notification.VideoLibraryEvent.Remove;
+import org.tinymediamanager.jsonrpc.notification.VideoLibraryEvent.ScanFinished;
+import org.tinymediamanager.jsonrpc.notification.VideoLibraryEvent.ScanStarted;
+import org.tinymediamanager.jsonrpc.notification.VideoLibraryEvent.Update;
+
+/**
+ * This is used as callback where not every type of notification needs to be implemented.
+ */
+public abstract class VideoLibraryObserver {
+
+  public void onUpdate(Update notification) {
+  }
+
+  public void onRemove(Remove notification) {
+  }
+
+  public void onScanStarted(ScanStarted notification) {
+  }
+
+  public void onScanFinished(ScanFinished notification) {
+  }
+
+  public void onCleanStarted(CleanStarted notification) {
+  }
+
+  public void onCleanFinished(CleanFinished notification) {
+  }
+
+  public void onExport(Export notification) {
+  }
+
+  public void onRefresh(Refresh notification) {
+  }
+
+  /**
+   * Passes a VideoLibrary.* event to the matching method; other events are ignored.
+   * 
+   * @param event
+   *          Received event
+   */
+  public void dispatch(AbstractEvent event) {
+    if (event instanceof Update) {
+      onUpdate((Update) event);
+    }
+    else if (event instanceof Remove) {
+      onRemove((Remove) event);
+    }
+    else if (event instanceof ScanStarted) {
+      onScanStarted((ScanStarted) event);
+    }
+    else if (event instanceof ScanFinished) {
+      onScanFinished((ScanFinished) event);
+    }
+    else if (event instanceof CleanStarted) {
+      onCleanStarted((CleanStarted) event);
+    }
+    else if (event instanceof CleanFinished) {
+      onCleanFinished((CleanFinished) event);
+    }
+    else if (event instanceof Export) {
+      onExport((Export) event);
+    }
+    else if (event instanceof Refresh) {
+      onRefresh((Refresh) event);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package org.tinymediamanager.jsonrpc.api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.codehaus.jackson.util.ByteArrayBuilder;
+import org.junit.Test;
+import org.tinymediamanager.jsonrpc.api.call.JSONRPC;
+import org.tinymediamanager.jsonrpc.api.call.VideoLibrary;
+import org.tinymediamanager.jsonrpc.api.model.ListModel;
+
+/**
+ * Compares the requests written by {@link AbstractCall#writeRequest(JsonGenerator)} byte by byte with the trees the calls used to build.
+ */
+public class AbstractCallTest {
+
+  @Test
+  public void noParameters() throws IOException {
+    final JSONRPC.Ping call = new JSONRPC.Ping();
+    assertParity(request(call), call);
+  }
+
+  @Test
+  public void scalarAndArrayParameters() throws IOException {
+    final VideoLibrary.GetMovieDetails call = new VideoLibrary.GetMovieDetails(7, "title", "file", "ünïcödé");
+    final ObjectNode request = request(call);
+    final ObjectNode params = request.putObject("params");
+    params.put("movieid", 7);
+    params.put("properties", strings("title", "file", "ünïcödé"));
+    assertParity(request, call);
+  }
+
+  @Test
+  public void emptyArrayIsLeftOut() throws IOException {
+    final VideoLibrary.GetMovieDetails call = new VideoLibrary.GetMovieDetails(7);
+    final ObjectNode request = request(call);
+    request.putObject("params").put("movieid", 7);
+    assertParity(request, call);
+  }
+
+  @Test
+  public void modelParameters() throws IOException {
+    final ListModel.Limits limits = new ListModel.Limits(50, null);
+    final ListModel.Sort sort = new ListModel.Sort(null, "year", "descending");
+    final ListModel.MovieFilter filter = new ListModel.MovieFilter(new ListModel.MovieFilter.And(Arrays.asList(
+        new ListModel.MovieFilter(new ListModel.MovieFilterRule("contains", new ListModel.FilterRule.Value("Star \"Wars\""), "title")),
+        new ListModel.MovieFilter(new ListModel.MovieFilterRule("is", new ListModel.FilterRule.Value(Arrays.asList("1977", "1980")), "year")))));
+    final VideoLibrary.GetMovies call = new VideoLibrary.GetMovies(limits, sort, filter, "title", "year");
+    final ObjectNode request = request(call);
+    final ObjectNode params = request.putObject("params");
+    params.put("limits", limits.toJsonNode());
+    params.put("sort", sort.toJsonNode());
+    params.put("filter", filter.toJsonNode());
+    params.put("properties", strings("title", "year"));
+    assertParity(request, call);
+  }
+
+  @Test
+  public void nullModelIsLeftOut() throws IOException {
+    final VideoLibrary.GetMovies call = new VideoLibrary.GetMovies(null, new ListModel.Sort(false, "title", null));
+    final ObjectNode request = request(call);
+    request.putObject("params").put("sort", new ListModel.Sort(false, "title", null).toJsonNode());
+    assertParity(request, call);
+  }
+
+  @Test
+  public void builtTreeIsSent() throws IOException {
+    final VideoLibrary.GetMovieDetails call = new VideoLibrary.GetMovieDetails(7, "title");
+    ((ObjectNode) call.getRequest().get("params")).put("movieid", 8);
+    final ObjectNode request = request(call);
+    final ObjectNode params = request.putObject("params");
+    params.put("movieid", 8);
+    params.put("properties", strings("title"));
+    assertParity(request, call);
+  }
+
+  /**
+   * Starts the request tree the way the calls used to, in the order the fields were put.
+   */
+  private static ObjectNode request(AbstractCall<?> call) {
+    final ObjectNode request = AbstractCall.OM.createObjectNode();
+    request.put("jsonrpc", "2.0");
+    request.put("id", call.getId());
+    request.put("method", call.getName());
+    return request;
+  }
+
+  private static ArrayNode strings(String... values) {
+    final ArrayNode array = AbstractCall.OM.createArrayNode();
+    for (String value : values) {
+      array.add(value);
+    }
+    return array;
+  }
+
+  private static void assertParity(ObjectNode expected, AbstractCall<?> call) throws IOException {
+    final String json = AbstractCall.OM.writeValueAsString(expected);
+    assertEquals(json, write(call));
+    // the tree built on request matches as well, and sending it afterwards doesn't change the bytes
+    assertEquals(json, AbstractCall.OM.writeValueAsString(call.getRequest()));
+    assertEquals(json, write(call));
+  }
+
+  private static String write(AbstractCall<?> call) throws IOException {
+    final ByteArrayBuilder buffer = new ByteArrayBuilder();
+    final JsonGenerator g = AbstractCall.OM.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8);
+    call.writeRequest(g);
+    g.close();
+    return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,138 @@
+package org.tinymediamanager.jsonrpc.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.junit.Test;
+import org.tinymediamanager.jsonrpc.api.call.VideoLibrary;
+import org.tinymediamanager.jsonrpc.api.model.VideoModel;
+
+/**
+ * Reads lazy results from raw responses and compares them with the results of the same responses parsed as tree.
+ */
+public class LazyResultListTest {
+  // whitespace, separators and string contents which must not confuse the item positions
+  private static final String RESPONSE = "{\"id\": 1, \"jsonrpc\": \"2.0\", \"result\": {\"limits\": {\"end\": 3, \"start\": 0, \"total\": 10},\n"
+      + "  \"movies\" : [ {\"movieid\": 1, \"label\": \"Ünïcödé } \\\"quoted\\\" {\", \"cast\": [{\"name\": \"A\", \"role\": \"[x]\", \"order\": 0}],"
+      + " \"file\": \"/movies/1.mkv\"} ,\n"
+      + "\t{ \"movieid\" : 2 , \"label\" : \"}}}\" , \"cast\" : [ ] , \"genre\": [\"Drama\", [\"nested\"]], \"file\" : \"/movies/2.mkv\" } ,"
+      + "{\"movieid\":3,\"label\":\"\\\\\",\"file\":\"/movies/\\u00e4.mkv\"}\n" + "  ]}}";
+
+  @Test
+  public void itemsAreReadFromResponse() throws IOException {
+    final VideoLibrary.GetMovies raw = index(RESPONSE);
+    final VideoLibrary.GetMovies tree = tree(RESPONSE);
+
+    final List<VideoModel.MovieDetail> items = raw.getResultList();
+    assertTrue(items instanceof LazyResultList);
+    assertEquals(3, items.size());
+    assertEquals(10, (int) raw.getLimits().total);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(tree.getResultList().get(i).toJsonNode(), items.get(i).toJsonNode());
+      assertEquals(((LazyResultList<VideoModel.MovieDetail>) tree.getResultList()).getNode(i),
+          ((LazyResultList<VideoModel.MovieDetail>) items).getNode(i));
+    }
+    assertEquals("Ünïcödé } \"quoted\" {", items.get(0).label);
+    assertEquals("A", items.get(0).cast.get(0).name);
+    assertEquals("}}}", items.get(1).label);
+    assertEquals("\\", items.get(2).label);
+    assertEquals("/movies/ä.mkv", items.get(2).file);
+  }
+
+  @Test
+  public void itemIsDecodedOnce() throws IOException {
+    final LazyResultList<VideoModel.MovieDetail> items = list(index(RESPONSE));
+    assertFalse(items.isDecoded(1));
+    final VideoModel.MovieDetail movie = items.get(1);
+    assertTrue(items.isDecoded(1));
+    assertFalse(items.isDecoded(0));
+    assertSame(movie, items.get(1));
+  }
+
+  @Test
+  public void fieldsAreReadWithoutDecoding() throws IOException {
+    for (VideoLibrary.GetMovies call : new VideoLibrary.GetMovies[] { index(RESPONSE), tree(RESPONSE) }) {
+      final LazyResultList<VideoModel.MovieDetail> items = list(call);
+      assertEquals(2, items.getField(1, "movieid").getIntValue());
+      assertEquals("/movies/2.mkv", items.getField(1, "file").getTextValue());
+      assertEquals(1, items.getField(0, "cast").size());
+      assertNull(items.getField(2, "cast"));
+
+      final VideoModel.MovieDetail projection = items.getProjection(0, "movieid", "file");
+      assertEquals(1, (int) projection.movieid);
+      assertEquals("/movies/1.mkv", projection.file);
+      assertEquals("", projection.label);
+      assertTrue(projection.cast.isEmpty());
+      assertFalse(items.isDecoded(0));
+    }
+  }
+
+  @Test
+  public void indexIsChecked() throws IOException {
+    final LazyResultList<VideoModel.MovieDetail> items = list(index(RESPONSE));
+    try {
+      items.getField(3, "file");
+      fail("Read beyond the end");
+    }
+    catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void emptyResult() throws IOException {
+    final VideoLibrary.GetMovies call = index("{\"id\":1,\"jsonrpc\":\"2.0\",\"result\":{\"limits\":{\"end\":0,\"start\":0,\"total\":0},\"movies\":[]}}");
+    assertTrue(call.getResultList().isEmpty());
+    assertTrue(call.getResults().isEmpty());
+
+    // Kodi leaves out the list if there are no items
+    final VideoLibrary.GetMovies missing = index("{\"id\":1,\"jsonrpc\":\"2.0\",\"result\":{\"limits\":{\"end\":0,\"start\":0,\"total\":0}}}");
+    assertTrue(missing.getResults().isEmpty());
+    assertEquals(0, (int) missing.getLimits().total);
+  }
+
+  private static VideoLibrary.GetMovies index(String response) throws IOException {
+    final byte[] data = response.getBytes(StandardCharsets.UTF_8);
+    final VideoLibrary.GetMovies call = newCall();
+    final JsonParser jp = AbstractCall.OM.getJsonFactory().createJsonParser(data);
+    jp.nextToken();
+    while (jp.nextToken() == JsonToken.FIELD_NAME) {
+      final String field = jp.getCurrentName();
+      jp.nextToken();
+      if (AbstractCall.RESULT.equals(field)) {
+        call.indexResult(jp, data);
+      }
+      else {
+        jp.skipChildren();
+      }
+    }
+    jp.close();
+    return call;
+  }
+
+  private static VideoLibrary.GetMovies tree(String response) throws IOException {
+    final VideoLibrary.GetMovies call = newCall();
+    call.setResponse(AbstractCall.OM.readTree(response));
+    return call;
+  }
+
+  private static VideoLibrary.GetMovies newCall() {
+    final VideoLibrary.GetMovies call = new VideoLibrary.GetMovies("file", "cast", "genre");
+    call.setLazyResults(true);
+    return call;
+  }
+
+  private static LazyResultList<VideoModel.MovieDetail> list(VideoLibrary.GetMovies call) {
+    return (LazyResultList<VideoModel.MovieDetail>) call.getResultList();
+  }
+}
@@ -0,0 +1,110 @@
+package org.tinymediamanager.jsonrpc.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.util.ByteArrayBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tinymediamanager.jsonrpc.api.call.VideoLibrary;
+import org.tinymediamanager.jsonrpc.api.model.ListModel;
+import org.tinymediamanager.jsonrpc.api.model.VideoModel;
+
+public class PreparedCallTest {
+  private final VideoLibrary.GetMovies                template = new VideoLibrary.GetMovies(new ListModel.Limits(10, 0),
+      new ListModel.Sort(true, "title", "ascending"), "title", "year");
+  private final PreparedCall<VideoModel.MovieDetail> prepared = new PreparedCall<VideoModel.MovieDetail>(template);
+
+  private AtomicLong                                 ids;
+  private long                                       lastId;
+
+  @Before
+  public void setUp() throws Exception {
+    // ids are handed out by a JVM wide counter, which is moved to get ids of a given length
+    final Field field = AbstractCall.class.getDeclaredField("IDS");
+    field.setAccessible(true);
+    ids = (AtomicLong) field.get(null);
+    lastId = ids.get();
+  }
+
+  @After
+  public void tearDown() {
+    ids.set(lastId);
+  }
+
+  @Test
+  public void splicesOneDigitId() throws IOException {
+    assertSpliced(7);
+  }
+
+  @Test
+  public void splicesTenDigitId() throws IOException {
+    assertSpliced(1234567890L);
+  }
+
+  @Test
+  public void splicesNineteenDigitId() throws IOException {
+    assertEquals(19, String.valueOf(Long.MAX_VALUE).length());
+    assertSpliced(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void splicesAllLengths() throws IOException {
+    for (long id = 9; id > 0 && id < Long.MAX_VALUE / 10; id = id * 10 + 9) {
+      assertSpliced(id);
+      assertSpliced(id + 1);
+    }
+  }
+
+  @Test
+  public void writesRequestUnderOwnId() throws IOException {
+    final PreparedCall.Instance<VideoModel.MovieDetail> call = prepared.newCall();
+    final ByteArrayBuilder buffer = new ByteArrayBuilder();
+    final JsonGenerator g = AbstractCall.OM.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8);
+    call.writeRequest(g);
+    g.close();
+    assertArrayEquals(call.toBytes(), buffer.toByteArray());
+  }
+
+  @Test
+  public void notificationHasNoId() throws IOException {
+    final ByteArrayBuilder buffer = new ByteArrayBuilder();
+    final JsonGenerator g = AbstractCall.OM.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8);
+    prepared.newCall().writeNotification(g);
+    g.close();
+    assertArrayEquals(write(template, 0), buffer.toByteArray());
+    assertFalse(new String(buffer.toByteArray(), StandardCharsets.UTF_8).contains("\"id\""));
+  }
+
+  @Test
+  public void keepsPriority() {
+    template.setPriority(AbstractCall.Priority.BULK);
+    assertEquals(AbstractCall.Priority.BULK, new PreparedCall<VideoModel.MovieDetail>(template).newCall().getPriority());
+  }
+
+  private void assertSpliced(long id) throws IOException {
+    ids.set(id - 1);
+    final PreparedCall.Instance<VideoModel.MovieDetail> call = prepared.newCall();
+    assertEquals(id, call.getId());
+    final byte[] expected = write(template, id);
+    assertEquals(new String(expected, StandardCharsets.UTF_8), new String(call.toBytes(), StandardCharsets.UTF_8));
+    assertArrayEquals(expected, call.toBytes());
+  }
+
+  private static byte[] write(AbstractCall<?> call, long id) throws IOException {
+    final ByteArrayBuilder buffer = new ByteArrayBuilder();
+    final JsonGenerator g = AbstractCall.OM.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8);
+    call.writeRequest(g, id);
+    g.close();
+    return buffer.toByteArray();
+  }
+}
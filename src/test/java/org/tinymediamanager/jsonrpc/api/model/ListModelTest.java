@@ -0,0 +1,148 @@
+package org.tinymediamanager.jsonrpc.api.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.util.ByteArrayBuilder;
+import org.junit.Test;
+import org.tinymediamanager.jsonrpc.api.AbstractModel;
+import org.tinymediamanager.jsonrpc.api.model.ListModel.FilterRule.Value;
+
+/**
+ * Compares the parameters written by {@link AbstractModel#writeJson(JsonGenerator)} byte by byte with their {@link AbstractModel#toJsonNode() trees}.
+ */
+public class ListModelTest {
+  private static final ObjectMapper OM      = new ObjectMapper();
+
+  private static final Value        TEXT    = new Value("Amélie \"Poulain\"");
+  private static final Value        LIST    = new Value(Arrays.asList("2001", "2002"));
+  private static final Value        EMPTY   = new Value(Collections.<String> emptyList());
+  private static final Value        NOTHING = new Value((String) null);
+
+  @Test
+  public void values() throws IOException {
+    assertParity(TEXT);
+    assertParity(LIST);
+    assertParity(EMPTY);
+  }
+
+  @Test
+  public void filterRules() throws IOException {
+    for (Value value : new Value[] { TEXT, LIST, EMPTY, NOTHING, null }) {
+      assertParity(new ListModel.FilterRule("is", value));
+      assertParity(new ListModel.AlbumFilterRule("is", value, "genre"));
+      assertParity(new ListModel.ArtistFilterRule("is", value, "genre"));
+      assertParity(new ListModel.EpisodeFilterRule("is", value, "title"));
+      assertParity(new ListModel.MovieFilterRule("is", value, "title"));
+      assertParity(new ListModel.MusicVideoFilterRule("is", value, "title"));
+      assertParity(new ListModel.SongFilterRule("is", value, "title"));
+      assertParity(new ListModel.TVShowFilterRule("is", value, "title"));
+      assertParity(new ListModel.TextureFilterRule("is", value, "url"));
+    }
+  }
+
+  @Test
+  public void albumFilters() throws IOException {
+    final ListModel.AlbumFilter rule = new ListModel.AlbumFilter(new ListModel.AlbumFilterRule("contains", TEXT, "album"));
+    final ListModel.AlbumFilter or = new ListModel.AlbumFilter(new ListModel.AlbumFilter.Or(Arrays.asList(rule,
+        new ListModel.AlbumFilter(new ListModel.AlbumFilterRule("is", LIST, "year")))));
+    assertParity(rule);
+    assertParity(or);
+    assertParity(new ListModel.AlbumFilter(new ListModel.AlbumFilter.And(Arrays.asList(rule, or))));
+  }
+
+  @Test
+  public void artistFilters() throws IOException {
+    final ListModel.ArtistFilter rule = new ListModel.ArtistFilter(new ListModel.ArtistFilterRule("contains", TEXT, "artist"));
+    final ListModel.ArtistFilter or = new ListModel.ArtistFilter(new ListModel.ArtistFilter.Or(Arrays.asList(rule,
+        new ListModel.ArtistFilter(new ListModel.ArtistFilterRule("is", LIST, "genre")))));
+    assertParity(rule);
+    assertParity(or);
+    assertParity(new ListModel.ArtistFilter(new ListModel.ArtistFilter.And(Arrays.asList(rule, or))));
+  }
+
+  @Test
+  public void episodeFilters() throws IOException {
+    final ListModel.EpisodeFilter rule = new ListModel.EpisodeFilter(new ListModel.EpisodeFilterRule("contains", TEXT, "title"));
+    final ListModel.EpisodeFilter or = new ListModel.EpisodeFilter(new ListModel.EpisodeFilter.Or(Arrays.asList(rule,
+        new ListModel.EpisodeFilter(new ListModel.EpisodeFilterRule("is", LIST, "season")))));
+    assertParity(rule);
+    assertParity(or);
+    assertParity(new ListModel.EpisodeFilter(new ListModel.EpisodeFilter.And(Arrays.asList(rule, or))));
+  }
+
+  @Test
+  public void movieFilters() throws IOException {
+    final ListModel.MovieFilter rule = new ListModel.MovieFilter(new ListModel.MovieFilterRule("contains", TEXT, "title"));
+    final ListModel.MovieFilter or = new ListModel.MovieFilter(new ListModel.MovieFilter.Or(Arrays.asList(rule,
+        new ListModel.MovieFilter(new ListModel.MovieFilterRule("is", LIST, "year")))));
+    assertParity(rule);
+    assertParity(or);
+    assertParity(new ListModel.MovieFilter(new ListModel.MovieFilter.And(Arrays.asList(rule, or))));
+  }
+
+  @Test
+  public void musicVideoFilters() throws IOException {
+    final ListModel.MusicVideoFilter rule = new ListModel.MusicVideoFilter(new ListModel.MusicVideoFilterRule("contains", TEXT, "title"));
+    final ListModel.MusicVideoFilter or = new ListModel.MusicVideoFilter(new ListModel.MusicVideoFilter.Or(Arrays.asList(rule,
+        new ListModel.MusicVideoFilter(new ListModel.MusicVideoFilterRule("is", LIST, "year")))));
+    assertParity(rule);
+    assertParity(or);
+    assertParity(new ListModel.MusicVideoFilter(new ListModel.MusicVideoFilter.And(Arrays.asList(rule, or))));
+  }
+
+  @Test
+  public void songFilters() throws IOException {
+    final ListModel.SongFilter rule = new ListModel.SongFilter(new ListModel.SongFilterRule("contains", TEXT, "title"));
+    final ListModel.SongFilter or = new ListModel.SongFilter(new ListModel.SongFilter.Or(Arrays.asList(rule,
+        new ListModel.SongFilter(new ListModel.SongFilterRule("is", LIST, "year")))));
+    assertParity(rule);
+    assertParity(or);
+    assertParity(new ListModel.SongFilter(new ListModel.SongFilter.And(Arrays.asList(rule, or))));
+  }
+
+  @Test
+  public void tvShowFilters() throws IOException {
+    final ListModel.TVShowFilter rule = new ListModel.TVShowFilter(new ListModel.TVShowFilterRule("contains", TEXT, "title"));
+    final ListModel.TVShowFilter or = new ListModel.TVShowFilter(new ListModel.TVShowFilter.Or(Arrays.asList(rule,
+        new ListModel.TVShowFilter(new ListModel.TVShowFilterRule("is", LIST, "year")))));
+    assertParity(rule);
+    assertParity(or);
+    assertParity(new ListModel.TVShowFilter(new ListModel.TVShowFilter.And(Arrays.asList(rule, or))));
+  }
+
+  @Test
+  public void textureFilters() throws IOException {
+    final ListModel.TextureFilter rule = new ListModel.TextureFilter(new ListModel.TextureFilterRule("contains", TEXT, "url"));
+    final ListModel.TextureFilter or = new ListModel.TextureFilter(new ListModel.TextureFilter.Or(Arrays.asList(rule,
+        new ListModel.TextureFilter(new ListModel.TextureFilterRule("is", LIST, "sizes")))));
+    assertParity(rule);
+    assertParity(or);
+    assertParity(new ListModel.TextureFilter(new ListModel.TextureFilter.And(Arrays.asList(rule, or))));
+  }
+
+  @Test
+  public void limitsAndSort() throws IOException {
+    assertParity(new ListModel.Limits(10, 5));
+    assertParity(new ListModel.Limits(10, null));
+    assertParity(new ListModel.Limits(null, null));
+    assertParity(new ListModel.Sort(true, "title", "ascending"));
+    assertParity(new ListModel.Sort(null, "title", null));
+    assertParity(new ListModel.Sort(null, null, null));
+  }
+
+  private static void assertParity(AbstractModel model) throws IOException {
+    final ByteArrayBuilder buffer = new ByteArrayBuilder();
+    final JsonGenerator g = OM.getJsonFactory().createJsonGenerator(buffer, JsonEncoding.UTF8);
+    model.writeJson(g);
+    g.close();
+    assertEquals(OM.writeValueAsString(model.toJsonNode()), new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+  }
+}
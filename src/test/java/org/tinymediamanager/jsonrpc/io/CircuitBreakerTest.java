@@ -0,0 +1,117 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tinymediamanager.jsonrpc.config.HostConfig;
+
+public class CircuitBreakerTest {
+  private static final long OPEN_TIME = 50;
+
+  private CircuitBreaker    breaker;
+
+  @Before
+  public void setUp() {
+    breaker = CircuitBreaker.forHost(new HostConfig("breaker.test"));
+    breaker.configure(3, OPEN_TIME, TimeUnit.MILLISECONDS);
+    breaker.reset();
+  }
+
+  @Test
+  public void sharedPerAddress() {
+    assertSame(breaker, CircuitBreaker.forHost(new HostConfig("breaker.test", 8080, 9999)));
+  }
+
+  @Test
+  public void opensAfterFailuresInARow() {
+    breaker.onFailure();
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertTrue(breaker.allowRequest());
+
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.allowRequest());
+  }
+
+  @Test
+  public void successResetsFailureCount() {
+    breaker.onFailure();
+    breaker.onFailure();
+    breaker.onSuccess();
+    breaker.onFailure();
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void probeClosesCircuit() throws InterruptedException {
+    open();
+    Thread.sleep(OPEN_TIME + 10);
+
+    assertTrue(breaker.allowRequest());
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    // only a single probe at a time
+    assertFalse(breaker.allowRequest());
+
+    breaker.onSuccess();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertTrue(breaker.allowRequest());
+  }
+
+  @Test
+  public void failedProbeOpensCircuitAgain() throws InterruptedException {
+    open();
+    Thread.sleep(OPEN_TIME + 10);
+
+    assertTrue(breaker.allowRequest());
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.allowRequest());
+  }
+
+  @Test
+  public void lostProbeIsRetried() throws InterruptedException {
+    open();
+    Thread.sleep(OPEN_TIME + 10);
+    assertTrue(breaker.allowRequest());
+
+    Thread.sleep(OPEN_TIME + 10);
+    assertTrue(breaker.allowRequest());
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+  }
+
+  @Test
+  public void errorResponsesAreNoFailures() {
+    for (int i = 0; i < 5; i++) {
+      breaker.onError(ApiException.API_ERROR);
+    }
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+    for (int i = 0; i < 3; i++) {
+      breaker.onError(ApiException.REQUEST_TIMEOUT);
+    }
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+  }
+
+  @Test
+  public void resetClosesCircuit() {
+    open();
+    breaker.reset();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertTrue(breaker.allowRequest());
+  }
+
+  private void open() {
+    for (int i = 0; i < 3; i++) {
+      breaker.onFailure();
+    }
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+  }
+}
@@ -0,0 +1,136 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.tinymediamanager.jsonrpc.api.AbstractCall.Priority;
+
+public class ConcurrencyLimiterTest {
+  private final List<String> sent = new ArrayList<String>();
+
+  private ConcurrencyLimiter.Ticket submit(ConcurrencyLimiter limiter, final String name, Priority priority) {
+    return submit(limiter, name, priority, 1);
+  }
+
+  private ConcurrencyLimiter.Ticket submit(ConcurrencyLimiter limiter, final String name, Priority priority, int calls) {
+    final ConcurrencyLimiter.Ticket ticket = limiter.newTicket(calls, priority);
+    ticket.submit(new Runnable() {
+      @Override
+      public void run() {
+        sent.add(name);
+      }
+    });
+    return ticket;
+  }
+
+  @Test
+  public void queuesOverLimit() {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 2);
+    final ConcurrencyLimiter.Ticket a = submit(limiter, "a", Priority.NORMAL);
+    submit(limiter, "b", Priority.NORMAL);
+    final ConcurrencyLimiter.Ticket c = submit(limiter, "c", Priority.NORMAL);
+    assertEquals(2, limiter.getInFlight());
+    assertEquals(1, limiter.getQueued());
+    assertTrue(a.isStarted());
+    assertFalse(c.isStarted());
+    assertEquals("[a, b]", sent.toString());
+
+    a.complete(ConcurrencyLimiter.Outcome.ANSWERED);
+    assertEquals("[a, b, c]", sent.toString());
+    assertTrue(c.isStarted());
+    assertEquals(0, limiter.getQueued());
+    assertEquals(2, limiter.getInFlight());
+  }
+
+  @Test
+  public void sendsByPriority() {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1);
+    final ConcurrencyLimiter.Ticket first = submit(limiter, "first", Priority.NORMAL);
+    final ConcurrencyLimiter.Ticket bulk = submit(limiter, "bulk", Priority.BULK);
+    submit(limiter, "normal", Priority.NORMAL);
+    final ConcurrencyLimiter.Ticket interactive = submit(limiter, "interactive", Priority.INTERACTIVE);
+    // interactive calls never wait, but take a slot as well
+    assertEquals("[first, interactive]", sent.toString());
+    assertEquals(2, limiter.getInFlight());
+
+    first.complete(ConcurrencyLimiter.Outcome.ANSWERED);
+    interactive.complete(ConcurrencyLimiter.Outcome.ANSWERED);
+    assertEquals("[first, interactive, normal]", sent.toString());
+    assertFalse(bulk.isStarted());
+  }
+
+  @Test
+  public void queuedTicketCompletedWithoutSending() {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1);
+    final ConcurrencyLimiter.Ticket first = submit(limiter, "first", Priority.NORMAL);
+    final ConcurrencyLimiter.Ticket queued = submit(limiter, "queued", Priority.NORMAL);
+
+    queued.complete(ConcurrencyLimiter.Outcome.TIMED_OUT);
+    assertEquals(0, limiter.getQueued());
+    // a call timing out in the queue says nothing about the host
+    assertEquals(1, limiter.getLimit());
+
+    first.complete(ConcurrencyLimiter.Outcome.ANSWERED);
+    assertEquals("[first]", sent.toString());
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void batchFreesSlotOnceAllCallsCompleted() {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1);
+    final ConcurrencyLimiter.Ticket batch = submit(limiter, "batch", Priority.NORMAL, 2);
+    submit(limiter, "next", Priority.NORMAL);
+
+    batch.complete(ConcurrencyLimiter.Outcome.ANSWERED);
+    assertEquals("[batch]", sent.toString());
+    batch.complete(ConcurrencyLimiter.Outcome.ANSWERED);
+    assertEquals("[batch, next]", sent.toString());
+  }
+
+  @Test
+  public void timeoutHalvesLimit() {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 1, 64);
+    submit(limiter, "a", Priority.NORMAL).complete(ConcurrencyLimiter.Outcome.TIMED_OUT);
+    assertEquals(4, limiter.getLimit());
+    submit(limiter, "b", Priority.NORMAL).complete(ConcurrencyLimiter.Outcome.TIMED_OUT);
+    submit(limiter, "c", Priority.NORMAL).complete(ConcurrencyLimiter.Outcome.TIMED_OUT);
+    submit(limiter, "d", Priority.NORMAL).complete(ConcurrencyLimiter.Outcome.TIMED_OUT);
+    assertEquals(1, limiter.getLimit());
+  }
+
+  @Test
+  public void limitGrowsWhileUsed() {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 64);
+    for (int round = 0; round < 20; round++) {
+      final List<ConcurrencyLimiter.Ticket> tickets = new ArrayList<ConcurrencyLimiter.Ticket>();
+      for (int i = 0; i < limiter.getLimit(); i++) {
+        tickets.add(submit(limiter, "t", Priority.NORMAL));
+      }
+      for (ConcurrencyLimiter.Ticket ticket : tickets) {
+        ticket.complete(ConcurrencyLimiter.Outcome.ANSWERED);
+      }
+    }
+    assertTrue("Limit " + limiter.getLimit(), limiter.getLimit() > 4);
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void completedBeforeSubmitIsNotSent() {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1);
+    final ConcurrencyLimiter.Ticket ticket = limiter.newTicket(1, Priority.NORMAL);
+    ticket.complete(ConcurrencyLimiter.Outcome.ABANDONED);
+    ticket.submit(new Runnable() {
+      @Override
+      public void run() {
+        sent.add("late");
+      }
+    });
+    assertTrue(sent.isEmpty());
+    assertEquals(0, limiter.getInFlight());
+  }
+}
@@ -0,0 +1,222 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.codehaus.jackson.node.TextNode;
+import org.tinymediamanager.jsonrpc.config.HostConfig;
+
+/**
+ * Minimal JSON-RPC server on a local port, answering every request with the same result unless a {@link #methods handler} for its method is set.
+ */
+class FakeKodi implements AutoCloseable {
+  private static final ObjectMapper               OM               = new ObjectMapper();
+
+  private final ServerSocket                      server;
+  private final List<Socket>                      clients          = new CopyOnWriteArrayList<Socket>();
+  /**
+   * Ids of all requests received, in the order they arrived.
+   */
+  final List<Long>                                received         = new CopyOnWriteArrayList<Long>();
+  /**
+   * Ids of the requests received by connection, in the order the connections were accepted.
+   */
+  final List<List<Long>>                          receivedByClient = new CopyOnWriteArrayList<List<Long>>();
+  /**
+   * All requests received, in the order they arrived.
+   */
+  final List<JsonNode>                            requests         = new CopyOnWriteArrayList<JsonNode>();
+  /**
+   * Sizes of the batch requests received, in the order they arrived.
+   */
+  final List<Integer>                             batches          = new CopyOnWriteArrayList<Integer>();
+  /**
+   * Handlers by method, returning the result for the parameters of a request or throwing an {@link Error}.
+   */
+  final Map<String, Function<JsonNode, JsonNode>> methods          = new ConcurrentHashMap<String, Function<JsonNode, JsonNode>>();
+  /**
+   * Whether requests are answered; if not, they are only recorded.
+   */
+  volatile boolean                                answering        = true;
+  /**
+   * Time to wait before answering a request in milliseconds.
+   */
+  volatile long                                   delay;
+  /**
+   * Result of every response to a method without handler.
+   */
+  volatile JsonNode                               result           = TextNode.valueOf("pong");
+
+  FakeKodi() throws IOException {
+    server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    final Thread acceptor = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            final Socket client = server.accept();
+            client.setTcpNoDelay(true);
+            clients.add(client);
+            final List<Long> ids = new CopyOnWriteArrayList<Long>();
+            receivedByClient.add(ids);
+            final Thread serving = new Thread(new Runnable() {
+              @Override
+              public void run() {
+                serve(client, ids);
+              }
+            }, "fake-kodi-client");
+            serving.setDaemon(true);
+            serving.start();
+          }
+        }
+        catch (IOException e) {
+          // closed
+        }
+      }
+    }, "fake-kodi");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  HostConfig getHostConfig() {
+    return new HostConfig(server.getInetAddress().getHostAddress(), 1, server.getLocalPort());
+  }
+
+  /**
+   * Drops all open connections, as if Kodi had been restarted.
+   */
+  void dropClients() throws IOException {
+    for (Socket client : clients) {
+      client.close();
+    }
+    clients.clear();
+  }
+
+  /**
+   * Sends a notification to all open connections.
+   *
+   * @param method
+   *          Method of the notification, e.g. <tt>VideoLibrary.OnUpdate</tt>
+   * @param data
+   *          Data of the notification
+   */
+  void notifyClients(String method, JsonNode data) throws IOException {
+    final ObjectNode notification = OM.createObjectNode();
+    notification.put("jsonrpc", "2.0");
+    notification.put("method", method);
+    final ObjectNode params = notification.putObject("params");
+    params.put("sender", "xbmc");
+    params.put("data", data);
+    for (Socket client : clients) {
+      write(client.getOutputStream(), notification);
+    }
+  }
+
+  private void serve(Socket client, List<Long> ids) {
+    try {
+      final JsonParser jp = OM.getJsonFactory().createJsonParser(client.getInputStream());
+      final OutputStream out = client.getOutputStream();
+      JsonNode request;
+      while ((request = OM.readTree(jp)) != null) {
+        if (request.isArray()) {
+          batches.add(request.size());
+          final ArrayNode responses = OM.createArrayNode();
+          for (JsonNode element : request) {
+            final JsonNode response = answer(element, ids);
+            if (response != null) {
+              responses.add(response);
+            }
+          }
+          if (answering && responses.size() > 0) {
+            write(out, responses);
+          }
+          continue;
+        }
+        final JsonNode response = answer(request, ids);
+        if (answering && response != null) {
+          write(out, response);
+        }
+      }
+    }
+    catch (IOException | InterruptedException e) {
+      // dropped
+    }
+  }
+
+  /**
+   * Records a request and creates its response.
+   *
+   * @return The response, <tt>null</tt> for a notification
+   */
+  private JsonNode answer(JsonNode request, List<Long> ids) throws InterruptedException {
+    if (!request.has("id")) {
+      return null;
+    }
+    requests.add(request);
+    received.add(request.get("id").getLongValue());
+    ids.add(request.get("id").getLongValue());
+    if (delay > 0) {
+      Thread.sleep(delay);
+    }
+    final ObjectNode response = OM.createObjectNode();
+    response.put("jsonrpc", "2.0");
+    response.put("id", request.get("id"));
+    final Function<JsonNode, JsonNode> handler = methods.get(request.get("method").getTextValue());
+    if (handler == null) {
+      response.put("result", result);
+      return response;
+    }
+    try {
+      response.put("result", handler.apply(request.get("params")));
+    }
+    catch (Error e) {
+      final ObjectNode error = response.putObject("error");
+      error.put("code", e.code);
+      error.put("message", e.getMessage());
+    }
+    return response;
+  }
+
+  private static void write(OutputStream out, JsonNode message) throws IOException {
+    final byte[] data = message.toString().getBytes(StandardCharsets.UTF_8);
+    // responses and notifications may be sent by different threads
+    synchronized (out) {
+      out.write(data);
+      out.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.close();
+    dropClients();
+  }
+
+  /**
+   * Error response of a {@link FakeKodi#methods handler}.
+   */
+  static class Error extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    final int                 code;
+
+    Error(int code, String message) {
+      super(message);
+      this.code = code;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class HashedWheelTimerTest {
+  // a small wheel, so longer delays take several rounds
+  private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 8);
+
+  @Test
+  public void runsAfterDelay() throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final long start = System.nanoTime();
+    timer.schedule(countDown(latch), 50, TimeUnit.MILLISECONDS);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  @Test
+  public void delayLongerThanWheel() throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final long start = System.nanoTime();
+    // 8 buckets of 10ms, so this takes more than two rounds
+    timer.schedule(countDown(latch), 250, TimeUnit.MILLISECONDS);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+  }
+
+  @Test
+  public void runsInOrderOfDeadline() throws InterruptedException {
+    final List<Integer> order = new CopyOnWriteArrayList<Integer>();
+    final CountDownLatch latch = new CountDownLatch(3);
+    for (final int delay : new int[] { 120, 20, 70 }) {
+      timer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          order.add(delay);
+          latch.countDown();
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertEquals(20, (int) order.get(0));
+    assertEquals(70, (int) order.get(1));
+    assertEquals(120, (int) order.get(2));
+  }
+
+  @Test
+  public void cancelledTaskDoesNotRun() throws InterruptedException {
+    final AtomicInteger runs = new AtomicInteger();
+    final HashedWheelTimer.Timeout timeout = timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+      }
+    }, 30, TimeUnit.MILLISECONDS);
+    assertTrue(timeout.cancel());
+    assertFalse(timeout.cancel());
+
+    // a later task has run, so the cancelled one would have as well
+    final CountDownLatch latch = new CountDownLatch(1);
+    timer.schedule(countDown(latch), 60, TimeUnit.MILLISECONDS);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertEquals(0, runs.get());
+  }
+
+  @Test
+  public void cancelAfterExpiry() throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final HashedWheelTimer.Timeout timeout = timer.schedule(countDown(latch), 10, TimeUnit.MILLISECONDS);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertFalse(timeout.cancel());
+  }
+
+  @Test
+  public void failingTaskDoesNotStopTimer() throws InterruptedException {
+    timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        throw new IllegalStateException("expected");
+      }
+    }, 10, TimeUnit.MILLISECONDS);
+    final CountDownLatch latch = new CountDownLatch(1);
+    timer.schedule(countDown(latch), 40, TimeUnit.MILLISECONDS);
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+  }
+
+  private static Runnable countDown(final CountDownLatch latch) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    };
+  }
+}
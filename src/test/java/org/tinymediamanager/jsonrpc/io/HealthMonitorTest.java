@@ -0,0 +1,218 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tinymediamanager.jsonrpc.api.call.JSONRPC;
+import org.tinymediamanager.jsonrpc.api.call.VideoLibrary;
+
+public class HealthMonitorTest {
+  private static final ObjectMapper OM       = new ObjectMapper();
+  private static final long         INTERVAL = 50;
+
+  private FakeKodi                  kodi;
+  private JavaConnectionManager     cm;
+  private HealthMonitor             monitor;
+
+  @Before
+  public void setUp() throws Exception {
+    kodi = new FakeKodi();
+    cm = newManager(kodi);
+    monitor = cm.getHealthMonitor();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    cm.disconnect();
+    kodi.close();
+    resetBreaker(kodi);
+  }
+
+  @Test
+  public void roundTripTimeIsEstimated() throws Exception {
+    kodi.delay = 20;
+    monitor.setInterval(100, TimeUnit.MILLISECONDS);
+    cm.connect(kodi.getHostConfig());
+    assertEquals(0, monitor.getSmoothedRtt(TimeUnit.NANOSECONDS));
+    assertEquals(0, monitor.getRttPercentile(99, TimeUnit.NANOSECONDS));
+
+    await(new BooleanSupplier() {
+      @Override
+      public boolean getAsBoolean() {
+        return kodi.received.size() > 5;
+      }
+    });
+    assertEquals(HealthMonitor.State.HEALTHY, monitor.getState());
+    assertEquals(0, monitor.getMissedPings());
+
+    // every ping takes a bit more than the delay, but less than the interval
+    final long rtt = monitor.getSmoothedRtt(TimeUnit.MILLISECONDS);
+    assertTrue("RTT " + rtt, rtt >= 20 && rtt < 100);
+    assertTrue(monitor.getRttPercentile(0, TimeUnit.MILLISECONDS) >= 20);
+    assertTrue(monitor.getRttPercentile(100, TimeUnit.MILLISECONDS) < 100);
+    assertTrue(monitor.getRttPercentile(0, TimeUnit.NANOSECONDS) <= monitor.getRttPercentile(50, TimeUnit.NANOSECONDS));
+    assertTrue(monitor.getRttPercentile(50, TimeUnit.NANOSECONDS) <= monitor.getRttPercentile(100, TimeUnit.NANOSECONDS));
+    // the jitter starts at half the first sample and shrinks as long as the samples are alike
+    final long jitter = monitor.getJitter(TimeUnit.NANOSECONDS);
+    assertTrue("Jitter " + jitter, jitter > 0 && jitter < monitor.getSmoothedRtt(TimeUnit.NANOSECONDS) / 2);
+  }
+
+  @Test
+  public void missedPingsDegradeAndKill() throws Exception {
+    monitor.setInterval(INTERVAL, TimeUnit.MILLISECONDS);
+    monitor.setMaxMissed(3);
+    cm.connect(kodi.getHostConfig());
+    awaitState(monitor, HealthMonitor.State.HEALTHY);
+
+    kodi.answering = false;
+    final List<HealthMonitor.State> states = new ArrayList<HealthMonitor.State>();
+    final List<Integer> missed = new ArrayList<Integer>();
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    states.add(monitor.getState());
+    while (cm.isConnected()) {
+      assertTrue("Still connected, states " + states, System.nanoTime() < deadline);
+      final HealthMonitor.State state = monitor.getState();
+      if (state != states.get(states.size() - 1)) {
+        states.add(state);
+      }
+      final int missedPings = monitor.getMissedPings();
+      if (!missed.contains(missedPings)) {
+        missed.add(missedPings);
+      }
+      Thread.sleep(1);
+    }
+
+    // without reconnect policy the manager disconnects, and the host stays dead
+    states.add(monitor.getState());
+    assertEquals(Arrays.asList(HealthMonitor.State.HEALTHY, HealthMonitor.State.DEGRADED, HealthMonitor.State.DEAD), states.subList(0, 3));
+    assertEquals(HealthMonitor.State.DEAD, monitor.getState());
+    assertEquals(3, monitor.getMissedPings());
+    assertTrue(missed.containsAll(Arrays.asList(0, 1, 2)));
+  }
+
+  @Test
+  public void answeredPingRecovers() throws Exception {
+    monitor.setInterval(INTERVAL, TimeUnit.MILLISECONDS);
+    monitor.setMaxMissed(1000);
+    cm.connect(kodi.getHostConfig());
+    kodi.answering = false;
+    awaitState(monitor, HealthMonitor.State.DEGRADED);
+
+    kodi.answering = true;
+    awaitState(monitor, HealthMonitor.State.HEALTHY);
+    assertEquals(0, monitor.getMissedPings());
+    assertTrue(cm.isConnected());
+  }
+
+  @Test
+  public void deadConnectionIsReestablished() throws Exception {
+    cm.setReconnectPolicy(new ReconnectPolicy(10, 10, 0, 100));
+    monitor.setInterval(INTERVAL, TimeUnit.MILLISECONDS);
+    monitor.setMaxMissed(2);
+    cm.connect(kodi.getHostConfig());
+    kodi.answering = false;
+
+    // the half-open connection is dropped and a new one opened
+    await(new BooleanSupplier() {
+      @Override
+      public boolean getAsBoolean() {
+        return kodi.receivedByClient.size() > 1;
+      }
+    });
+    kodi.answering = true;
+    awaitState(monitor, HealthMonitor.State.HEALTHY);
+    assertTrue(cm.isConnected());
+    assertEquals("pong", cm.callAsync(new JSONRPC.Ping()).get(5, TimeUnit.SECONDS).getResult());
+  }
+
+  @Test
+  public void hostGroupSkipsUnhealthyMember() throws Exception {
+    final FakeKodi replicaKodi = new FakeKodi();
+    final JavaConnectionManager replica = newManager(replicaKodi);
+    replica.getHealthMonitor().setInterval(0, TimeUnit.MILLISECONDS);
+    try {
+      kodi.result = OM.readTree("{\"moviedetails\":{\"movieid\":7,\"label\":\"Seven\"}}");
+      replicaKodi.result = kodi.result;
+      monitor.setInterval(INTERVAL, TimeUnit.MILLISECONDS);
+      monitor.setMaxMissed(1000);
+      cm.connect(kodi.getHostConfig());
+      replica.connect(replicaKodi.getHostConfig());
+      final HostGroup group = new HostGroup(cm, replica);
+      awaitState(monitor, HealthMonitor.State.HEALTHY);
+
+      kodi.answering = false;
+      awaitState(monitor, HealthMonitor.State.DEGRADED);
+      fetchMovies(group, 5);
+      assertEquals(0, movieRequests(kodi));
+      assertEquals(5, movieRequests(replicaKodi));
+
+      // eligible again, and the first one with the same load
+      kodi.answering = true;
+      awaitState(monitor, HealthMonitor.State.HEALTHY);
+      fetchMovies(group, 5);
+      assertTrue(movieRequests(kodi) > 0);
+    }
+    finally {
+      replica.disconnect();
+      replicaKodi.close();
+      resetBreaker(replicaKodi);
+    }
+  }
+
+  private static void fetchMovies(HostGroup group, int count) throws Exception {
+    for (int i = 0; i < count; i++) {
+      assertEquals("Seven", group.callAsync(new VideoLibrary.GetMovieDetails(7)).get(5, TimeUnit.SECONDS).getResult().label);
+    }
+  }
+
+  private static int movieRequests(FakeKodi kodi) {
+    int count = 0;
+    for (JsonNode request : kodi.requests) {
+      if (VideoLibrary.GetMovieDetails.API_TYPE.equals(request.get("method").getTextValue())) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static JavaConnectionManager newManager(FakeKodi kodi) {
+    // unanswered pings shall not open the circuit, it would hide the health of the host
+    CircuitBreaker.forHost(kodi.getHostConfig()).configure(1000, CircuitBreaker.DEFAULT_OPEN_TIME, TimeUnit.MILLISECONDS);
+    CircuitBreaker.forHost(kodi.getHostConfig()).reset();
+    return new JavaConnectionManager();
+  }
+
+  private static void resetBreaker(FakeKodi kodi) {
+    final CircuitBreaker breaker = CircuitBreaker.forHost(kodi.getHostConfig());
+    breaker.configure(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, CircuitBreaker.DEFAULT_OPEN_TIME, TimeUnit.MILLISECONDS);
+    breaker.reset();
+  }
+
+  private static void awaitState(final HealthMonitor monitor, final HealthMonitor.State state) throws InterruptedException {
+    await(new BooleanSupplier() {
+      @Override
+      public boolean getAsBoolean() {
+        return monitor.getState() == state;
+      }
+    });
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!condition.getAsBoolean()) {
+      assertTrue("Timed out", System.nanoTime() < deadline);
+      Thread.sleep(5);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tinymediamanager.jsonrpc.api.AbstractCall;
+import org.tinymediamanager.jsonrpc.api.PreparedCall;
+import org.tinymediamanager.jsonrpc.api.call.VideoLibrary;
+import org.tinymediamanager.jsonrpc.api.model.VideoModel;
+
+public class HostGroupTest {
+  private static final ObjectMapper OM = new ObjectMapper();
+
+  private FakeKodi                  primaryKodi;
+  private FakeKodi                  replicaKodi;
+  private JavaConnectionManager     primary;
+  private JavaConnectionManager     replica;
+  private HostGroup                 group;
+
+  @Before
+  public void setUp() throws Exception {
+    primaryKodi = new FakeKodi();
+    replicaKodi = new FakeKodi();
+    CircuitBreaker.forHost(primaryKodi.getHostConfig()).reset();
+    primary = connect(primaryKodi);
+    replica = connect(replicaKodi);
+    group = new HostGroup(primary, replica);
+  }
+
+  private static JavaConnectionManager connect(FakeKodi kodi) throws ApiException {
+    final JavaConnectionManager cm = new JavaConnectionManager();
+    cm.getHealthMonitor().setInterval(0, TimeUnit.MILLISECONDS);
+    cm.connect(kodi.getHostConfig());
+    return cm;
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    primary.disconnect();
+    replica.disconnect();
+    primaryKodi.close();
+    replicaKodi.close();
+  }
+
+  @Test
+  public void preparedCallIsSentWithParameters() throws Exception {
+    final JsonNode details = OM.readTree("{\"moviedetails\":{\"movieid\":7,\"label\":\"Seven\"}}");
+    primaryKodi.result = details;
+    replicaKodi.result = details;
+
+    final PreparedCall<VideoModel.MovieDetail> prepared = new PreparedCall<VideoModel.MovieDetail>(new VideoLibrary.GetMovieDetails(7, "file"));
+    final AbstractCall<VideoModel.MovieDetail> call = group.callAsync(prepared.newCall()).get(5, TimeUnit.SECONDS);
+    assertEquals("Seven", call.getResult().label);
+
+    final List<JsonNode> requests = new ArrayList<JsonNode>(primaryKodi.requests);
+    requests.addAll(replicaKodi.requests);
+    assertEquals(1, requests.size());
+    assertEquals("VideoLibrary.GetMovieDetails", requests.get(0).get("method").getTextValue());
+    assertEquals(OM.readTree("{\"movieid\":7,\"properties\":[\"file\"]}"), requests.get(0).get("params"));
+  }
+
+  @Test
+  public void parseErrorFailsCall() throws Exception {
+    // the default result "pong" is no movie
+    final CompletableFuture<AbstractCall<VideoModel.MovieDetail>> future = group.callAsync(new VideoLibrary.GetMovieDetails(7));
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("Response parsed");
+    }
+    catch (ExecutionException e) {
+      assertEquals(ApiException.JSON_EXCEPTION, ((ApiException) e.getCause()).getCode());
+    }
+  }
+}
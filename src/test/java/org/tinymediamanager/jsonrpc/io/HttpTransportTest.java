@@ -0,0 +1,153 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.codehaus.jackson.node.TextNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tinymediamanager.jsonrpc.api.AbstractCall;
+import org.tinymediamanager.jsonrpc.api.LazyResultList;
+import org.tinymediamanager.jsonrpc.api.PreparedCall;
+import org.tinymediamanager.jsonrpc.api.call.JSONRPC;
+import org.tinymediamanager.jsonrpc.api.call.VideoLibrary;
+import org.tinymediamanager.jsonrpc.api.model.ListModel;
+import org.tinymediamanager.jsonrpc.api.model.VideoModel;
+import org.tinymediamanager.jsonrpc.config.HostConfig;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Compares the bodies posted by {@link JsonApiRequest} byte by byte with the request trees they replace.
+ */
+public class HttpTransportTest {
+  private static final ObjectMapper OM     = new ObjectMapper();
+
+  private final List<byte[]>        bodies = new CopyOnWriteArrayList<byte[]>();
+  private HttpServer                server;
+  private HostConfig                config;
+  private volatile JsonNode         result = TextNode.valueOf("pong");
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/jsonrpc", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        final byte[] body = read(exchange.getRequestBody());
+        bodies.add(body);
+        final byte[] response = answer(OM.readTree(body)).toString().getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, response.length);
+        final OutputStream output = exchange.getResponseBody();
+        output.write(response);
+        output.close();
+      }
+    });
+    server.start();
+    config = new HostConfig(server.getAddress().getAddress().getHostAddress(), server.getAddress().getPort(), 1);
+    CircuitBreaker.forHost(config).reset();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void callIsPostedWithoutTree() throws Exception {
+    final VideoLibrary.GetMovies call = new VideoLibrary.GetMovies(new ListModel.Limits(10, 0), new ListModel.Sort(true, "title", "ascending"),
+        "title", "year");
+    final byte[] posted = HttpTransport.encode(call);
+    assertArrayEquals(OM.writeValueAsBytes(call.getRequest()), posted);
+
+    assertEquals("pong", JsonApiRequest.execute(config, new JSONRPC.Ping()).getResult());
+    final JSONRPC.Ping ping = new JSONRPC.Ping();
+    JsonApiRequest.execute(config, ping);
+    assertArrayEquals(OM.writeValueAsBytes(ping.getRequest()), bodies.get(1));
+  }
+
+  @Test
+  public void preparedCallIsPostedUnderOwnId() throws Exception {
+    final PreparedCall<String> prepared = new PreparedCall<String>(new JSONRPC.Ping());
+    final PreparedCall.Instance<String> call = prepared.newCall();
+    assertEquals("pong", JsonApiRequest.execute(config, call).getResult());
+    assertArrayEquals(call.toBytes(), bodies.get(0));
+  }
+
+  @Test
+  public void batchIsPostedWithoutTree() throws Exception {
+    final CallBatch batch = new CallBatch();
+    final CompletableFuture<AbstractCall<String>> first = batch.add(new JSONRPC.Ping());
+    final CompletableFuture<AbstractCall<String>> second = batch.add(new JSONRPC.Ping());
+    // a batch of one is still an array
+    final CallBatch single = new CallBatch();
+    single.add(new JSONRPC.Ping());
+
+    assertArrayEquals(OM.writeValueAsBytes(batch.getRequest()), HttpTransport.encode(batch));
+    assertArrayEquals(OM.writeValueAsBytes(single.getRequest()), HttpTransport.encode(single));
+
+    JsonApiRequest.execute(config, batch);
+    assertEquals("pong", first.get(5, TimeUnit.SECONDS).getResult());
+    assertEquals("pong", second.get(5, TimeUnit.SECONDS).getResult());
+    assertArrayEquals(OM.writeValueAsBytes(batch.getRequest()), bodies.get(0));
+  }
+
+  @Test
+  public void lazyResultsAreReadFromResponse() throws Exception {
+    result = OM.readTree("{\"limits\":{\"end\":2,\"start\":0,\"total\":2},"
+        + "\"movies\":[{\"movieid\":1,\"label\":\"One\",\"file\":\"/1.mkv\"},{\"movieid\":2,\"label\":\"Two\",\"file\":\"/2.mkv\"}]}");
+    final VideoLibrary.GetMovies call = new VideoLibrary.GetMovies("file");
+    call.setLazyResults(true);
+    JsonApiRequest.execute(config, call);
+
+    final LazyResultList<VideoModel.MovieDetail> movies = (LazyResultList<VideoModel.MovieDetail>) call.getResultList();
+    assertEquals(2, movies.size());
+    assertEquals(2, (int) call.getLimits().total);
+    assertEquals(1, movies.getField(0, VideoModel.MovieDetail.MOVIEID).getIntValue());
+    assertEquals("Two", movies.get(1).label);
+  }
+
+  private JsonNode answer(JsonNode request) {
+    if (request.isArray()) {
+      final ArrayNode responses = OM.createArrayNode();
+      for (JsonNode element : request) {
+        responses.add(answer(element));
+      }
+      return responses;
+    }
+    final ObjectNode response = OM.createObjectNode();
+    response.put("jsonrpc", "2.0");
+    response.put("id", request.get("id"));
+    response.put("result", result);
+    return response;
+  }
+
+  private static byte[] read(InputStream input) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[1024];
+    int read;
+    while ((read = input.read(buffer)) >= 0) {
+      output.write(buffer, 0, read);
+    }
+    return output.toByteArray();
+  }
+}
@@ -0,0 +1,245 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.tinymediamanager.jsonrpc.api.AbstractCall;
+import org.tinymediamanager.jsonrpc.api.LazyResultList;
+import org.tinymediamanager.jsonrpc.api.call.JSONRPC;
+import org.tinymediamanager.jsonrpc.api.call.VideoLibrary;
+import org.tinymediamanager.jsonrpc.api.model.VideoModel;
+import org.tinymediamanager.jsonrpc.config.HostConfig;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+public class JavaConnectionManagerTest {
+  private FakeKodi              kodi;
+  private JavaConnectionManager cm;
+
+  @Before
+  public void setUp() throws Exception {
+    kodi = new FakeKodi();
+    CircuitBreaker.forHost(kodi.getHostConfig()).reset();
+    cm = new JavaConnectionManager();
+    cm.getHealthMonitor().setInterval(0, TimeUnit.MILLISECONDS);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    cm.disconnect();
+    kodi.close();
+    final CircuitBreaker breaker = CircuitBreaker.forHost(kodi.getHostConfig());
+    breaker.configure(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD, CircuitBreaker.DEFAULT_OPEN_TIME, TimeUnit.MILLISECONDS);
+    breaker.reset();
+  }
+
+  @Test
+  public void queuedCallsAreSentOnceAfterReconnect() throws Exception {
+    cm.setConcurrencyLimiter(new ConcurrencyLimiter(1, 1, 1));
+    cm.setReconnectPolicy(new ReconnectPolicy(10, 10, 0, 100));
+    cm.connect(kodi.getHostConfig());
+
+    kodi.answering = false;
+    final List<JSONRPC.Ping> calls = new ArrayList<JSONRPC.Ping>();
+    final List<CompletableFuture<AbstractCall<String>>> futures = new ArrayList<CompletableFuture<AbstractCall<String>>>();
+    for (int i = 0; i < 6; i++) {
+      final JSONRPC.Ping ping = new JSONRPC.Ping();
+      calls.add(ping);
+      futures.add(cm.callAsync(ping));
+    }
+    awaitReceived(1);
+    assertEquals(5, cm.getConcurrencyLimiter().getQueued());
+
+    kodi.answering = true;
+    kodi.dropClients();
+    for (CompletableFuture<AbstractCall<String>> future : futures) {
+      assertEquals("pong", future.get(5, TimeUnit.SECONDS).getResult());
+    }
+
+    // the call in flight is sent again, the queued ones only once by their ticket
+    assertEquals(2, Collections.frequency(kodi.received, calls.get(0).getId()));
+    for (JSONRPC.Ping ping : calls.subList(1, calls.size())) {
+      assertEquals(1, Collections.frequency(kodi.received, ping.getId()));
+    }
+    assertEquals(0, cm.getPendingCalls());
+  }
+
+  @Test
+  public void callsIssuedWhileConnectionDropsAreSentOnce() throws Exception {
+    cm.setConcurrencyLimiter(null);
+    cm.setReconnectPolicy(new ReconnectPolicy(10, 10, 0, 10000));
+    cm.connect(kodi.getHostConfig());
+
+    final List<CompletableFuture<AbstractCall<String>>> futures = new CopyOnWriteArrayList<CompletableFuture<AbstractCall<String>>>();
+    final Thread caller = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < 2000; i++) {
+          futures.add(cm.callAsync(new JSONRPC.Ping()));
+        }
+      }
+    });
+    caller.start();
+    for (int i = 0; i < 5; i++) {
+      awaitReceived(kodi.received.size() + 1);
+      kodi.dropClients();
+    }
+    caller.join();
+    for (CompletableFuture<AbstractCall<String>> future : futures) {
+      future.get(5, TimeUnit.SECONDS);
+    }
+
+    // a call may be sent again on a new connection, but never twice on the same one
+    for (List<Long> ids : kodi.receivedByClient) {
+      assertEquals(new HashSet<Long>(ids).size(), ids.size());
+    }
+  }
+
+  @Test
+  public void queuedTimeoutsDontOpenCircuit() throws Exception {
+    final CircuitBreaker breaker = CircuitBreaker.forHost(kodi.getHostConfig());
+    breaker.configure(3, 5, TimeUnit.SECONDS);
+    cm.setConcurrencyLimiter(new ConcurrencyLimiter(1, 1, 1));
+    cm.connect(kodi.getHostConfig());
+
+    // a call without deadline keeps the only slot busy, all others time out while waiting for it
+    kodi.answering = false;
+    final FutureCallback<String> busy = new FutureCallback<String>();
+    cm.call(new JSONRPC.Ping(), busy, 0);
+    final List<CompletableFuture<AbstractCall<String>>> futures = new ArrayList<CompletableFuture<AbstractCall<String>>>();
+    for (int i = 0; i < 5; i++) {
+      final FutureCallback<String> callback = new FutureCallback<String>();
+      cm.call(new JSONRPC.Ping(), callback, 50);
+      futures.add(callback.getFuture());
+    }
+    for (CompletableFuture<AbstractCall<String>> future : futures) {
+      assertEquals(ApiException.REQUEST_TIMEOUT, errorCode(future));
+    }
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertEquals(1, kodi.received.size());
+
+    // calls which have been sent count
+    cm.setConcurrencyLimiter(null);
+    for (int i = 0; i < 3; i++) {
+      final FutureCallback<String> callback = new FutureCallback<String>();
+      cm.call(new JSONRPC.Ping(), callback, 50);
+      assertEquals(ApiException.REQUEST_TIMEOUT, errorCode(callback.getFuture()));
+    }
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+  }
+
+  @Test
+  public void lateResponseIsNoError() throws Exception {
+    final Logger logger = (Logger) LoggerFactory.getLogger(JavaConnectionManager.class);
+    final ListAppender<ILoggingEvent> log = new ListAppender<ILoggingEvent>();
+    log.start();
+    logger.addAppender(log);
+    try {
+      cm.connect(kodi.getHostConfig());
+      kodi.delay = 50;
+      final JSONRPC.Ping cancelled = new JSONRPC.Ping();
+      cm.callAsync(cancelled);
+      assertTrue(cm.cancel(cancelled.getId()));
+      // answered after the cancelled one
+      cm.callAsync(new JSONRPC.Ping()).get(5, TimeUnit.SECONDS);
+    }
+    finally {
+      logger.detachAppender(log);
+    }
+    for (ILoggingEvent event : log.list) {
+      assertFalse(event.getFormattedMessage(), event.getLevel().isGreaterOrEqual(Level.ERROR));
+    }
+  }
+
+  @Test
+  public void connectTimesOut() throws Exception {
+    // a server which never accepts: once its backlog is full, further connection attempts hang
+    final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    final List<SocketChannel> backlog = new ArrayList<SocketChannel>();
+    try {
+      for (int i = 0; i < 8; i++) {
+        final SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(server.getLocalSocketAddress());
+        backlog.add(channel);
+      }
+      final HostConfig config = new HostConfig(server.getInetAddress().getHostAddress(), 1, server.getLocalPort());
+      config.setConnectTimeout(200);
+      CircuitBreaker.forHost(config).reset();
+      final long start = System.nanoTime();
+      try {
+        cm.connect(config);
+        fail("Connected");
+      }
+      catch (ApiException e) {
+        assertEquals(ApiException.IO_SOCKETTIMEOUT, e.getCode());
+      }
+      assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+      assertFalse(cm.isConnected());
+      CircuitBreaker.forHost(config).reset();
+    }
+    finally {
+      for (SocketChannel channel : backlog) {
+        channel.close();
+      }
+      server.close();
+    }
+  }
+
+  @Test
+  public void lazyResultsAreReadFromResponse() throws Exception {
+    kodi.result = new ObjectMapper().readTree("{\"limits\":{\"end\":2,\"start\":0,\"total\":2},"
+        + "\"movies\":[{\"movieid\":1,\"label\":\"One\",\"file\":\"/1.mkv\"},{\"movieid\":2,\"label\":\"Two\",\"file\":\"/2.mkv\"}]}");
+    cm.connect(kodi.getHostConfig());
+    final VideoLibrary.GetMovies call = new VideoLibrary.GetMovies("file");
+    call.setLazyResults(true);
+    cm.callAsync(call).get(5, TimeUnit.SECONDS);
+
+    final LazyResultList<VideoModel.MovieDetail> movies = (LazyResultList<VideoModel.MovieDetail>) call.getResultList();
+    assertEquals(2, movies.size());
+    assertEquals(2, (int) call.getLimits().total);
+    assertEquals("/2.mkv", movies.getField(1, VideoModel.MovieDetail.FILE).getTextValue());
+    assertFalse(movies.isDecoded(1));
+    assertEquals("One", movies.get(0).label);
+  }
+
+  private static int errorCode(CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+    }
+    catch (ExecutionException e) {
+      return ((ApiException) e.getCause()).getCode();
+    }
+    throw new AssertionError("Call succeeded");
+  }
+
+  private void awaitReceived(int count) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (kodi.received.size() < count) {
+      assertTrue("Only received " + kodi.received, System.nanoTime() < deadline);
+      Thread.sleep(10);
+    }
+  }
+}
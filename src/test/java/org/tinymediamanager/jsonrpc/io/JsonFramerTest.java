@@ -0,0 +1,110 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class JsonFramerTest {
+  private final JsonFramer   framer   = new JsonFramer();
+  private final List<String> messages = new ArrayList<String>();
+
+  private final JsonFramer.MessageHandler handler = new JsonFramer.MessageHandler() {
+    @Override
+    public void onMessage(byte[] message) {
+      messages.add(new String(message, StandardCharsets.UTF_8));
+    }
+  };
+
+  private void feed(String data) {
+    framer.feed(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)), handler);
+  }
+
+  @Test
+  public void singleMessage() {
+    feed("{\"id\":1,\"result\":\"pong\"}");
+    assertEquals(1, messages.size());
+    assertEquals("{\"id\":1,\"result\":\"pong\"}", messages.get(0));
+  }
+
+  @Test
+  public void concatenatedMessages() {
+    feed("{\"id\":1}{\"id\":2}\n  [{\"id\":3},{\"id\":4}]{\"id\":5}");
+    assertEquals(4, messages.size());
+    assertEquals("{\"id\":1}", messages.get(0));
+    assertEquals("{\"id\":2}", messages.get(1));
+    assertEquals("[{\"id\":3},{\"id\":4}]", messages.get(2));
+    assertEquals("{\"id\":5}", messages.get(3));
+  }
+
+  @Test
+  public void messageSplitByteByByte() {
+    final String message = "{\"id\":1,\"result\":{\"movies\":[{\"label\":\"a\"},{\"label\":\"b\"}]}}";
+    final byte[] bytes = (message + message).getBytes(StandardCharsets.UTF_8);
+    for (byte b : bytes) {
+      framer.feed(ByteBuffer.wrap(new byte[] { b }), handler);
+    }
+    assertEquals(2, messages.size());
+    assertEquals(message, messages.get(0));
+    assertEquals(message, messages.get(1));
+  }
+
+  @Test
+  public void messageSplitInsideString() {
+    feed("{\"label\":\"Fo");
+    assertTrue(messages.isEmpty());
+    feed("o}\"}{\"id\"");
+    assertEquals(1, messages.size());
+    assertEquals("{\"label\":\"Foo}\"}", messages.get(0));
+    feed(":2}");
+    assertEquals("{\"id\":2}", messages.get(1));
+  }
+
+  @Test
+  public void bracketsAndEscapesInStrings() {
+    final String message = "{\"label\":\"}]{[\\\"\\\\\",\"plot\":\"\\\\\"}";
+    feed(message + "{\"id\":2}");
+    assertEquals(2, messages.size());
+    assertEquals(message, messages.get(0));
+    assertEquals("{\"id\":2}", messages.get(1));
+  }
+
+  @Test
+  public void multiByteCharacters() {
+    final String message = "{\"label\":\"Amélie – 東京\"}";
+    final byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+    // split in the middle of a character
+    framer.feed(ByteBuffer.wrap(bytes, 0, 14), handler);
+    framer.feed(ByteBuffer.wrap(bytes, 14, bytes.length - 14), handler);
+    assertEquals(1, messages.size());
+    assertEquals(message, messages.get(0));
+  }
+
+  @Test
+  public void largeMessage() {
+    final StringBuilder message = new StringBuilder("{\"movies\":[");
+    for (int i = 0; i < 100000; i++) {
+      message.append(i == 0 ? "" : ",").append("{\"movieid\":").append(i).append('}');
+    }
+    message.append("]}");
+    feed(message.toString());
+    feed("{\"id\":2}");
+    assertEquals(2, messages.size());
+    assertEquals(message.toString(), messages.get(0));
+    assertEquals("{\"id\":2}", messages.get(1));
+  }
+
+  @Test
+  public void resetDropsPartialMessage() {
+    feed("{\"id\":1,\"label\":\"{");
+    framer.reset();
+    feed("{\"id\":2}");
+    assertEquals(1, messages.size());
+    assertEquals("{\"id\":2}", messages.get(0));
+  }
+}
@@ -0,0 +1,91 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongMapTest {
+  private final LongMap<String> map = new LongMap<String>();
+
+  @Test
+  public void putGetRemove() {
+    assertNull(map.put(1, "a"));
+    assertEquals("a", map.put(1, "b"));
+    assertEquals("b", map.get(1));
+    assertTrue(map.containsKey(1));
+    assertEquals(1, map.size());
+
+    assertEquals("b", map.remove(1));
+    assertNull(map.remove(1));
+    assertNull(map.get(1));
+    assertFalse(map.containsKey(1));
+    assertEquals(0, map.size());
+  }
+
+  @Test
+  public void nonPositiveKeys() {
+    assertNull(map.get(0));
+    assertNull(map.get(-1));
+    assertNull(map.remove(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void zeroKeyRejected() {
+    map.put(0, "a");
+  }
+
+  @Test
+  public void growsAndShrinks() {
+    for (long key = 1; key <= 10000; key++) {
+      map.put(key, String.valueOf(key));
+    }
+    assertEquals(10000, map.size());
+    for (long key = 1; key <= 10000; key += 2) {
+      assertEquals(String.valueOf(key), map.remove(key));
+    }
+    assertEquals(5000, map.size());
+    for (long key = 1; key <= 10000; key++) {
+      assertEquals(key % 2 == 0 ? String.valueOf(key) : null, map.get(key));
+    }
+
+    final List<String> values = map.values();
+    assertEquals(5000, values.size());
+    assertTrue(values.contains("10000"));
+    assertFalse(values.contains("9999"));
+  }
+
+  @Test
+  public void matchesHashMap() {
+    // random keys collide in the tables, so removal has to move entries back correctly
+    final Random random = new Random(42);
+    final Map<Long, String> expected = new HashMap<Long, String>();
+    for (int i = 0; i < 200000; i++) {
+      final long key = 1 + random.nextInt(2000) * 16L;
+      if (random.nextBoolean()) {
+        assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+      }
+      else {
+        assertEquals(expected.remove(key), map.remove(key));
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    for (Map.Entry<Long, String> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), map.get(entry.getKey()));
+    }
+    final List<String> values = map.values();
+    final List<String> expectedValues = new ArrayList<String>(expected.values());
+    Collections.sort(values);
+    Collections.sort(expectedValues);
+    assertEquals(expectedValues, values);
+  }
+}
@@ -0,0 +1,47 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReconnectPolicyTest {
+
+  @Test
+  public void backoffDoublesWithJitter() {
+    final ReconnectPolicy policy = new ReconnectPolicy(100, 1000, 0, 10);
+    final long[] backoff = { 100, 200, 400, 800, 1000, 1000 };
+    for (int attempt = 0; attempt < backoff.length; attempt++) {
+      for (int i = 0; i < 100; i++) {
+        final long delay = policy.getDelay(attempt);
+        assertTrue("Delay " + delay + " of attempt " + attempt, delay >= backoff[attempt] / 2 && delay <= backoff[attempt]);
+      }
+    }
+  }
+
+  @Test
+  public void noOverflowAfterManyAttempts() {
+    final ReconnectPolicy policy = new ReconnectPolicy(500, 30000, 0, 10);
+    final long delay = policy.getDelay(10000);
+    assertTrue("Delay " + delay, delay >= 15000 && delay <= 30000);
+  }
+
+  @Test
+  public void zeroDelay() {
+    assertEquals(0, new ReconnectPolicy(0, 0, 0, 10).getDelay(3));
+  }
+
+  @Test
+  public void limitedAttempts() {
+    final ReconnectPolicy policy = new ReconnectPolicy(100, 1000, 3, 10);
+    assertTrue(policy.shouldRetry(0));
+    assertTrue(policy.shouldRetry(2));
+    assertFalse(policy.shouldRetry(3));
+  }
+
+  @Test
+  public void unlimitedAttempts() {
+    assertTrue(ReconnectPolicy.DEFAULT.shouldRetry(Integer.MAX_VALUE));
+  }
+}
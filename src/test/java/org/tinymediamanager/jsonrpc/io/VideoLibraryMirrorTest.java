@@ -0,0 +1,331 @@
+package org.tinymediamanager.jsonrpc.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tinymediamanager.jsonrpc.api.call.VideoLibrary;
+import org.tinymediamanager.jsonrpc.notification.VideoLibraryEvent;
+
+public class VideoLibraryMirrorTest {
+  private static final ObjectMapper               OM       = new ObjectMapper();
+
+  private final NavigableMap<Integer, ObjectNode> movies   = new ConcurrentSkipListMap<Integer, ObjectNode>();
+  private final NavigableMap<Integer, ObjectNode> tvShows  = new ConcurrentSkipListMap<Integer, ObjectNode>();
+  private final NavigableMap<Integer, ObjectNode> episodes = new ConcurrentSkipListMap<Integer, ObjectNode>();
+
+  private FakeKodi                                kodi;
+  private JavaConnectionManager                   cm;
+  private VideoLibraryMirror                      mirror;
+
+  @Before
+  public void setUp() throws Exception {
+    kodi = new FakeKodi();
+    CircuitBreaker.forHost(kodi.getHostConfig()).reset();
+    serve(VideoLibrary.GetMovies.API_TYPE, VideoLibrary.GetMovies.RESULT, VideoLibrary.GetMovieDetails.API_TYPE,
+        VideoLibrary.GetMovieDetails.RESULT, "movieid", movies);
+    serve(VideoLibrary.GetTVShows.API_TYPE, VideoLibrary.GetTVShows.RESULT, VideoLibrary.GetTVShowDetails.API_TYPE,
+        VideoLibrary.GetTVShowDetails.RESULT, "tvshowid", tvShows);
+    serve(VideoLibrary.GetEpisodes.API_TYPE, VideoLibrary.GetEpisodes.RESULT, VideoLibrary.GetEpisodeDetails.API_TYPE,
+        VideoLibrary.GetEpisodeDetails.RESULT, "episodeid", episodes);
+    for (int id = 1; id <= 1200; id++) {
+      movies.put(id, movie(id, "Movie " + id));
+    }
+    for (int id = 1; id <= 2; id++) {
+      final ObjectNode tvShow = item("tvshowid", id, "Show " + id);
+      tvShow.put("imdbnumber", "tt9" + id);
+      tvShows.put(id, tvShow);
+    }
+    for (int id = 1; id <= 6; id++) {
+      final ObjectNode episode = item("episodeid", id, "Episode " + id);
+      episode.put("tvshowid", id <= 3 ? 1 : 2);
+      episodes.put(id, episode);
+    }
+
+    cm = new JavaConnectionManager();
+    cm.getHealthMonitor().setInterval(0, TimeUnit.MILLISECONDS);
+    cm.setReconnectPolicy(new ReconnectPolicy(10, 10, 0, 100));
+    cm.connect(kodi.getHostConfig());
+    mirror = new VideoLibraryMirror(cm);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    mirror.close();
+    cm.disconnect();
+    kodi.close();
+    CircuitBreaker.forHost(kodi.getHostConfig()).reset();
+  }
+
+  @Test
+  public void loadsAllPages() throws Exception {
+    mirror.load();
+
+    assertTrue(mirror.isLoaded());
+    assertEquals(1200, mirror.getMovies().size());
+    assertEquals(2, mirror.getTVShows().size());
+    assertEquals(6, mirror.getEpisodes().size());
+    assertEquals("Movie 1200", mirror.getMovie(1200).title);
+    assertEquals(700, (int) mirror.getMovieByImdbNumber("tt700").movieid);
+    assertEquals(42, (int) mirror.getMovieByFile("/movies/42.mkv").movieid);
+    assertEquals(2, (int) mirror.getTVShowByImdbNumber("tt92").tvshowid);
+    assertEquals(2, (int) mirror.getEpisode(5).tvshowid);
+
+    // pages of 500 movies, the last one cut short
+    assertEquals(Arrays.asList(0, 500, 1000), starts(VideoLibrary.GetMovies.API_TYPE));
+    assertEquals(Arrays.asList(0), starts(VideoLibrary.GetTVShows.API_TYPE));
+  }
+
+  @Test
+  public void updatesDuringScanAreBatched() throws Exception {
+    mirror.load();
+    for (int id = 1; id <= 3; id++) {
+      movies.put(id, movie(id, "Scanned " + id));
+      final ObjectNode data = data("movie", id);
+      data.put("transaction", true);
+      kodi.notifyClients(VideoLibraryEvent.Update.METHOD, data);
+    }
+    kodi.notifyClients(VideoLibraryEvent.ScanFinished.METHOD, null);
+    await(new BooleanSupplier() {
+      @Override
+      public boolean getAsBoolean() {
+        return "Scanned 3".equals(mirror.getMovie(3).title);
+      }
+    });
+
+    assertEquals("Scanned 1", mirror.getMovie(1).title);
+    assertEquals("Scanned 2", mirror.getMovie(2).title);
+    assertEquals(Arrays.asList(3), kodi.batches);
+    assertEquals(3, count(VideoLibrary.GetMovieDetails.API_TYPE));
+  }
+
+  @Test
+  public void updateOutsideScanIsFetchedRightAway() throws Exception {
+    mirror.load();
+    movies.put(7, movie(7, "Changed"));
+    kodi.notifyClients(VideoLibraryEvent.Update.METHOD, data("movie", 7));
+    await(new BooleanSupplier() {
+      @Override
+      public boolean getAsBoolean() {
+        return "Changed".equals(mirror.getMovie(7).title);
+      }
+    });
+    assertTrue(kodi.batches.isEmpty());
+  }
+
+  @Test
+  public void itemIsRemovedIfGone() throws Exception {
+    mirror.load();
+    // updated, but removed before its details are fetched
+    movies.remove(8);
+    kodi.notifyClients(VideoLibraryEvent.Update.METHOD, data("movie", 8));
+    await(new BooleanSupplier() {
+      @Override
+      public boolean getAsBoolean() {
+        return mirror.getMovie(8) == null;
+      }
+    });
+    assertNull(mirror.getMovieByFile("/movies/8.mkv"));
+    assertNull(mirror.getMovieByImdbNumber("tt8"));
+    assertEquals(1199, mirror.getMovies().size());
+  }
+
+  @Test
+  public void removingTVShowRemovesItsEpisodes() throws Exception {
+    mirror.load();
+    kodi.notifyClients(VideoLibraryEvent.Remove.METHOD, data("tvshow", 1));
+    await(new BooleanSupplier() {
+      @Override
+      public boolean getAsBoolean() {
+        return mirror.getTVShow(1) == null;
+      }
+    });
+
+    assertNotNull(mirror.getTVShow(2));
+    for (int id = 1; id <= 3; id++) {
+      assertNull(mirror.getEpisode(id));
+    }
+    for (int id = 4; id <= 6; id++) {
+      assertNotNull(mirror.getEpisode(id));
+    }
+  }
+
+  @Test
+  public void changesWhileLoadingAreNotLost() throws Exception {
+    // the first page is listed, then held back until the library has changed
+    final CountDownLatch listed = new CountDownLatch(1);
+    final CountDownLatch changed = new CountDownLatch(1);
+    final Function<JsonNode, JsonNode> list = kodi.methods.get(VideoLibrary.GetMovies.API_TYPE);
+    kodi.methods.put(VideoLibrary.GetMovies.API_TYPE, new Function<JsonNode, JsonNode>() {
+      @Override
+      public JsonNode apply(JsonNode params) {
+        final JsonNode page = list.apply(params);
+        if (params.get("limits").get("start").getIntValue() == 0) {
+          listed.countDown();
+          try {
+            changed.await(5, TimeUnit.SECONDS);
+          }
+          catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return page;
+      }
+    });
+    final Thread loader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          mirror.load();
+        }
+        catch (ApiException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+    loader.start();
+    assertTrue(listed.await(5, TimeUnit.SECONDS));
+
+    movies.put(1, movie(1, "Changed"));
+    kodi.notifyClients(VideoLibraryEvent.Update.METHOD, data("movie", 1));
+    // one added in front of the unlisted pages, one removed from the held page, so the pages don't shift
+    movies.put(0, movie(0, "Added"));
+    kodi.notifyClients(VideoLibraryEvent.Update.METHOD, data("movie", 0));
+    movies.remove(2);
+    kodi.notifyClients(VideoLibraryEvent.Remove.METHOD, data("movie", 2));
+    changed.countDown();
+    loader.join(5000);
+
+    // the outdated page has been mirrored, the changes are applied on top of it
+    await(new BooleanSupplier() {
+      @Override
+      public boolean getAsBoolean() {
+        return "Changed".equals(mirror.getMovie(1).title) && mirror.getMovie(0) != null && mirror.getMovie(2) == null;
+      }
+    });
+    assertEquals(1200, mirror.getMovies().size());
+  }
+
+  @Test
+  public void reloadsAfterReconnect() throws Exception {
+    mirror.load();
+    movies.remove(3);
+    movies.put(1201, movie(1201, "Missed"));
+    kodi.dropClients();
+
+    await(new BooleanSupplier() {
+      @Override
+      public boolean getAsBoolean() {
+        return mirror.getMovie(1201) != null && mirror.getMovie(3) == null;
+      }
+    });
+    assertEquals(1200, mirror.getMovies().size());
+    assertEquals("Missed", mirror.getMovieByFile("/movies/1201.mkv").title);
+  }
+
+  /**
+   * Answers the list and details methods of a media type from the given items.
+   */
+  private void serve(String listMethod, final String listKey, String detailsMethod, final String detailsKey, final String idKey,
+      final NavigableMap<Integer, ObjectNode> items) {
+    kodi.methods.put(listMethod, new Function<JsonNode, JsonNode>() {
+      @Override
+      public JsonNode apply(JsonNode params) {
+        final int start = params.get("limits").get("start").getIntValue();
+        final int end = params.get("limits").get("end").getIntValue();
+        final List<ObjectNode> all = new ArrayList<ObjectNode>(items.values());
+        final ObjectNode result = OM.createObjectNode();
+        final ObjectNode limits = result.putObject("limits");
+        limits.put("start", start);
+        limits.put("end", Math.min(end, all.size()));
+        limits.put("total", all.size());
+        final ArrayNode page = result.putArray(listKey);
+        for (ObjectNode item : all.subList(Math.min(start, all.size()), Math.min(end, all.size()))) {
+          page.add(item);
+        }
+        return result;
+      }
+    });
+    kodi.methods.put(detailsMethod, new Function<JsonNode, JsonNode>() {
+      @Override
+      public JsonNode apply(JsonNode params) {
+        final ObjectNode item = items.get(params.get(idKey).getIntValue());
+        if (item == null) {
+          throw new FakeKodi.Error(-32602, "Invalid params.");
+        }
+        final ObjectNode result = OM.createObjectNode();
+        result.put(detailsKey, item);
+        return result;
+      }
+    });
+  }
+
+  private List<Integer> starts(String method) {
+    final List<Integer> starts = new ArrayList<Integer>();
+    for (JsonNode request : kodi.requests) {
+      if (method.equals(request.get("method").getTextValue())) {
+        starts.add(request.get("params").get("limits").get("start").getIntValue());
+      }
+    }
+    return starts;
+  }
+
+  private int count(String method) {
+    int count = 0;
+    for (JsonNode request : kodi.requests) {
+      if (method.equals(request.get("method").getTextValue())) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static ObjectNode movie(int id, String title) {
+    final ObjectNode movie = item("movieid", id, title);
+    movie.put("imdbnumber", "tt" + id);
+    return movie;
+  }
+
+  private static ObjectNode item(String idKey, int id, String title) {
+    final ObjectNode item = OM.createObjectNode();
+    item.put(idKey, id);
+    item.put("label", title);
+    item.put("title", title);
+    item.put("file", "/" + idKey.replace("id", "s") + "/" + id + ".mkv");
+    return item;
+  }
+
+  private static ObjectNode data(String type, int id) {
+    final ObjectNode data = OM.createObjectNode();
+    final ObjectNode item = data.putObject("item");
+    item.put("type", type);
+    item.put("id", id);
+    return data;
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!condition.getAsBoolean()) {
+      assertTrue("Timed out", System.nanoTime() < deadline);
+      Thread.sleep(10);
+    }
+  }
+}